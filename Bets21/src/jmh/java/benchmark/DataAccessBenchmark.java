@@ -0,0 +1,61 @@
+package benchmark;
+
+import java.util.List;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import domain.Apuesta;
+import domain.Event;
+
+/**
+ * Consultas de DataAccess sin la cache de la fachada, abriendo y cerrando
+ * la unidad de trabajo en cada llamada igual que hace la fachada.
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="DataAccessBenchmark -p apuestas=20000"
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dbets21.dbFilename=target/jmh/bets.temp")
+public class DataAccessBenchmark {
+
+	@Benchmark
+	public List<Date> getEventsMonth(DatosBenchmark datos) {
+		datos.dataAccess.open(false);
+		try {
+			return datos.dataAccess.getEventsMonth(datos.meses[ThreadLocalRandom.current().nextInt(datos.meses.length)]);
+		} finally {
+			datos.dataAccess.close();
+		}
+	}
+
+	@Benchmark
+	public List<Event> getEvents(DatosBenchmark datos) {
+		datos.dataAccess.open(false);
+		try {
+			return datos.dataAccess.getEvents(datos.dias[ThreadLocalRandom.current().nextInt(datos.dias.length)]);
+		} finally {
+			datos.dataAccess.close();
+		}
+	}
+
+	@Benchmark
+	public List<Apuesta> getBetsFromUserPagina(DatosBenchmark datos) {
+		datos.dataAccess.open(false);
+		try {
+			return datos.dataAccess.getBetsFromUserPagina(datos.usuario(ThreadLocalRandom.current().nextInt()), null, 20);
+		} finally {
+			datos.dataAccess.close();
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Calendar;
+import java.util.Date;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import business.logic.BLFacadeImplementation;
+import configuration.UtilDate;
+import dataAccess.DataAccess;
+import domain.Apuesta;
+import domain.Equipo;
+import domain.Event;
+import domain.Pronosticos;
+import domain.Question;
+import domain.User;
+
+/**
+ * Base de datos compartida por todos los benchmarks de una ejecucion. Se
+ * borra y se llena al empezar con el numero de usuarios, eventos, preguntas
+ * por evento y apuestas indicado, que se puede cambiar con -p, p.ej.
+ * -p usuarios=1000 -p apuestas=20000
+ */
+@State(Scope.Benchmark)
+public class DatosBenchmark {
+
+	public static final String CONTRASENA = "bench";
+	private static final int PRIMER_DNI = 50000000;
+
+	@Param({ "200" })
+	public int usuarios;
+
+	@Param({ "60" })
+	public int eventos;
+
+	@Param({ "3" })
+	public int preguntas;
+
+	@Param({ "2000" })
+	public int apuestas;
+
+	public BLFacadeImplementation facade;
+	public DataAccess dataAccess;
+
+	/** Los usuarios creados, con saldo de sobra para apostar durante toda la ejecucion */
+	public User[] listaUsuarios;
+	/** Las preguntas creadas, cada una con su evento y sus tres pronosticos */
+	public Question[] listaPreguntas;
+	public Event[] eventoDePregunta;
+	public Pronosticos[][] pronosticosDePregunta;
+	/** Un dia de cada mes con eventos y los dias con eventos */
+	public Date[] meses;
+	public Date[] dias;
+
+	@Setup(Level.Trial)
+	public void poblar() throws Exception {
+		dataAccess = new DataAccess(true);
+		dataAccess.initializeDB();
+		dataAccess.close();
+		facade = new BLFacadeImplementation(dataAccess);
+
+		dataAccess.open(false);
+		try {
+			crearUsuarios();
+			crearEventos();
+			crearApuestas();
+		} finally {
+			dataAccess.close();
+		}
+	}
+
+	private void crearUsuarios() throws Exception {
+		listaUsuarios = new User[usuarios];
+		for (int i = 0; i < usuarios; i++) {
+			User us = new User(600000000 + i, PRIMER_DNI + i, CONTRASENA, "Usuario" + i, "Bench", "Bench",
+					"usuario" + i + "@bench.eus", UtilDate.newDate(1990, 0, 1));
+			us.setChutiGoles(1000000.0);
+			listaUsuarios[i] = dataAccess.createUser(us);
+		}
+	}
+
+	private void crearEventos() throws Exception {
+		Equipo local = dataAccess.saveEquipo(new Equipo("BenchLocal", 2022), false);
+		Equipo visitante = dataAccess.saveEquipo(new Equipo("BenchVisitante", 2022), false);
+
+		Calendar cal = Calendar.getInstance();
+		cal.setTime(UtilDate.trim(new Date()));
+		cal.add(Calendar.DAY_OF_YEAR, 1);
+		Date primero = cal.getTime();
+		List<Date> listaDias = new ArrayList<Date>();
+		for (int e = 0; e < eventos; e++) {
+			// dos eventos por dia, para que cada consulta por dia devuelva mas de uno
+			if (e > 0 && e % 2 == 0) {
+				cal.add(Calendar.DAY_OF_YEAR, 1);
+			}
+			if (listaDias.isEmpty() || !listaDias.get(listaDias.size() - 1).equals(cal.getTime())) {
+				listaDias.add(cal.getTime());
+			}
+			dataAccess.addEvent("Bench" + e, cal.getTime(), local, visitante);
+		}
+		cal.add(Calendar.DAY_OF_YEAR, 1);
+		List<Event> creados = dataAccess.getEventsBetweenDates(primero, cal.getTime());
+
+		listaPreguntas = new Question[creados.size() * preguntas];
+		eventoDePregunta = new Event[listaPreguntas.length];
+		pronosticosDePregunta = new Pronosticos[listaPreguntas.length][];
+		int n = 0;
+		for (Event ev : creados) {
+			for (int j = 0; j < preguntas; j++, n++) {
+				Question q = dataAccess.createQuestion(ev, "Pregunta " + j, 1, false);
+				listaPreguntas[n] = q;
+				eventoDePregunta[n] = ev;
+				pronosticosDePregunta[n] = new Pronosticos[] {
+						dataAccess.createPrognostic(ev.getEventNumber(), q, "1", 1.5f),
+						dataAccess.createPrognostic(ev.getEventNumber(), q, "X", 3f),
+						dataAccess.createPrognostic(ev.getEventNumber(), q, "2", 2f) };
+			}
+		}
+
+		dias = listaDias.toArray(new Date[listaDias.size()]);
+		List<Date> listaMeses = new ArrayList<Date>();
+		for (Date d : dias) {
+			Date mes = UtilDate.firstDayMonth(d);
+			if (!listaMeses.contains(mes)) {
+				listaMeses.add(mes);
+			}
+		}
+		meses = listaMeses.toArray(new Date[listaMeses.size()]);
+	}
+
+	private void crearApuestas() {
+		for (int a = 0; a < apuestas; a++) {
+			int q = a % listaPreguntas.length;
+			dataAccess.addApuesta(new Apuesta(listaUsuarios[a % usuarios], pronosticosDePregunta[q][a % 3], 1,
+					eventoDePregunta[q], listaPreguntas[q]));
+		}
+	}
+
+	public User usuario(int i) {
+		return listaUsuarios[Math.floorMod(i, listaUsuarios.length)];
+	}
+
+	public int pregunta(int i) {
+		return Math.floorMod(i, listaPreguntas.length);
+	}
+}
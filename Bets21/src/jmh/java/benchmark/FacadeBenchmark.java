@@ -0,0 +1,69 @@
+package benchmark;
+
+import java.util.List;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import domain.Apuesta;
+import domain.User;
+
+/**
+ * Operaciones de BLFacadeImplementation tal y como las llama la interfaz
+ * grafica, cada una con su apertura y cierre de DataAccess. Da las
+ * operaciones por segundo y los percentiles de latencia de cada una.
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="FacadeBenchmark -t 4"
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dbets21.dbFilename=target/jmh/bets.temp")
+public class FacadeBenchmark {
+
+	private static final AtomicInteger siguientePregunta = new AtomicInteger();
+
+	@Benchmark
+	public void addApuesta(DatosBenchmark datos) {
+		ThreadLocalRandom r = ThreadLocalRandom.current();
+		int q = datos.pregunta(r.nextInt());
+		datos.facade.addApuesta(new Apuesta(datos.usuario(r.nextInt()), datos.pronosticosDePregunta[q][r.nextInt(3)], 1,
+				datos.eventoDePregunta[q], datos.listaPreguntas[q]));
+	}
+
+	/**
+	 * Con la cache del calendario casi todas las llamadas son aciertos; el coste
+	 * de la consulta sin cache esta en DataAccessBenchmark.getEventsMonth
+	 */
+	@Benchmark
+	public List<Date> getEventsMonth(DatosBenchmark datos) {
+		return datos.facade.getEventsMonth(datos.meses[ThreadLocalRandom.current().nextInt(datos.meses.length)]);
+	}
+
+	/**
+	 * Liquida las preguntas por turnos. Liquidar otra vez una pregunta ya
+	 * cerrada vuelve a pagar a los ganadores, asi que cada llamada hace el mismo trabajo
+	 */
+	@Benchmark
+	public double definirResultado(DatosBenchmark datos) {
+		int q = datos.pregunta(siguientePregunta.getAndIncrement());
+		return datos.facade.definirResultado(datos.listaPreguntas[q], datos.pronosticosDePregunta[q][0]);
+	}
+
+	@Benchmark
+	public User userLogin(DatosBenchmark datos) throws Exception {
+		User us = datos.usuario(ThreadLocalRandom.current().nextInt());
+		datos.facade.userLogin(us.getDNI(), DatosBenchmark.CONTRASENA);
+		return us;
+	}
+}
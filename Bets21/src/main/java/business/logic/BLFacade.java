@@ -1,6 +1,6 @@
 package business.logic;
 
-import java.util.Vector;
+import java.io.IOException;
 import java.util.Date;
 import java.util.List;
 import domain.Question;
@@ -67,7 +67,7 @@ public interface BLFacade  {
 	 * @param date in which events are retrieved
 	 * @return collection of events
 	 */
-	@WebMethod public Vector<Event> getEvents(Date date);
+	@WebMethod public List<Event> getEvents(Date date);
 
 	/**
 	 * This method retrieves from the database the dates a month for which there are events
@@ -75,7 +75,7 @@ public interface BLFacade  {
 	 * @param date of the month for which days with events want to be retrieved 
 	 * @return collection of dates
 	 */
-	@WebMethod public Vector<Date> getEventsMonth(Date date);
+	@WebMethod public List<Date> getEventsMonth(Date date);
 
 	/**
 	 * This method calls the data access to initialize the database with some events and questions.
@@ -280,20 +280,50 @@ public interface BLFacade  {
 	 * @param evento el evento del cual quieres las preguntas
 	 * @return un vector con las preguntas
 	 */
-	@WebMethod Vector<Question> getQuestionsFromEvent(Event evento);
+	@WebMethod List<Question> getQuestionsFromEvent(Event evento);
 	
 	/**
 	 * Obtiene los pronsticos de una pregunta
 	 * @param pregunta la pregunta de la que quieres los pronsticos
 	 * @return el vector de pronsticos
 	 */
-	@WebMethod Vector<Pronosticos> getPronosticosFromQuestion(Question pregunta);
+	@WebMethod List<Pronosticos> getPronosticosFromQuestion(Question pregunta);
 	
 	/**
 	 * Se aade una apuesta por parte de un usuario a una pregunta
 	 * @param apuesta la apuesta a aadir
+	 * @deprecated usar placeBet. Por el servicio web el usuario, la pregunta y
+	 * el evento de la apuesta llegan vacios, porque se envian solo como
+	 * referencias (@XmlIDREF), y ademas se apuesta a nombre del usuario que
+	 * diga el cliente
 	 */
+	@Deprecated
 	@WebMethod void addApuesta(Apuesta apuesta);
+
+	/**
+	 * Apuesta en nombre del usuario de la sesion en una sola llamada: comprueba
+	 * el pronostico, la apuesta minima y el saldo, y registra la apuesta en una
+	 * unica transaccion
+	 * @param questionNumber el numero de la pregunta
+	 * @param prognosticNumber el numero del pronostico elegido
+	 * @param amount lo que se apuesta
+	 * @return el saldo del usuario despues de apostar
+	 * @throws UserDoesntExist si no hay ningun usuario en la sesion
+	 * @throws WrongParameters si el pronostico no es de la pregunta o la cantidad no llega a la apuesta minima
+	 * @throws EventFinished si la pregunta ya esta cerrada o el evento ya ha empezado
+	 * @throws NotEnoughChuti si el usuario no tiene saldo suficiente
+	 */
+	@WebMethod double placeBet(int questionNumber, int prognosticNumber, double amount)
+			throws UserDoesntExist, WrongParameters, EventFinished, NotEnoughChuti;
+
+	/**
+	 * Como placeBet, pero si el usuario repite la llamada con la misma clave se
+	 * le devuelve el resultado de la primera sin volver a apostar
+	 * @param clave clave unica que elige el cliente para esta apuesta; sin clave no se comprueba
+	 * @return el saldo del usuario despues de la primera llamada
+	 */
+	@WebMethod double placeBetConClave(int questionNumber, int prognosticNumber, double amount, String clave)
+			throws UserDoesntExist, WrongParameters, EventFinished, NotEnoughChuti;
 	
 	/**
 	 * Obtiene el pronostico de una pregunta
@@ -324,7 +354,7 @@ public interface BLFacade  {
 	 * @return el vector de eventos entre esas fechas
 	 */
 	@WebMethod
-	public Vector<Event> getEventsBetweenDates(Date pastDate, Date todayDate) ;
+	public List<Event> getEventsBetweenDates(Date pastDate, Date todayDate) ;
 	
 	/**
 	 * Metodo que paga a un usuario que ha ganado una apuesta
@@ -334,6 +364,28 @@ public interface BLFacade  {
 	 */
 	@WebMethod
 	public double definirResultado(Question q, Pronosticos p);
+
+	/**
+	 * Reconstruye el saldo de una cuenta a partir de su ultima foto y de los
+	 * movimientos apuntados despues, por ejemplo tras una caida
+	 * @param dni el DNI de la cuenta, el del administrador para la casa
+	 * @return el saldo reconstruido
+	 * @throws UserDoesntExist si el usuario no existe
+	 */
+	@WebMethod
+	public double rebuildBalance(int dni) throws UserDoesntExist;
+
+	/**
+	 * Importa el calendario de una temporada en formato CSV, con las preguntas y
+	 * pronosticos por defecto de cada partido. Se puede repetir sin duplicar los
+	 * partidos ya importados. Solo lo puede hacer un usuario privilegiado.
+	 * @param csv el contenido del fichero, no su ruta
+	 * @return el numero de partidos nuevos; las filas rechazadas se registran en el log
+	 * @throws IOException si el CSV no se puede leer, por ejemplo por unas comillas sin cerrar
+	 * @throws UserDoesntExist si no hay sesion o el usuario no es privilegiado
+	 */
+	@WebMethod
+	public int importarCalendario(String csv) throws IOException, UserDoesntExist;
 	
 	/**
 	 * Restringe la visibilidad del evento a usuarios no privilegiados
@@ -351,11 +403,11 @@ public interface BLFacade  {
 	
 	/**
 	 * Metodo que obtiene las tarjetas guardadas del usuario
-	 * @return Vector<Integer> tarjeta de credito
+	 * @return las tarjetas de credito del usuario
 	 * @throws NoCardsStored Si el usuario no tiene ninguna tarjeta almacenada
 	 */
 	@WebMethod
-	public Vector<Card> obtenerTarjetasUsr()throws NoCardsStored;
+	public List<Card> obtenerTarjetasUsr()throws NoCardsStored;
 	
 	@WebMethod 
 	public void aadirTarjetaUsr(String usr);
@@ -372,15 +424,51 @@ public interface BLFacade  {
 	public void changeChutiUs(Double chuti) throws NotEnoughChuti;
 	
 	@WebMethod
-	public Vector<Apuesta> getBetsFromUser();
+	public List<Apuesta> getBetsFromUser();
 	
 	@WebMethod
-	public Vector<Apuesta> getBetsFromUserOpen();
+	public List<Apuesta> getBetsFromUserOpen();
+
+	/**
+	 * Obtiene una pagina de las apuestas del usuario de la sesion, de la mas
+	 * reciente a la mas antigua
+	 * @param ultima numero de la ultima apuesta de la pagina anterior, o null para la primera
+	 * @param cuantas numero maximo de apuestas de la pagina, que no puede pasar de 100
+	 * @return las apuestas de la pagina; si son menos de cuantas no hay mas paginas
+	 */
+	@WebMethod
+	public List<Apuesta> getBetsFromUserPagina(Integer ultima, int cuantas);
+
+	/**
+	 * Como getBetsFromUserPagina, pero solo con las apuestas que aun se pueden cancelar
+	 */
+	@WebMethod
+	public List<Apuesta> getBetsFromUserOpenPagina(Integer ultima, int cuantas);
 	
+	/**
+	 * Cancela una apuesta del usuario de la sesion y le devuelve el 75% de lo
+	 * apostado. Solo se usa el numero de la apuesta; la cantidad es la guardada
+	 * @param a la apuesta a cancelar
+	 * @return true si se ha cancelado, false si no es del usuario, ya no existe o
+	 * su pregunta ya esta cerrada
+	 */
 	@WebMethod
-	public void cancelarApuesta(Apuesta a);
+	public boolean cancelarApuesta(Apuesta a);
 	@WebMethod
 	public void crearBoleto(String codigo, int max, double valor) throws NotEnoughChuti, CodigoRepetido ;
+
+	/**
+	 * Metodo que genera de una vez muchos boletos con codigos unicos, para una campaa
+	 * @param prefijo texto con el que empiezan todos los codigos, puede estar vacio
+	 * @param cantidad numero de boletos a generar
+	 * @param max veces que se puede canjear cada boleto
+	 * @param valor lo que se abona en cada canje
+	 * @return los codigos generados
+	 * @throws NotEnoughChuti si la casa no tiene saldo para cantidad*max*valor
+	 * @throws WrongParameters si la cantidad o el maximo no son positivos o el valor es negativo
+	 */
+	@WebMethod
+	public List<String> generarBoletos(String prefijo, int cantidad, int max, double valor) throws NotEnoughChuti, WrongParameters;
 	@WebMethod 
 	public void useBoleto(String codigo, User usuario) throws MaxUsed, BoletoNoExiste, BoletoUsado ;
 	@WebMethod 
@@ -389,11 +477,39 @@ public interface BLFacade  {
 	@WebMethod
 	void makePayment(double chutis, Date hoy, String card);
 
+	/**
+	 * Como makePayment, pero si el usuario repite la llamada con la misma clave
+	 * no se vuelve a cobrar
+	 * @param clave clave unica que elige el cliente para este pago; sin clave no se comprueba
+	 */
+	@WebMethod
+	void makePaymentConClave(double chutis, Date hoy, String card, String clave);
+
+	/**
+	 * Como useBoleto, pero canjea el boleto para el usuario de la sesion, y si
+	 * repite la llamada con la misma clave no se vuelve a canjear, y se repite la
+	 * excepcion de la primera si la hubo
+	 * @param clave clave unica que elige el cliente para este canje; sin clave no se comprueba
+	 * @throws UserDoesntExist si no hay sesion
+	 */
+	@WebMethod
+	public void useBoletoConClave(String codigo, String clave) throws UserDoesntExist, MaxUsed, BoletoNoExiste, BoletoUsado;
+
+	@WebMethod
+	public List<Payment> getPaymentsFromUser();
+
+	/**
+	 * Obtiene una pagina de los pagos con tarjeta del usuario de la sesion, del
+	 * mas reciente al mas antiguo
+	 * @param ultimo numero del ultimo pago de la pagina anterior, o null para la primera
+	 * @param cuantos numero maximo de pagos de la pagina, que no puede pasar de 100
+	 * @return los pagos de la pagina; si son menos de cuantos no hay mas paginas
+	 */
 	@WebMethod
-	public Vector<Payment> getPaymentsFromUser();
+	public List<Payment> getPaymentsFromUserPagina(Integer ultimo, int cuantos);
 	
 	@WebMethod
-	public Vector<Equipo>getEquipoFromQuestion(int q);
+	public List<Equipo>getEquipoFromQuestion(int q);
 	
 	@WebMethod
 	public List<Equipo> obtenerEquipos(int temporada);
@@ -1,17 +1,39 @@
 package business.logic;
 
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
-import java.util.Vector;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+
+import javax.annotation.Resource;
 import javax.jws.WebMethod;
 import javax.jws.WebService;
 import javax.persistence.RollbackException;
+import javax.xml.ws.WebServiceContext;
+import javax.xml.ws.handler.MessageContext;
 
 import configuration.ConfigXML;
+import configuration.Log;
+import dataAccess.CsvImportReport;
 import dataAccess.DataAccess;
 import domain.Question;
 import domain.User;
@@ -52,27 +74,51 @@ import exceptions.WrongParameters;
 /**
  * It implements the business logic as a web service.
  */
-@WebService(endpointInterface = "businessLogic.BLFacade")
+@WebService(endpointInterface = "business.logic.BLFacade")
 public class BLFacadeImplementation  implements BLFacade {
+	private static final String COOKIE_SESION = "BETS21_SESSION";
+	private static final Logger log = Log.get(BLFacadeImplementation.class);
+	private static final int BOLETOS_POR_TRANSACCION = 1000;
+	// sin 0/O ni 1/I para que los codigos se puedan teclear sin confundirse
+	private static final char[] LETRAS_CODIGO = "ABCDEFGHJKLMNPQRSTUVWXYZ23456789".toCharArray();
+	private static final int LONGITUD_CODIGO = 8;
+	private static final int MAX_PAGINA = 100;
+	private final SecureRandom aleatorio = new SecureRandom();
+
 	DataAccess dbManager;
-	User user1;
+	SessionRegistry sesiones = new SessionRegistry(ConfigXML.getInstance().getSessionTimeout() * 60000L);
+	CalendarCache calendario = new CalendarCache(ConfigXML.getInstance().getCalendarCacheSize());
+	IdempotencyStore idempotencia = new IdempotencyStore(ConfigXML.getInstance().getIdempotencyKeys(),
+			ConfigXML.getInstance().getIdempotencyTtl() * 60000L);
+	BoletoCounters boletos = new BoletoCounters();
+	int loteBoletos = ConfigXML.getInstance().getBoletoBatchSize();
+	private final AtomicBoolean volcadoPedido = new AtomicBoolean();
+	private ScheduledExecutorService volcadoBoletos;
+	// null si cada apuesta se guarda en su propia transaccion
+	private BetIntakeQueue apuestas;
+	String tokenLocal;
+	@Resource
+	WebServiceContext wsContext;
 	String ini= "initialize";
 	public BLFacadeImplementation()  {		
-		System.out.println("Creating BLFacadeImplementation instance");
+		log.fine("Creating BLFacadeImplementation instance");
 		ConfigXML c=ConfigXML.getInstance();
 
+		dbManager=new DataAccess(c.getDataBaseOpenMode().equals(ini));
 		if (c.getDataBaseOpenMode().equals(ini)) {
-			dbManager=new DataAccess(c.getDataBaseOpenMode().equals(ini));
 			dbManager.initializeDB();
-			dbManager.close();
 		}
+		dbManager.close();
+		programarSnapshots(c.getSnapshotInterval());
+		programarBoletos(c.getBoletoFlushInterval());
+		prepararApuestas(c.getBetBatchSize(), c.getBetMaxLatency(), c.getBetQueueTimeout());
 
 	}
 
 
 	public BLFacadeImplementation(DataAccess da)  {
 
-		System.out.println("Creating BLFacadeImplementation instance with DataAccess parameter");
+		log.fine("Creating BLFacadeImplementation instance with DataAccess parameter");
 		ConfigXML c=ConfigXML.getInstance();
 
 		if (c.getDataBaseOpenMode().equals(ini)) {
@@ -82,8 +128,212 @@ public class BLFacadeImplementation  implements BLFacade {
 
 		}
 		dbManager=da;		
+		programarSnapshots(c.getSnapshotInterval());
+		programarBoletos(c.getBoletoFlushInterval());
+		prepararApuestas(c.getBetBatchSize(), c.getBetMaxLatency(), c.getBetQueueTimeout());
+	}
+
+	/**
+	 * Programa en segundo plano la actualizacion periodica de las fotos de saldo
+	 * a partir del libro de movimientos
+	 * @param minutos minutos entre dos actualizaciones, 0 para no programarla
+	 */
+	private void programarSnapshots(int minutos) {
+		if (minutos <= 0) return;
+		ScheduledExecutorService fotos = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "ledger-snapshots");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		fotos.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					dbManager.open(false);
+					try {
+						dbManager.actualizarSnapshots();
+					} finally {
+						dbManager.close();
+					}
+				} catch (RuntimeException e) {
+					log.log(Level.WARNING, "No se han podido actualizar las fotos de los saldos", e);
+				}
+			}
+		}, minutos, minutos, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Prepara el hilo que suma a Boleto.usados los canjes acumulados en memoria,
+	 * cada cierto tiempo y cada vez que algun boleto llega a loteBoletos canjes
+	 * @param segundos segundos entre dos volcados periodicos, 0 para volcar solo por lotes
+	 */
+	private void programarBoletos(int segundos) {
+		volcadoBoletos = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "boleto-flush");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		if (segundos > 0) {
+			volcadoBoletos.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					volcarBoletos();
+				}
+			}, segundos, segundos, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Prepara la cola que agrupa en una transaccion las apuestas que llegan a la vez
+	 * @param tamLote apuestas por transaccion, 1 para guardar cada una por separado
+	 * @param esperaMillis lo que puede esperar una apuesta a que lleguen otras
+	 * @param plazoMillis lo que puede esperar una apuesta en la cola antes de descartarla
+	 */
+	private void prepararApuestas(int tamLote, int esperaMillis, int plazoMillis) {
+		if (tamLote > 1) {
+			apuestas = new BetIntakeQueue(dbManager, tamLote, esperaMillis, plazoMillis);
+		}
 	}
 
+	/**
+	 * Devuelve la cola de apuestas para consultar cuantos lotes ha guardado
+	 * @return la cola, o null si cada apuesta se guarda en su propia transaccion
+	 */
+	public BetIntakeQueue getBetIntakeQueue() {
+		return apuestas;
+	}
+
+	private void pedirVolcadoBoletos() {
+		if (volcadoPedido.compareAndSet(false, true)) {
+			volcadoBoletos.execute(new Runnable() {
+				public void run() {
+					volcadoPedido.set(false);
+					volcarBoletos();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Suma a Boleto.usados, en una transaccion, todos los canjes acumulados en
+	 * memoria, y despues olvida los cupos de los boletos agotados
+	 */
+	public void volcarBoletos() {
+		Map<String, Integer> lote = boletos.sacarPendientes();
+		if (lote.isEmpty()) {
+			boletos.olvidarAgotados();
+			return;
+		}
+		boolean hecho = false;
+		try {
+			dbManager.open(false);
+			try {
+				dbManager.sumarUsosBoletos(lote);
+				hecho = true;
+			} finally {
+				dbManager.close();
+			}
+		} catch (RuntimeException e) {
+			log.log(Level.WARNING, "No se han podido sumar los canjes de los boletos", e);
+		} finally {
+			if (hecho) {
+				boletos.olvidarAgotados();
+			} else {
+				boletos.devolver(lote);
+			}
+		}
+	}
+
+	private BoletoCounters.Cupo cupoBoleto(String codigo) throws BoletoNoExiste {
+		BoletoCounters.Cupo cupo = boletos.get(codigo);
+		while (cupo == null) {
+			long version = boletos.getVersion();
+			dbManager.open(false);
+			try {
+				cupo = boletos.cargar(codigo, dbManager.getLibresBoleto(codigo), version);
+			} finally {
+				dbManager.close();
+			}
+		}
+		return cupo;
+	}
+
+
+	/**
+	 * Devuelve la cache del calendario de eventos para consultar sus aciertos y fallos
+	 * @return la cache de esta fachada
+	 */
+	public CalendarCache getCalendarCache() {
+		return calendario;
+	}
+
+	/**
+	 * Devuelve el usuario de la sesion de quien hace la llamada, sin acceder a
+	 * la base de datos
+	 * @return el usuario logueado, o null si no hay sesion o ha caducado
+	 */
+	private User usuarioActual() {
+		return sesiones.obtener(tokenActual());
+	}
+
+	/**
+	 * Devuelve el token de sesion de quien hace la llamada: la cookie de la
+	 * peticion si la fachada esta publicada como servicio web, o el token local
+	 * si se usa en el mismo proceso que la interfaz grafica
+	 * @return el token, o null si no hay sesion
+	 */
+	private String tokenActual() {
+		MessageContext mc = contextoMensaje();
+		if (mc == null) {
+			return tokenLocal;
+		}
+		@SuppressWarnings("unchecked")
+		Map<String, List<String>> cabeceras = (Map<String, List<String>>) mc.get(MessageContext.HTTP_REQUEST_HEADERS);
+		if (cabeceras == null) {
+			return null;
+		}
+		for (Map.Entry<String, List<String>> cabecera : cabeceras.entrySet()) {
+			if ("Cookie".equalsIgnoreCase(cabecera.getKey())) {
+				for (String valor : cabecera.getValue()) {
+					for (String cookie : valor.split(";")) {
+						String c = cookie.trim();
+						if (c.startsWith(COOKIE_SESION + "=")) {
+							return c.substring(COOKIE_SESION.length() + 1);
+						}
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Entrega el token de una sesion nueva a quien hace la llamada
+	 * @param token el token de la sesion
+	 */
+	private void guardarToken(String token) {
+		MessageContext mc = contextoMensaje();
+		if (mc == null) {
+			tokenLocal = token;
+			return;
+		}
+		Map<String, List<String>> cabeceras = new HashMap<String, List<String>>();
+		cabeceras.put("Set-Cookie", Collections.singletonList(COOKIE_SESION + "=" + token + "; Path=/"));
+		mc.put(MessageContext.HTTP_RESPONSE_HEADERS, cabeceras);
+	}
+
+	private MessageContext contextoMensaje() {
+		if (wsContext == null) {
+			return null;
+		}
+		try {
+			return wsContext.getMessageContext();
+		} catch (IllegalStateException e) {
+			return null;
+		}
+	}
 
 	/**
 	 * This method creates a question for an event, with a question text and the minimum bet
@@ -101,18 +351,21 @@ public class BLFacadeImplementation  implements BLFacade {
 
 		//The minimum bed must be greater than 0
 		dbManager.open(false);
-		Question qry=null;
+		try {
+			Question qry=null;
 
 
-		if(new Date().compareTo(event.getEventDate())>0)
-			throw new EventFinished(ResourceBundle.getBundle("Etiquetas").getString("ErrorEventHasFinished"));
+			if(new Date().compareTo(event.getEventDate())>0)
+				throw new EventFinished(ResourceBundle.getBundle("Etiquetas").getString("ErrorEventHasFinished"));
 
 
-		qry=dbManager.createQuestion(event,question,betMinimum, equipo);		
+			qry=dbManager.createQuestion(event,question,betMinimum, equipo);		
+			calendario.invalidarDias();
 
-		dbManager.close();
-
-		return qry;
+			return qry;
+		} finally {
+			dbManager.close();
+		}
 	};
 
 	/**
@@ -122,11 +375,18 @@ public class BLFacadeImplementation  implements BLFacade {
 	 * @return collection of events
 	 */
 	@WebMethod	
-	public Vector<Event> getEvents(Date date)  {
+	public List<Event> getEvents(Date date)  {
+		List<Event> cached = calendario.getDia(date);
+		if (cached != null) {
+			return cached;
+		}
+		long epoca = calendario.getEpoca();
 		dbManager.open(false);
-		Vector<Event>  events=dbManager.getEvents(date);
-		dbManager.close();
-		return events;
+		try {
+			return calendario.putDia(date, dbManager.getEvents(date), epoca);
+		} finally {
+			dbManager.close();
+		}
 	}
 
 
@@ -136,11 +396,18 @@ public class BLFacadeImplementation  implements BLFacade {
 	 * @param date of the month for which days with events want to be retrieved 
 	 * @return collection of dates
 	 */
-	@WebMethod public Vector<Date> getEventsMonth(Date date) {
+	@WebMethod public List<Date> getEventsMonth(Date date) {
+		List<Date> cached = calendario.getMes(date);
+		if (cached != null) {
+			return cached;
+		}
+		long epoca = calendario.getEpoca();
 		dbManager.open(false);
-		Vector<Date>  dates=dbManager.getEventsMonth(date);
-		dbManager.close();
-		return dates;
+		try {
+			return calendario.putMes(date, dbManager.getEventsMonth(date), epoca);
+		} finally {
+			dbManager.close();
+		}
 	}
 
 
@@ -158,17 +425,21 @@ public class BLFacadeImplementation  implements BLFacade {
 	@WebMethod	
 	public void initializeBD(){
 		dbManager.open(false);
-		dbManager.initializeDB();
-		dbManager.close();
+		try {
+			dbManager.initializeDB();
+		} finally {
+			dbManager.close();
+		}
 	}
 	@WebMethod
 	public User obtainCurrentUsr() {
 		dbManager.open(false);
-
-		User usuario= dbManager.findUser(this.user1);
-		System.out.println(usuario.getApuestas());
-		dbManager.close();
-		return usuario;
+		try {
+			User usuario= dbManager.findUser(usuarioActual());
+			return usuario;
+		} finally {
+			dbManager.close();
+		}
 	}
 
 	@WebMethod
@@ -242,46 +513,64 @@ public class BLFacadeImplementation  implements BLFacade {
 	@WebMethod
 	public void createUser(User usr) throws UserAlreadyExist {
 		dbManager.open(false);
-		dbManager.createUser(usr);
-		dbManager.close();
+		try {
+			dbManager.createUser(usr);
+		} finally {
+			dbManager.close();
+		}
 	}
 
 	@WebMethod
 	public User getUser(Integer dni) throws UserDoesntExist 
 	{
 		dbManager.open(false);
-		User u = dbManager.obtainUser(dni);
-		dbManager.close();
-		return u;
+		try {
+			User u = dbManager.obtainUser(dni);
+			return u;
+		} finally {
+			dbManager.close();
+		}
 	}
 
 	@WebMethod
 	public void deleteUser(User usr) throws UserDoesntExist 
 	{
 		dbManager.open(false);
-		dbManager.deleteUser(usr);
-		dbManager.close();
+		try {
+			dbManager.deleteUser(usr);
+		} finally {
+			dbManager.close();
+		}
 	}
 
 	public void banUser(User usr, String message) throws UserDoesntExist 
 	{
 		dbManager.open(false);
-		dbManager.banUser(usr, message);
-		dbManager.close();
+		try {
+			dbManager.banUser(usr, message);
+		} finally {
+			dbManager.close();
+		}
 	}
 
 	public void changeChuti(User usr, Double chuti) throws NotEnoughChuti
 	{
 		dbManager.open(false);
-		dbManager.setChutiGoles(usr, chuti);
-		dbManager.close();
+		try {
+			dbManager.setChutiGoles(usr, chuti);
+		} finally {
+			dbManager.close();
+		}
 	}
 	
 	public void changeChutiUs(Double chuti) throws NotEnoughChuti
 	{
 		dbManager.open(false);
-		dbManager.setChutiGoles(this.user1, chuti);
-		dbManager.close();
+		try {
+			dbManager.setChutiGoles(usuarioActual(), chuti);
+		} finally {
+			dbManager.close();
+		}
 	}
 
 	@WebMethod
@@ -330,41 +619,53 @@ public class BLFacadeImplementation  implements BLFacade {
 	@WebMethod
 	public void userLogin(int DNI, String passWord) throws UserDoesntExist, DifferentPasswords {
 		dbManager.open(false);
-		User us = dbManager.obtainUser(DNI);
+		try {
+			User us = dbManager.obtainUser(DNI);
 
-		if (passWord.equals(us.getcontrasena())) {
+			if (passWord.equals(us.getcontrasena())) {
 
-			this.user1 = us;
+				sesiones.eliminar(tokenActual());
+				guardarToken(sesiones.crear(us));
+				log.log(Level.FINE, "New LogIn from: {0} Name: {1}", new Object[] { us.getDNI(), us.getNombre() });
+				return;
+			}
+			throw new DifferentPasswords();
+		} finally {
 			dbManager.close();
-			System.out.println("New LogIn from: "+us.getDNI()+ " Name: "+us.getNombre());
-			return;
 		}
-		throw new DifferentPasswords();
 
 	}
 
 
 	@WebMethod
 	public User returnCurrentUsr() {
-		return this.user1;
+		return usuarioActual();
 	}
 
 
 	@WebMethod
 	public void logOutUser() {
-		System.out.println("New LogOut from: "+this.user1.getDNI()+ " Name: "+this.user1.getNombre());
-		this.user1 = null;
+		User us = sesiones.eliminar(tokenActual());
+		if (contextoMensaje() == null) {
+			tokenLocal = null;
+		}
+		if (us != null) {
+			log.log(Level.FINE, "New LogOut from: {0} Name: {1}", new Object[] { us.getDNI(), us.getNombre() });
+		}
 	}
 
 	@WebMethod
 	public void reloadUser() {
 		dbManager.open(false);
 		try {
-			User us = dbManager.obtainUser(this.user1.getDNI());
-			this.user1 = us;
+			String token = tokenActual();
+			User us = dbManager.obtainUser(sesiones.obtener(token).getDNI());
+			sesiones.actualizar(token, us);
 		} catch (UserDoesntExist e) {
 
-		}	
+		} finally {
+			dbManager.close();
+		}
 	}
 
 	@SuppressWarnings("deprecation")
@@ -394,29 +695,38 @@ public class BLFacadeImplementation  implements BLFacade {
 	@WebMethod
 	public Event createEvent(String description, Date fecha, Equipo eq1, Equipo eq2) {
 		dbManager.open(false);
-		Event evento= new Event(description, fecha, eq1, eq2);
-		dbManager.addEvent(description, fecha, eq1, eq2);
-		dbManager.close();
-		return evento;
-
-
+		try {
+			Event evento= new Event(description, fecha, eq1, eq2);
+			dbManager.addEvent(description, fecha, eq1, eq2);
+			calendario.invalidarFecha(fecha);
+			return evento;
+		} finally {
+			dbManager.close();
+		}
 	}
 
 
 	@WebMethod
 	public void deleteEvent(Event e) {
 		dbManager.open(false);
-		dbManager.deleteEvent(e);
-		dbManager.close();
+		try {
+			dbManager.deleteEvent(e);
+			calendario.invalidarFecha(e.getEventDate());
+		} finally {
+			dbManager.close();
+		}
 	}
 
 
 	@WebMethod
 	public void changeEventDescription(Event e, String s) {
 		dbManager.open(false);
-		dbManager.changeEventDescription(e, s);
-		dbManager.close();
-
+		try {
+			dbManager.changeEventDescription(e, s);
+			calendario.invalidarDias();
+		} finally {
+			dbManager.close();
+		}
 	}
 
 
@@ -435,14 +745,19 @@ public class BLFacadeImplementation  implements BLFacade {
 	@WebMethod
 	public void changeEventDate(Event e, Date d) {
 		dbManager.open(false);
-		dbManager.changeEventDate(e, d);
-		dbManager.close();
+		try {
+			dbManager.changeEventDate(e, d);
+			calendario.invalidarFecha(e.getEventDate());
+			calendario.invalidarFecha(d);
+		} finally {
+			dbManager.close();
+		}
 	}
 
 
 	@WebMethod
 	public boolean hasPrivileges() {
-		return this.user1.getPrivilegiado();
+		return usuarioActual().getPrivilegiado();
 	}
 
 	@WebMethod
@@ -457,14 +772,18 @@ public class BLFacadeImplementation  implements BLFacade {
 	 */
 	public Pronosticos createPrognostic(int e, Question q, String pronos, float porcen, Equipo eq) throws PrognosticAlreadyExist, WrongParameters {
 		dbManager.open(false);
-		Pronosticos p;
-		if (eq == null) {
-		p=dbManager.createPrognostic(e, q, pronos, porcen);
-		}else {
-			p=dbManager.createPrognosticTeam(e, q, eq, porcen);
+		try {
+			Pronosticos p;
+			if (eq == null) {
+			p=dbManager.createPrognostic(e, q, pronos, porcen);
+			}else {
+				p=dbManager.createPrognosticTeam(e, q, eq, porcen);
+			}
+			calendario.invalidarDias();
+			return p;
+		} finally {
+			dbManager.close();
 		}
-		dbManager.close();
-		return p;
 	}
 
 
@@ -472,65 +791,162 @@ public class BLFacadeImplementation  implements BLFacade {
 	public Question obtainQuestion(int ev, int q) {
 
 		dbManager.open(false);
-		Question que = dbManager.obtainQuestion(ev, q);
-		dbManager.close();
-		return que;
+		try {
+			Question que = dbManager.obtainQuestion(ev, q);
+			return que;
+		} finally {
+			dbManager.close();
+		}
 	}@WebMethod
-	public Vector<Question> getQuestionsFromEvent(Event evento) {
+	public List<Question> getQuestionsFromEvent(Event evento) {
 		dbManager.open(false);
-		Vector<Question> preguntas= dbManager.getQuestionsFromEvent(evento);
-		dbManager.close();
-		return preguntas;
+		try {
+			List<Question> preguntas= dbManager.getQuestionsFromEvent(evento);
+			return preguntas;
+		} finally {
+			dbManager.close();
+		}
 	}
 	@WebMethod
-	public Vector<Pronosticos> getPronosticosFromQuestion(Question pregunta) {
+	public List<Pronosticos> getPronosticosFromQuestion(Question pregunta) {
 		dbManager.open(false);
-		Vector<Pronosticos> pronosticos= dbManager.getPronosticosFromQuestion(pregunta);
-		dbManager.close();
-		return pronosticos;
+		try {
+			List<Pronosticos> pronosticos= dbManager.getPronosticosFromQuestion(pregunta);
+			return pronosticos;
+		} finally {
+			dbManager.close();
+		}
 	}
+	@Deprecated
 	@WebMethod
 	public void addApuesta(Apuesta apuesta) {
 
 		dbManager.open(false);
-		dbManager.addApuesta(apuesta);
-		dbManager.close();
+		try {
+			dbManager.addApuesta(apuesta);
+		} finally {
+			dbManager.close();
+		}
+	}
+	@WebMethod
+	public double placeBet(int questionNumber, int prognosticNumber, double amount)
+			throws UserDoesntExist, WrongParameters, EventFinished, NotEnoughChuti {
+		User usuario = usuarioActual();
+		if (usuario == null) throw new UserDoesntExist();
+		if (apuestas != null) {
+			return apuestas.apostar(usuario.getDNI(), questionNumber, prognosticNumber, amount);
+		}
+		dbManager.open(false);
+		try {
+			return dbManager.placeBet(usuario.getDNI(), questionNumber, prognosticNumber, amount);
+		} finally {
+			dbManager.close();
+		}
+	}
+	@WebMethod
+	public double placeBetConClave(final int questionNumber, final int prognosticNumber, final double amount, String clave)
+			throws UserDoesntExist, WrongParameters, EventFinished, NotEnoughChuti {
+		try {
+			return unaVez("placeBet", usuarioActual(), clave, new Callable<Double>() {
+				public Double call() throws Exception {
+					return placeBet(questionNumber, prognosticNumber, amount);
+				}
+			});
+		} catch (UserDoesntExist | WrongParameters | EventFinished | NotEnoughChuti | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Hace una operacion que mueve dinero solo la primera vez que el usuario la
+	 * pide con una clave; las repeticiones reciben el mismo resultado
+	 * @param operacion nombre de la operacion, para que la misma clave no choque entre operaciones
+	 * @param usuario quien la pide; sin usuario o sin clave la operacion se hace siempre
+	 * @param clave la clave que manda el cliente
+	 * @param accion la operacion
+	 * @return el resultado de la primera vez
+	 */
+	private <T> T unaVez(String operacion, User usuario, String clave, Callable<T> accion) throws Exception {
+		if (usuario == null || clave == null || clave.isEmpty()) {
+			return accion.call();
+		}
+		return idempotencia.ejecutar(operacion + ":" + usuario.getDNI() + ":" + clave, accion);
+	}
+
+	/**
+	 * Devuelve el registro de claves de idempotencia para consultar cuantas
+	 * llamadas repetidas ha contestado
+	 * @return el registro
+	 */
+	public IdempotencyStore getIdempotencyStore() {
+		return idempotencia;
 	}
 	@WebMethod
 	public Pronosticos getPronostico(Question pregunta, String resultado) { 
 		dbManager.open(false);
-		Pronosticos pronostico = dbManager.getPronostico(pregunta, resultado.subSequence(0, resultado.indexOf('.')).toString());
-		dbManager.close();
-		return pronostico;
+		try {
+			Pronosticos pronostico = dbManager.getPronostico(pregunta, resultado.subSequence(0, resultado.indexOf('.')).toString());
+			return pronostico;
+		} finally {
+			dbManager.close();
+		}
 	}
 
 	@WebMethod
-	public Vector<Event> getEventsBetweenDates(Date pastDate, Date todayDate) {
+	public List<Event> getEventsBetweenDates(Date pastDate, Date todayDate) {
 
 		dbManager.open(false);
-		Vector<Event> vec = dbManager.getEventsBetweenDates(pastDate, todayDate);
-		dbManager.close();
-		return vec;
-
+		try {
+			List<Event> vec = dbManager.getEventsBetweenDates(pastDate, todayDate);
+			return vec;
+		} finally {
+			dbManager.close();
+		}
 	}
 
 	public double definirResultado(Question q, Pronosticos p) {
 		
 		
 		dbManager.open(false);
-		double pagado = 0;
-		for(Apuesta a : q.getApuestas()) {
+		try {
+			SettlementEngine liquidador = new SettlementEngine(dbManager, ConfigXML.getInstance().getSettlementBatchSize());
+			SettlementReport informe = liquidador.liquidar(q, p);
+			calendario.invalidarDias();
+			return informe.getTotalPagado();
+		} finally {
+			dbManager.close();
+		}
+	}
 
-			if (a.getPronostico().getPrognosticNumber().equals(p.getPrognosticNumber())) {
-				double chuti = a.getChutiGoles()*p.getPorcentaje();
-				dbManager.pagarUsuario(a.getUser(), a.getChutiGoles()*p.getPorcentaje());
-				pagado += chuti;
-			}
+	@WebMethod
+	public double rebuildBalance(int dni) throws UserDoesntExist {
+		dbManager.open(false);
+		try {
+			return dbManager.rebuildBalance(dni);
+		} finally {
+			dbManager.close();
 		}
-		dbManager.cerrarApuestaPregunta(q, p);
+	}
 
-		dbManager.close();
-		return pagado;
+	@WebMethod
+	public int importarCalendario(String csv) throws IOException, UserDoesntExist {
+		User usuario = usuarioActual();
+		if (usuario == null || !usuario.getPrivilegiado()) {
+			throw new UserDoesntExist("Solo un usuario privilegiado puede importar calendarios");
+		}
+		dbManager.open(false);
+		try {
+			CsvImportReport informe = dbManager.guardarCalendarioDeCsv(new StringReader(csv), "calendario de " + usuario.getDNI());
+			for (CsvImportReport.Rechazo r : informe.getRechazos()) {
+				log.log(Level.WARNING, "{0} {1}", new Object[] { informe.getFichero(), r });
+			}
+			calendario.invalidarTodo();
+			return informe.getNuevos();
+		} finally {
+			dbManager.close();
+		}
 	}
 
 
@@ -538,40 +954,52 @@ public class BLFacadeImplementation  implements BLFacade {
 	public void restringirEventoPublico(Event e) {
 
 		dbManager.open(false);
-		dbManager.cerrarEventoPublico(e);
-		dbManager.close();
-
+		try {
+			dbManager.cerrarEventoPublico(e);
+			calendario.invalidarDias();
+		} finally {
+			dbManager.close();
+		}
 	}
 
 	@Override
 	public void restringirEvento(Event e) {
 
 		dbManager.open(false);
-		dbManager.cerrarEvento(e);
-		dbManager.close();
-
+		try {
+			dbManager.cerrarEvento(e);
+			calendario.invalidarDias();
+		} finally {
+			dbManager.close();
+		}
 	}
 
 
 	@Override
-	public Vector<Card> obtenerTarjetasUsr() throws NoCardsStored {
+	public List<Card> obtenerTarjetasUsr() throws NoCardsStored {
 
 		dbManager.open(false);
-		Vector<Card> tarjetas = dbManager.obtainUserCards(this.user1);
-		dbManager.close();
-		System.out.println(tarjetas);
-		if (tarjetas == null) {
-			throw new NoCardsStored();
+		try {
+			List<Card> tarjetas = dbManager.obtainUserCards(usuarioActual());
+			log.log(Level.FINE, "{0}", tarjetas);
+			if (tarjetas == null) {
+				throw new NoCardsStored();
+			}
+			return tarjetas;
+		} finally {
+			dbManager.close();
 		}
-		return tarjetas;
 	}
 
 
 	@Override
 	public void aadirTarjetaUsr(String tarjeta) {
 		dbManager.open(false);
-		dbManager.addCardUser(this.user1, tarjeta);
-		dbManager.close();
+		try {
+			dbManager.addCardUser(usuarioActual(), tarjeta);
+		} finally {
+			dbManager.close();
+		}
 	}
 
 
@@ -594,77 +1022,209 @@ public class BLFacadeImplementation  implements BLFacade {
 	}
 	
 	@Override
-	public Vector<Apuesta> getBetsFromUser() {
+	public List<Apuesta> getBetsFromUser() {
 		dbManager.open(false);
-		Vector<Apuesta> vec = dbManager.getBetsFromUser(user1);
-		dbManager.close();
-		return vec;
+		try {
+			List<Apuesta> vec = dbManager.getBetsFromUser(usuarioActual());
+			return vec;
+		} finally {
+			dbManager.close();
+		}
 	}
 	
 	@Override
-	public void cancelarApuesta(Apuesta a) {
+	public boolean cancelarApuesta(Apuesta a) {
+		User usuario = usuarioActual();
+		if (usuario == null || a == null || a.getNumeroPronostico() == null) return false;
 		dbManager.open(false);
-		dbManager.cancelarApuesta(a);
-		dbManager.close();
+		try {
+			return dbManager.cancelarApuesta(a.getNumeroPronostico(), usuario.getDNI());
+		} finally {
+			dbManager.close();
+		}
 	}
 	
 	public void crearBoleto(String codigo, int max, double valor) throws NotEnoughChuti, CodigoRepetido {
 		dbManager.open(false);
-		dbManager.crearBoleto(codigo,  max, valor);
-		dbManager.close();
+		try {
+			dbManager.crearBoleto(codigo,  max, valor);
+		} finally {
+			dbManager.close();
+		}
+	}
+	/**
+	 * Genera los boletos por lotes de BOLETOS_POR_TRANSACCION, cada uno en su
+	 * transaccion. La casa se cobra una sola vez por el total, junto con el
+	 * primer lote, y si falla un lote posterior se le devuelve lo que no se ha creado.
+	 */
+	public List<String> generarBoletos(String prefijo, int cantidad, int max, double valor) throws NotEnoughChuti, WrongParameters {
+		if (prefijo == null || cantidad <= 0 || max <= 0 || valor < 0) throw new WrongParameters();
+		String concepto = "boletos " + prefijo + " x" + cantidad;
+		List<String> creados = new ArrayList<String>(cantidad);
+		Set<String> generados = new HashSet<String>(cantidad * 2);
+		boolean cobrado = false;
+		try {
+			while (creados.size() < cantidad) {
+				int tam = Math.min(BOLETOS_POR_TRANSACCION, cantidad - creados.size());
+				List<String> lote = new ArrayList<String>(tam);
+				while (lote.size() < tam) {
+					String codigo = prefijo + codigoAleatorio();
+					if (generados.add(codigo)) {
+						lote.add(codigo);
+					}
+				}
+				dbManager.open(false);
+				try {
+					creados.addAll(dbManager.crearBoletos(lote, max, valor, cobrado ? 0 : (double) cantidad * max * valor, concepto));
+					cobrado = true;
+				} finally {
+					dbManager.close();
+				}
+			}
+		} catch (RuntimeException e) {
+			if (cobrado) {
+				dbManager.open(false);
+				try {
+					dbManager.devolverBoletos((double) (cantidad - creados.size()) * max * valor, concepto + " no creados");
+				} finally {
+					dbManager.close();
+				}
+			}
+			throw e;
 		}
+		log.log(Level.INFO, "Generados {0} boletos con el prefijo {1}", new Object[] { cantidad, prefijo });
+		return creados;
+	}
+
+	private String codigoAleatorio() {
+		char[] codigo = new char[LONGITUD_CODIGO];
+		for (int i = 0; i < codigo.length; i++) {
+			codigo[i] = LETRAS_CODIGO[aleatorio.nextInt(LETRAS_CODIGO.length)];
+		}
+		return new String(codigo);
+	}
+
+	/**
+	 * Canjea un boleto. La plaza se reserva en memoria, asi que un boleto agotado
+	 * se rechaza sin abrir ninguna transaccion, y la base de datos solo se usa
+	 * para abonarlo al usuario. Los canjes se suman a Boleto.usados por lotes.
+	 */
 	public void useBoleto(String codigo, User usuario) throws MaxUsed, BoletoNoExiste, BoletoUsado  {
-		dbManager.open(false);
-		
+		BoletoCounters.Cupo cupo = cupoBoleto(codigo);
+		if (!cupo.reservar()) throw new MaxUsed();
+		boolean canjeado = false;
+		int pendientes;
+		try {
+			dbManager.open(false);
 			try {
 				dbManager.useBoleto(codigo, usuario);
+				canjeado = true;
+			} finally {
+				dbManager.close();
 			}
-			catch(BoletoNoExiste e) {
-				throw new BoletoNoExiste();
-			}
-			catch (MaxUsed e) {
-				throw new MaxUsed();
-			}	
-		
+		} finally {
+			pendientes = cupo.terminar(canjeado);
+		}
+		if (pendientes >= loteBoletos) {
+			pedirVolcadoBoletos();
+		}
 	}
+	public void useBoletoConClave(final String codigo, String clave)
+			throws UserDoesntExist, MaxUsed, BoletoNoExiste, BoletoUsado {
+		final User usuario = usuarioActual();
+		if (usuario == null) throw new UserDoesntExist();
+		try {
+			unaVez("useBoleto", usuario, clave, new Callable<Void>() {
+				public Void call() throws Exception {
+					useBoleto(codigo, usuario);
+					return null;
+				}
+			});
+		} catch (UserDoesntExist | MaxUsed | BoletoNoExiste | BoletoUsado | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	/**
+	 * Elimina un boleto. Su cupo queda bloqueado mientras se borra, y solo se
+	 * cierra y se olvida cuando el borrado se ha confirmado en la base de datos
+	 */
 	public void eliminarBoleto(String codigo) throws BoletoNoExiste {
-		dbManager.open(false);
-		dbManager.eliminarBoleto(codigo);
-		dbManager.close();
+		BoletoCounters.Cupo cupo = boletos.bloquear(codigo);
+		boolean eliminado = false;
+		try {
+			dbManager.open(false);
+			try {
+				dbManager.eliminarBoleto(codigo);
+				eliminado = true;
+			} finally {
+				dbManager.close();
+			}
+		} finally {
+			boletos.desbloquear(codigo, cupo, eliminado);
+		}
 	}
 
 
 	@Override
 	public void makePayment(double chutis, Date hoy, String card) {
 		dbManager.open(false);
-		dbManager.makePayment(this.user1, chutis, hoy, card);
-		dbManager.close();
+		try {
+			dbManager.makePayment(usuarioActual(), chutis, hoy, card);
+		} finally {
+			dbManager.close();
+		}
+	}
+	@WebMethod
+	public void makePaymentConClave(final double chutis, final Date hoy, final String card, String clave) {
+		try {
+			unaVez("makePayment", usuarioActual(), clave, new Callable<Void>() {
+				public Void call() {
+					makePayment(chutis, hoy, card);
+					return null;
+				}
+			});
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
 	}
 
 
 	@Override
-	public Vector<Payment> getPaymentsFromUser() {
+	public List<Payment> getPaymentsFromUser() {
 		dbManager.open(false);
-		Vector<Payment> vec = dbManager.getPaymentsFromUser(user1);
-		dbManager.close();
-		return vec;
+		try {
+			List<Payment> vec = dbManager.getPaymentsFromUser(usuarioActual());
+			return vec;
+		} finally {
+			dbManager.close();
+		}
 	}
 
 
 	@Override
-	public Vector<Equipo> getEquipoFromQuestion(int q) {
+	public List<Equipo> getEquipoFromQuestion(int q) {
 		dbManager.open(false);
-		Vector<Equipo> equipos = dbManager.getEquipoFromQuestion(q);
-		dbManager.close();
-		return equipos;
+		try {
+			List<Equipo> equipos = dbManager.getEquipoFromQuestion(q);
+			return equipos;
+		} finally {
+			dbManager.close();
+		}
 	}
 	
 	@Override
 	public List<Equipo> obtenerEquipos(int temporada) {
 		dbManager.open(false);
-		List<Equipo> equipos = dbManager.obtenerEquipos(temporada);
-		dbManager.close();
-		return equipos;
+		try {
+			List<Equipo> equipos = dbManager.obtenerEquipos(temporada);
+			return equipos;
+		} finally {
+			dbManager.close();
+		}
 	}
 
 
@@ -679,10 +1239,13 @@ public class BLFacadeImplementation  implements BLFacade {
 		eq1.setWeb(web);
 		
 		dbManager.open(false);
-		eq1 = dbManager.saveEquipo(eq1, false);
-		dbManager.close();
+		try {
+			eq1 = dbManager.saveEquipo(eq1, false);
 		
-		return eq1; 
+			return eq1; 
+		} finally {
+			dbManager.close();
+		}
 	}
 
 
@@ -690,9 +1253,13 @@ public class BLFacadeImplementation  implements BLFacade {
 	public Equipo editarPartidosEquipo(Equipo eq,int tipo) {
 		
 		dbManager.open(false);
-		Equipo eq1 = dbManager.editarPartidosEquipo(eq, tipo);
-		dbManager.close();
-		return eq1;
+		try {
+			Equipo eq1 = dbManager.editarPartidosEquipo(eq, tipo);
+			calendario.invalidarDias();
+			return eq1;
+		} finally {
+			dbManager.close();
+		}
 	}
 
 
@@ -700,18 +1267,64 @@ public class BLFacadeImplementation  implements BLFacade {
 	public Equipo obtenerEquipo(String equipo, int temp) {
 		Equipo eq1;
 		dbManager.open(false);
-		eq1 = dbManager.obtenerEquipo(equipo, temp);
-		dbManager.close();
-		return eq1;
+		try {
+			eq1 = dbManager.obtenerEquipo(equipo, temp);
+			return eq1;
+		} finally {
+			dbManager.close();
+		}
 	}
 
 
 	@Override
-	public Vector<Apuesta> getBetsFromUserOpen() {
+	public List<Apuesta> getBetsFromUserOpen() {
 		dbManager.open(false);
-		Vector<Apuesta> vec = dbManager.getBetsFromUserOpen(user1);
-		dbManager.close();
-		return vec;
+		try {
+			List<Apuesta> vec = dbManager.getBetsFromUserOpen(usuarioActual());
+			return vec;
+		} finally {
+			dbManager.close();
+		}
+	}
+
+	@Override
+	public List<Apuesta> getBetsFromUserPagina(Integer ultima, int cuantas) {
+		User usuario = usuarioActual();
+		if (usuario == null) return new ArrayList<Apuesta>();
+		dbManager.open(false);
+		try {
+			return dbManager.getBetsFromUserPagina(usuario, ultima, tamPagina(cuantas));
+		} finally {
+			dbManager.close();
+		}
+	}
+
+	@Override
+	public List<Apuesta> getBetsFromUserOpenPagina(Integer ultima, int cuantas) {
+		User usuario = usuarioActual();
+		if (usuario == null) return new ArrayList<Apuesta>();
+		dbManager.open(false);
+		try {
+			return dbManager.getBetsFromUserOpenPagina(usuario, ultima, tamPagina(cuantas));
+		} finally {
+			dbManager.close();
+		}
+	}
+
+	@Override
+	public List<Payment> getPaymentsFromUserPagina(Integer ultimo, int cuantos) {
+		User usuario = usuarioActual();
+		if (usuario == null) return new ArrayList<Payment>();
+		dbManager.open(false);
+		try {
+			return dbManager.getPaymentsFromUserPagina(usuario, ultimo, tamPagina(cuantos));
+		} finally {
+			dbManager.close();
+		}
+	}
+
+	private static int tamPagina(int cuantas) {
+		return Math.max(1, Math.min(cuantas, MAX_PAGINA));
 	}
 }
 
@@ -0,0 +1,228 @@
+package business.logic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import configuration.Log;
+
+import dataAccess.DataAccess;
+import dataAccess.PedidoApuesta;
+import exceptions.EventFinished;
+import exceptions.NotEnoughChuti;
+import exceptions.UserDoesntExist;
+import exceptions.WrongParameters;
+
+/**
+ * Cola de entrada de apuestas que agrupa las que llegan a la vez en una sola
+ * transaccion. Un unico hilo saca de la cola hasta tamLote apuestas, esperando
+ * como mucho esperaMillis desde la primera, las guarda juntas y completa el
+ * futuro de cada una cuando se confirma el lote. Si el lote no se puede
+ * confirmar, sus apuestas se guardan una a una. Quien apuesta espera como
+ * mucho plazoMillis a que su apuesta salga de la cola; si sigue en ella, se
+ * quita y no se guarda nunca.
+ */
+public class BetIntakeQueue {
+
+	private static final Logger log = Log.get(BetIntakeQueue.class);
+
+	private final DataAccess dbManager;
+	private final int tamLote;
+	private final long esperaNanos;
+	private final long plazoMillis;
+	private final BlockingQueue<Entrada> cola = new LinkedBlockingQueue<Entrada>();
+	private final AtomicLong lotes = new AtomicLong();
+	private final AtomicLong apuestas = new AtomicLong();
+	private final AtomicLong caducadas = new AtomicLong();
+
+	/**
+	 * @param dbManager el acceso a datos, que el hilo de la cola abre y cierra en cada lote
+	 * @param tamLote numero maximo de apuestas guardadas en cada transaccion
+	 * @param esperaMillis lo que puede esperar una apuesta a que lleguen otras
+	 * @param plazoMillis lo que puede esperar una apuesta en la cola antes de descartarla
+	 */
+	public BetIntakeQueue(DataAccess dbManager, int tamLote, int esperaMillis, int plazoMillis) {
+		this.dbManager = dbManager;
+		this.tamLote = Math.max(1, tamLote);
+		this.esperaNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, esperaMillis));
+		this.plazoMillis = Math.max(1, plazoMillis);
+		Thread escritor = new Thread(new Runnable() {
+			public void run() {
+				escribir();
+			}
+		}, "bet-intake");
+		escritor.setDaemon(true);
+		escritor.start();
+	}
+
+	/**
+	 * Deja una apuesta en la cola
+	 * @return un futuro con el saldo del usuario despues de apostar, que falla
+	 * con la excepcion de DataAccess.placeBet si la apuesta se rechaza
+	 */
+	public CompletableFuture<Double> encolar(int dni, int questionNumber, int prognosticNumber, double cantidad) {
+		return encolar(new PedidoApuesta(dni, questionNumber, prognosticNumber, cantidad));
+	}
+
+	private Entrada encolar(PedidoApuesta pedido) {
+		Entrada e = new Entrada(pedido);
+		cola.add(e);
+		return e;
+	}
+
+	/**
+	 * Deja una apuesta en la cola y espera a que se guarde su lote. Si pasado
+	 * plazoMillis la apuesta aun no ha salido de la cola, se quita de ella y se
+	 * rechaza sin guardarla; si ya esta en un lote, se espera a que se guarde
+	 * @return el saldo del usuario despues de apostar
+	 * @throws IllegalStateException si la apuesta se ha quitado de la cola sin guardarla
+	 */
+	public double apostar(int dni, int questionNumber, int prognosticNumber, double cantidad)
+			throws UserDoesntExist, WrongParameters, EventFinished, NotEnoughChuti {
+		Entrada futuro = encolar(new PedidoApuesta(dni, questionNumber, prognosticNumber, cantidad));
+		try {
+			try {
+				return futuro.get(plazoMillis, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				if (cola.remove(futuro)) {
+					caducadas.incrementAndGet();
+					futuro.completeExceptionally(new IllegalStateException(
+							"La apuesta no se ha guardado: ha esperado mas de " + plazoMillis + " ms en la cola"));
+				}
+				return futuro.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrumpido esperando a que se guarde la apuesta", e);
+		} catch (ExecutionException e) {
+			Throwable causa = e.getCause();
+			if (causa instanceof UserDoesntExist) throw (UserDoesntExist) causa;
+			if (causa instanceof WrongParameters) throw (WrongParameters) causa;
+			if (causa instanceof EventFinished) throw (EventFinished) causa;
+			if (causa instanceof NotEnoughChuti) throw (NotEnoughChuti) causa;
+			if (causa instanceof RuntimeException) throw (RuntimeException) causa;
+			throw new IllegalStateException(causa);
+		}
+	}
+
+	/**
+	 * @return lotes guardados desde que se creo la cola
+	 */
+	public long getLotes() {
+		return lotes.get();
+	}
+
+	/**
+	 * @return apuestas procesadas, aceptadas o no, desde que se creo la cola
+	 */
+	public long getApuestas() {
+		return apuestas.get();
+	}
+
+	/**
+	 * @return apuestas quitadas de la cola sin guardarlas porque llevaban demasiado esperando
+	 */
+	public long getCaducadas() {
+		return caducadas.get();
+	}
+
+	/**
+	 * @return apuestas que esperan en la cola
+	 */
+	public int getPendientes() {
+		return cola.size();
+	}
+
+	private void escribir() {
+		List<Entrada> lote = new ArrayList<Entrada>(tamLote);
+		while (true) {
+			try {
+				lote.add(cola.take());
+				long limite = System.nanoTime() + esperaNanos;
+				cola.drainTo(lote, tamLote - lote.size());
+				while (lote.size() < tamLote) {
+					long queda = limite - System.nanoTime();
+					Entrada e = queda > 0 ? cola.poll(queda, TimeUnit.NANOSECONDS) : null;
+					if (e == null) break;
+					lote.add(e);
+					cola.drainTo(lote, tamLote - lote.size());
+				}
+				guardar(lote);
+			} catch (InterruptedException e) {
+				// el hilo es un demonio y solo se interrumpe al terminar el proceso
+				for (Entrada pendiente : lote) {
+					pendiente.completeExceptionally(e);
+				}
+				return;
+			} catch (Throwable t) {
+				log.log(Level.SEVERE, "Error en la cola de apuestas", t);
+				for (Entrada pendiente : lote) {
+					pendiente.completeExceptionally(t);
+				}
+			}
+			lote.clear();
+		}
+	}
+
+	private void guardar(List<Entrada> lote) {
+		List<PedidoApuesta> pedidos = new ArrayList<PedidoApuesta>(lote.size());
+		for (Entrada e : lote) {
+			pedidos.add(e.pedido);
+		}
+		try {
+			dbManager.open(false);
+			try {
+				dbManager.placeBets(pedidos);
+			} finally {
+				dbManager.close();
+			}
+			lotes.incrementAndGet();
+		} catch (RuntimeException ex) {
+			log.log(Level.WARNING, "No se ha podido guardar un lote de " + lote.size() + " apuestas, se guardan una a una", ex);
+			for (PedidoApuesta p : pedidos) {
+				guardarSola(p);
+			}
+		}
+		apuestas.addAndGet(lote.size());
+		for (Entrada e : lote) {
+			if (e.pedido.getError() != null) {
+				e.completeExceptionally(e.pedido.getError());
+			} else {
+				e.complete(e.pedido.getSaldo());
+			}
+		}
+	}
+
+	private void guardarSola(PedidoApuesta p) {
+		try {
+			dbManager.open(false);
+			try {
+				p.aceptar(dbManager.placeBet(p.getDni(), p.getQuestionNumber(), p.getPrognosticNumber(), p.getCantidad()));
+			} finally {
+				dbManager.close();
+			}
+			lotes.incrementAndGet();
+		} catch (Exception e) {
+			p.rechazar(e);
+		}
+	}
+
+	/**
+	 * Una apuesta de la cola y el futuro que espera quien la ha hecho
+	 */
+	private static class Entrada extends CompletableFuture<Double> {
+		private final PedidoApuesta pedido;
+
+		Entrada(PedidoApuesta pedido) {
+			this.pedido = pedido;
+		}
+	}
+}
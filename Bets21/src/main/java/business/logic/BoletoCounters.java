@@ -0,0 +1,232 @@
+package business.logic;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Cupos de canje de los boletos, en memoria. Cada canje reserva una plaza
+ * con una operacion atomica sobre el contador de su boleto, asi que un boleto
+ * agotado se rechaza sin abrir ninguna transaccion. Los canjes hechos se
+ * acumulan como pendientes hasta que se suman a Boleto.usados por lotes.
+ * Los boletos agotados o eliminados se olvidan en cuanto no les queda nada
+ * pendiente, asi que solo se guardan los cupos de los boletos vivos que se
+ * estan canjeando. Los cupos solo son validos mientras una unica fachada
+ * atienda los canjes.
+ */
+public class BoletoCounters {
+
+	private final ConcurrentMap<String, Cupo> cupos = new ConcurrentHashMap<String, Cupo>();
+	private volatile long version;
+
+	/**
+	 * @param codigo el codigo del boleto
+	 * @return su cupo, o null si aun no se ha cargado
+	 */
+	public Cupo get(String codigo) {
+		return cupos.get(codigo);
+	}
+
+	/**
+	 * @return un numero que cambia cada vez que se olvida un cupo; hay que
+	 * leerlo antes de consultar en la base de datos las plazas que se pasan a cargar
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Crea el cupo de un boleto si otro hilo no lo ha creado antes. Si desde
+	 * que se leyo la version se ha olvidado algun cupo, las plazas leidas pueden
+	 * ser de antes de agotarse o eliminarse el boleto y no se guardan. Un
+	 * boleto sin plazas tampoco se guarda.
+	 * @param codigo el codigo del boleto
+	 * @param libres canjes que aun se pueden hacer
+	 * @param leida la version leida antes de consultar las plazas
+	 * @return el cupo del boleto, uno sin plazas que no se guarda si no
+	 * quedaban, o null si hay que volver a consultar las plazas
+	 */
+	public synchronized Cupo cargar(String codigo, int libres, long leida) {
+		Cupo cupo = cupos.get(codigo);
+		if (cupo != null) return cupo;
+		if (leida != version) return null;
+		cupo = new Cupo(libres);
+		if (libres > 0) {
+			cupos.put(codigo, cupo);
+		}
+		return cupo;
+	}
+
+	/**
+	 * Bloquea el cupo de un boleto que se va a eliminar: espera a que terminen
+	 * los canjes que ya tenian plaza, y los que llegan despues esperan a
+	 * desbloquear. Si el boleto no tenia cupo se deja uno sin plazas mientras
+	 * tanto, para que nadie cargue de la base de datos las plazas de un boleto
+	 * que se esta eliminando. El mismo hilo debe llamar despues a desbloquear.
+	 * @param codigo el codigo del boleto
+	 * @return el cupo bloqueado
+	 */
+	public Cupo bloquear(String codigo) {
+		Cupo cupo;
+		synchronized (this) {
+			cupo = cupos.get(codigo);
+			if (cupo == null) {
+				cupo = new Cupo(0);
+				cupos.put(codigo, cupo);
+			}
+		}
+		cupo.enCurso.writeLock().lock();
+		return cupo;
+	}
+
+	/**
+	 * Desbloquea el cupo de bloquear. Si el boleto se ha eliminado, o no le
+	 * quedan plazas ni canjes pendientes, el cupo se cierra y se olvida, y los
+	 * canjes que esperaban se rechazan; si no, sigue como estaba
+	 * @param codigo el codigo del boleto
+	 * @param cupo el cupo bloqueado
+	 * @param eliminado true si se ha confirmado el borrado en la base de datos
+	 */
+	public void desbloquear(String codigo, Cupo cupo, boolean eliminado) {
+		try {
+			if (eliminado || (cupo.libres.get() == 0 && cupo.pendientes.get() == 0)) {
+				olvidar(codigo, cupo);
+			}
+		} finally {
+			cupo.enCurso.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Olvida los cupos agotados que ya no tienen canjes pendientes de sumar ni
+	 * en curso. Debe llamarse despues de sumar los pendientes a la base de
+	 * datos, que es de donde se vuelve a cargar el cupo si hace falta
+	 * @return el numero de cupos olvidados
+	 */
+	public int olvidarAgotados() {
+		int olvidados = 0;
+		for (Map.Entry<String, Cupo> e : cupos.entrySet()) {
+			Cupo cupo = e.getValue();
+			if (cupo.libres.get() > 0 || cupo.pendientes.get() > 0) continue;
+			if (!cupo.enCurso.writeLock().tryLock()) continue;
+			try {
+				if (cupo.libres.get() == 0 && cupo.pendientes.get() == 0) {
+					olvidar(e.getKey(), cupo);
+					olvidados++;
+				}
+			} finally {
+				cupo.enCurso.writeLock().unlock();
+			}
+		}
+		return olvidados;
+	}
+
+	/**
+	 * Cierra un cupo y lo quita del mapa. Hay que tener su bloqueo de escritura
+	 */
+	private synchronized void olvidar(String codigo, Cupo cupo) {
+		cupo.cerrado = true;
+		cupo.libres.set(0);
+		if (cupos.remove(codigo, cupo)) {
+			version++;
+		}
+	}
+
+	/**
+	 * @return numero de boletos con cupo en memoria
+	 */
+	public int size() {
+		return cupos.size();
+	}
+
+	/**
+	 * Saca los canjes pendientes de todos los boletos para sumarlos a la base de datos
+	 * @return canjes pendientes por codigo, sin los boletos que no tienen ninguno
+	 */
+	public Map<String, Integer> sacarPendientes() {
+		Map<String, Integer> lote = new HashMap<String, Integer>();
+		for (Map.Entry<String, Cupo> e : cupos.entrySet()) {
+			int n = e.getValue().pendientes.getAndSet(0);
+			if (n > 0) {
+				lote.put(e.getKey(), n);
+			}
+		}
+		return lote;
+	}
+
+	/**
+	 * Vuelve a dejar como pendientes los canjes de un lote que no se ha podido sumar
+	 * @param lote el lote devuelto por sacarPendientes
+	 */
+	public void devolver(Map<String, Integer> lote) {
+		for (Map.Entry<String, Integer> e : lote.entrySet()) {
+			Cupo cupo = cupos.get(e.getKey());
+			if (cupo != null) {
+				cupo.pendientes.addAndGet(e.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Plazas libres y canjes pendientes de un boleto
+	 */
+	public static class Cupo {
+		private final AtomicInteger libres;
+		private final AtomicInteger pendientes = new AtomicInteger();
+		// los canjes en curso comparten el bloqueo de lectura, y cerrar() toma
+		// el de escritura para esperarlos
+		private final ReentrantReadWriteLock enCurso = new ReentrantReadWriteLock();
+		private volatile boolean cerrado;
+
+		Cupo(int libres) {
+			this.libres = new AtomicInteger(Math.max(0, libres));
+		}
+
+		/**
+		 * Reserva una plaza. Si la consigue, el mismo hilo debe llamar despues a terminar.
+		 * @return true si hay plaza, false si el boleto esta agotado
+		 */
+		public boolean reservar() {
+			enCurso.readLock().lock();
+			if (!cerrado) {
+				int l = libres.get();
+				while (l > 0) {
+					if (libres.compareAndSet(l, l - 1)) {
+						return true;
+					}
+					l = libres.get();
+				}
+			}
+			enCurso.readLock().unlock();
+			return false;
+		}
+
+		/**
+		 * Termina un canje que tenia plaza reservada
+		 * @param canjeado true si se ha hecho, false si ha fallado y la plaza queda libre
+		 * @return los canjes pendientes de sumar de este boleto
+		 */
+		public int terminar(boolean canjeado) {
+			try {
+				if (canjeado) {
+					return pendientes.incrementAndGet();
+				}
+				libres.incrementAndGet();
+				return pendientes.get();
+			} finally {
+				enCurso.readLock().unlock();
+			}
+		}
+
+		public int getLibres() {
+			return libres.get();
+		}
+
+		public int getPendientes() {
+			return pendientes.get();
+		}
+	}
+}
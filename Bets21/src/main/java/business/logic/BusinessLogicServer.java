@@ -17,6 +17,8 @@ import configuration.ConfigXML;
 import javax.swing.JTextArea;
 import javax.xml.ws.Endpoint;
 
+import metrics.MetricasHandler;
+
 
 import java.awt.event.ActionListener;
 import java.awt.event.ActionEvent;
@@ -107,7 +109,9 @@ public class BusinessLogicServer extends JDialog {
 				
 				service= "http://"+c.getBusinessLogicNode() +":"+ c.getBusinessLogicPort()+"/ws/"+c.getBusinessLogicName();
 				
-				Endpoint.publish(service, new BLFacadeImplementation());
+				Endpoint endpoint = Endpoint.create(new BLFacadeImplementation());
+				MetricasHandler.instalar(endpoint, "BLFacade");
+				endpoint.publish(service);
 				
 				
 			}
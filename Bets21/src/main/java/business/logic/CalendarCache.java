@@ -0,0 +1,200 @@
+package business.logic;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import configuration.UtilDate;
+import domain.Event;
+
+/**
+ * Cache del calendario de eventos: los dias con eventos de cada mes y los
+ * eventos de cada dia. Cada mapa guarda como mucho maxEntradas claves y
+ * descarta la menos usada recientemente cuando se llena. Lo guardado no sale
+ * nunca de la cache: cada llamada recibe copias de las fechas y de los eventos
+ * con sus preguntas, que puede modificar sin afectar a las demas.
+ * Quien lee de la base de datos para guardar el resultado debe leer antes la
+ * epoca, que cambia con cada invalidacion; si ha cambiado mientras tanto, el
+ * resultado puede ser de antes de la invalidacion y no se guarda.
+ */
+public class CalendarCache {
+
+	private final Map<Long, List<Date>> meses;
+	private final Map<Long, List<Event>> dias;
+
+	private long epoca;
+
+	private final AtomicLong aciertos = new AtomicLong();
+	private final AtomicLong fallos = new AtomicLong();
+
+	/**
+	 * @param maxEntradas numero maximo de meses y de dias guardados
+	 */
+	public CalendarCache(int maxEntradas) {
+		this.meses = new Lru<List<Date>>(maxEntradas);
+		this.dias = new Lru<List<Event>>(maxEntradas);
+	}
+
+	/**
+	 * Devuelve los dias con eventos del mes de una fecha
+	 * @param fecha cualquier fecha del mes
+	 * @return una copia de los dias guardados, o null si el mes no esta en cache
+	 */
+	public List<Date> getMes(Date fecha) {
+		List<Date> fechas;
+		synchronized (this) {
+			fechas = contar(meses.get(claveMes(fecha)));
+		}
+		return copiaFechas(fechas);
+	}
+
+	/**
+	 * Guarda los dias con eventos de un mes, si no ha habido ninguna
+	 * invalidacion desde que se leyo la epoca
+	 * @param fecha cualquier fecha del mes
+	 * @param fechas los dias con eventos
+	 * @param leida la epoca leida antes de consultar la base de datos
+	 * @return una copia de los dias, que se puede devolver como si fuera un acierto
+	 */
+	public List<Date> putMes(Date fecha, List<Date> fechas, long leida) {
+		List<Date> guardada = copiaFechas(fechas);
+		synchronized (this) {
+			if (leida == epoca) {
+				meses.put(claveMes(fecha), guardada);
+			}
+		}
+		return copiaFechas(guardada);
+	}
+
+	/**
+	 * Devuelve los eventos de un dia
+	 * @param fecha el dia
+	 * @return una copia de los eventos guardados, o null si el dia no esta en cache
+	 */
+	public List<Event> getDia(Date fecha) {
+		List<Event> eventos;
+		synchronized (this) {
+			eventos = contar(dias.get(claveDia(fecha)));
+		}
+		return copiaEventos(eventos);
+	}
+
+	/**
+	 * Guarda los eventos de un dia, si no ha habido ninguna invalidacion desde
+	 * que se leyo la epoca
+	 * @param fecha el dia
+	 * @param eventos los eventos de ese dia
+	 * @param leida la epoca leida antes de consultar la base de datos
+	 * @return una copia de los eventos, que se puede devolver como si fuera un acierto
+	 */
+	public List<Event> putDia(Date fecha, List<Event> eventos, long leida) {
+		List<Event> guardada = copiaEventos(eventos);
+		synchronized (this) {
+			if (leida == epoca) {
+				dias.put(claveDia(fecha), guardada);
+			}
+		}
+		return copiaEventos(guardada);
+	}
+
+	/**
+	 * @return la epoca actual, que hay que leer antes de consultar la base de
+	 * datos para luego guardar el resultado
+	 */
+	public synchronized long getEpoca() {
+		return epoca;
+	}
+
+	/**
+	 * Olvida el dia de una fecha y su mes, porque se ha creado, borrado o movido
+	 * un evento en ella
+	 * @param fecha la fecha del evento
+	 */
+	public synchronized void invalidarFecha(Date fecha) {
+		if (fecha == null) return;
+		epoca++;
+		meses.remove(claveMes(fecha));
+		dias.remove(claveDia(fecha));
+	}
+
+	/**
+	 * Olvida los eventos de todos los dias, pero no los meses, porque ha cambiado
+	 * el contenido de algun evento sin cambiar su fecha
+	 */
+	public synchronized void invalidarDias() {
+		epoca++;
+		dias.clear();
+	}
+
+	public synchronized void invalidarTodo() {
+		epoca++;
+		meses.clear();
+		dias.clear();
+	}
+
+	public long getAciertos() {
+		return aciertos.get();
+	}
+
+	public long getFallos() {
+		return fallos.get();
+	}
+
+	public String toString() {
+		return "CalendarCache[meses=" + meses.size() + ", dias=" + dias.size() + ", aciertos=" + getAciertos()
+				+ ", fallos=" + getFallos() + "]";
+	}
+
+	private <T> List<T> contar(List<T> valor) {
+		if (valor == null) {
+			fallos.incrementAndGet();
+		} else {
+			aciertos.incrementAndGet();
+		}
+		return valor;
+	}
+
+	private static List<Date> copiaFechas(List<Date> valor) {
+		if (valor == null) return null;
+		List<Date> copia = new ArrayList<Date>(valor.size());
+		for (Date d : valor) {
+			copia.add(d == null ? null : new Date(d.getTime()));
+		}
+		return copia;
+	}
+
+	private static List<Event> copiaEventos(List<Event> valor) {
+		if (valor == null) return null;
+		List<Event> copia = new ArrayList<Event>(valor.size());
+		for (Event ev : valor) {
+			copia.add(ev == null ? null : ev.copia());
+		}
+		return copia;
+	}
+
+	private static Long claveMes(Date fecha) {
+		return UtilDate.firstDayMonth(fecha).getTime();
+	}
+
+	private static Long claveDia(Date fecha) {
+		// getEvents busca los eventos de esa fecha exacta, asi que no se recorta
+		return fecha.getTime();
+	}
+
+	private static class Lru<V> extends LinkedHashMap<Long, V> {
+		private static final long serialVersionUID = 1L;
+		private final int maxEntradas;
+
+		Lru(int maxEntradas) {
+			super(16, 0.75f, true);
+			this.maxEntradas = Math.max(1, maxEntradas);
+		}
+
+		protected boolean removeEldestEntry(Map.Entry<Long, V> eldest) {
+			return size() > maxEntradas;
+		}
+	}
+}
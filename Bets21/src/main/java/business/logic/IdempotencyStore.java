@@ -0,0 +1,134 @@
+package business.logic;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.RollbackException;
+
+/**
+ * Resultados recientes de las operaciones que mueven dinero, por la clave que
+ * manda el cliente. Si un cliente repite una llamada con la misma clave, por
+ * ejemplo porque no le ha llegado la respuesta, se le devuelve el resultado de
+ * la primera sin repetirla; si la primera aun no ha terminado, se espera a que
+ * termine. Las claves caducan tras ttlMillis y como mucho se guardan
+ * maxClaves, descartando las mas antiguas que ya han terminado. Solo se olvida
+ * la clave de una operacion cuya transaccion se ha deshecho (RollbackException),
+ * porque entonces seguro que no ha guardado nada y se puede volver a intentar.
+ * Con cualquier otro fallo la clave se recuerda con ese fallo, porque puede
+ * que la operacion haya guardado algo antes de fallar. Las claves solo se
+ * recuerdan en esta fachada.
+ */
+public class IdempotencyStore {
+
+	private final LinkedHashMap<String, Entrada> claves = new LinkedHashMap<String, Entrada>();
+	private final int maxClaves;
+	private final long ttlMillis;
+	private final AtomicLong repetidas = new AtomicLong();
+
+	/**
+	 * @param maxClaves numero maximo de claves recordadas
+	 * @param ttlMillis milisegundos durante los que se recuerda cada clave
+	 */
+	public IdempotencyStore(int maxClaves, long ttlMillis) {
+		this.maxClaves = Math.max(1, maxClaves);
+		this.ttlMillis = ttlMillis;
+	}
+
+	/**
+	 * Ejecuta la operacion si la clave no se ha visto antes, o devuelve el
+	 * resultado de la vez anterior
+	 * @param clave la clave del cliente, ya unida a la operacion y al usuario
+	 * @param operacion lo que hay que hacer la primera vez
+	 * @return lo que devolvio la operacion
+	 * @throws Exception la excepcion que lanzo la operacion, tambien al repetirla
+	 */
+	public <T> T ejecutar(String clave, Callable<T> operacion) throws Exception {
+		Entrada nueva = new Entrada(System.currentTimeMillis());
+		Entrada previa;
+		synchronized (this) {
+			purgar(nueva.creada);
+			previa = claves.get(clave);
+			if (previa == null) {
+				claves.put(clave, nueva);
+			}
+		}
+		if (previa != null) {
+			repetidas.incrementAndGet();
+			return resultado(previa);
+		}
+		try {
+			T valor = operacion.call();
+			nueva.complete(valor);
+			return valor;
+		} catch (RollbackException e) {
+			olvidar(clave, nueva);
+			nueva.completeExceptionally(e);
+			throw e;
+		} catch (Exception | Error e) {
+			nueva.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * @return llamadas que se han contestado con el resultado de una anterior
+	 */
+	public long getRepetidas() {
+		return repetidas.get();
+	}
+
+	public synchronized int size() {
+		return claves.size();
+	}
+
+	private synchronized void olvidar(String clave, Entrada entrada) {
+		if (claves.get(clave) == entrada) {
+			claves.remove(clave);
+		}
+	}
+
+	/**
+	 * Quita las claves caducadas y las que sobran. Las claves estan en orden de
+	 * llegada, asi que basta con mirar las primeras. Las de operaciones que aun
+	 * no han terminado no se quitan nunca, aunque sobren
+	 */
+	private void purgar(long ahora) {
+		Iterator<Map.Entry<String, Entrada>> it = claves.entrySet().iterator();
+		while (it.hasNext()) {
+			Entrada e = it.next().getValue();
+			if (claves.size() < maxClaves && ahora - e.creada <= ttlMillis) break;
+			if (e.isDone()) {
+				it.remove();
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T resultado(Entrada entrada) throws Exception {
+		try {
+			return (T) entrada.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrumpido esperando a la primera llamada con la misma clave", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Error) throw (Error) e.getCause();
+			throw (Exception) e.getCause();
+		}
+	}
+
+	/**
+	 * El resultado de la primera llamada con una clave
+	 */
+	private static class Entrada extends CompletableFuture<Object> {
+		private final long creada;
+
+		Entrada(long creada) {
+			this.creada = creada;
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package business.logic;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import domain.User;
+
+/**
+ * Registro concurrente de sesiones abiertas. Cada login recibe un token
+ * aleatorio que identifica al usuario en las siguientes llamadas sin tener
+ * que consultar la base de datos. Las sesiones caducan tras un tiempo sin uso.
+ */
+public class SessionRegistry {
+
+	private final ConcurrentHashMap<String, Sesion> sesiones = new ConcurrentHashMap<String, Sesion>();
+	private final SecureRandom random = new SecureRandom();
+	private final long ttlMillis;
+	private final ScheduledExecutorService limpieza;
+
+	/**
+	 * Crea el registro y programa la limpieza periodica de sesiones caducadas
+	 * @param ttlMillis milisegundos sin uso tras los que caduca una sesion
+	 */
+	public SessionRegistry(long ttlMillis) {
+		this.ttlMillis = ttlMillis;
+		this.limpieza = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "session-cleaner");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		long periodo = Math.max(1000, ttlMillis / 2);
+		limpieza.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				purgarCaducadas();
+			}
+		}, periodo, periodo, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Abre una sesion para el usuario
+	 * @param usuario el usuario que ha hecho login
+	 * @return el token de la nueva sesion
+	 */
+	public String crear(User usuario) {
+		byte[] bytes = new byte[24];
+		random.nextBytes(bytes);
+		String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+		sesiones.put(token, new Sesion(usuario, System.currentTimeMillis()));
+		return token;
+	}
+
+	/**
+	 * Devuelve el usuario de una sesion y renueva su caducidad
+	 * @param token el token de la sesion
+	 * @return el usuario, o null si el token no existe o ha caducado
+	 */
+	public User obtener(String token) {
+		if (token == null) return null;
+		Sesion s = sesiones.get(token);
+		if (s == null) return null;
+		long ahora = System.currentTimeMillis();
+		if (ahora - s.ultimoAcceso > ttlMillis) {
+			sesiones.remove(token, s);
+			return null;
+		}
+		s.ultimoAcceso = ahora;
+		return s.usuario;
+	}
+
+	/**
+	 * Sustituye el usuario guardado en una sesion, por ejemplo tras recargarlo
+	 * @param token el token de la sesion
+	 * @param usuario el usuario actualizado
+	 */
+	public void actualizar(String token, User usuario) {
+		if (token == null) return;
+		Sesion s = sesiones.get(token);
+		if (s != null) {
+			s.usuario = usuario;
+		}
+	}
+
+	/**
+	 * Cierra una sesion
+	 * @param token el token de la sesion
+	 * @return el usuario de la sesion cerrada, o null si no existia
+	 */
+	public User eliminar(String token) {
+		if (token == null) return null;
+		Sesion s = sesiones.remove(token);
+		return s == null ? null : s.usuario;
+	}
+
+	/**
+	 * Elimina todas las sesiones que llevan mas del tiempo de caducidad sin usarse
+	 * @return el numero de sesiones eliminadas
+	 */
+	public int purgarCaducadas() {
+		long limite = System.currentTimeMillis() - ttlMillis;
+		int n = 0;
+		Iterator<Map.Entry<String, Sesion>> it = sesiones.entrySet().iterator();
+		while (it.hasNext()) {
+			if (it.next().getValue().ultimoAcceso < limite) {
+				it.remove();
+				n++;
+			}
+		}
+		return n;
+	}
+
+	public int size() {
+		return sesiones.size();
+	}
+
+	private static class Sesion {
+		volatile User usuario;
+		volatile long ultimoAcceso;
+
+		Sesion(User usuario, long ultimoAcceso) {
+			this.usuario = usuario;
+			this.ultimoAcceso = ultimoAcceso;
+		}
+	}
+}
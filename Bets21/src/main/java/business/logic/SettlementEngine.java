@@ -0,0 +1,70 @@
+package business.logic;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import configuration.Log;
+
+import dataAccess.DataAccess;
+import domain.Pronosticos;
+import domain.Question;
+
+/**
+ * Liquida las apuestas de una pregunta por lotes. Primero la pregunta deja de
+ * admitir apuestas, para que ninguna llegue despues del ultimo lote y se quede
+ * sin liquidar. Despues cada transaccion liquida como mucho tamLote apuestas,
+ * ganadoras o no, paga las ganadoras agregando los premios por usuario y las
+ * marca todas como liquidadas. La pregunta solo se
+ * cierra cuando todos los lotes se han confirmado, asi que si la liquidacion
+ * falla a medias se puede repetir y solo liquida las apuestas que faltaban.
+ */
+public class SettlementEngine {
+
+	private static final Logger log = Log.get(SettlementEngine.class);
+
+	private final DataAccess dbManager;
+	private final int tamLote;
+
+	/**
+	 * @param dbManager el acceso a datos, que debe estar abierto en el hilo que liquida
+	 * @param tamLote numero maximo de apuestas liquidadas en cada transaccion
+	 */
+	public SettlementEngine(DataAccess dbManager, int tamLote) {
+		this.dbManager = dbManager;
+		this.tamLote = Math.max(1, tamLote);
+	}
+
+	/**
+	 * Paga a todos los usuarios que han acertado el pronostico y cierra la pregunta
+	 * @param q la pregunta a liquidar
+	 * @param p el pronostico ganador
+	 * @return el informe de la liquidacion
+	 */
+	public SettlementReport liquidar(Question q, Pronosticos p) {
+		long inicio = System.nanoTime();
+
+		// a partir de aqui las apuestas de la pregunta ya no cambian
+		dbManager.empezarLiquidacion(q);
+		int transacciones = 1;
+		long apuestas = dbManager.contarApuestasGanadoras(q, p);
+
+		Map<Integer, Double> pagados = new HashMap<Integer, Double>();
+		int ultima = 0;
+		while ((ultima = dbManager.pagarLote(q, p, ultima, tamLote, pagados)) > 0) {
+			transacciones++;
+		}
+		dbManager.cerrarApuestaPregunta(q, p);
+		transacciones++;
+
+		double pagado = 0;
+		for (double premio : pagados.values()) {
+			pagado += premio;
+		}
+		SettlementReport informe = new SettlementReport(q.getQuestionNumber(), apuestas, pagados.size(), pagado,
+				transacciones, (System.nanoTime() - inicio) / 1000000);
+		log.log(Level.INFO, "{0}", informe);
+		return informe;
+	}
+}
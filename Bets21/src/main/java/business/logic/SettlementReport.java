@@ -0,0 +1,62 @@
+package business.logic;
+
+/**
+ * Resultado de liquidar una pregunta con SettlementEngine
+ */
+public class SettlementReport {
+
+	private final int pregunta;
+	private final long apuestasGanadoras;
+	private final int usuariosPagados;
+	private final double totalPagado;
+	private final int transacciones;
+	private final long millis;
+
+	public SettlementReport(int pregunta, long apuestasGanadoras, int usuariosPagados, double totalPagado,
+			int transacciones, long millis) {
+		this.pregunta = pregunta;
+		this.apuestasGanadoras = apuestasGanadoras;
+		this.usuariosPagados = usuariosPagados;
+		this.totalPagado = totalPagado;
+		this.transacciones = transacciones;
+		this.millis = millis;
+	}
+
+	public int getPregunta() {
+		return pregunta;
+	}
+
+	public long getApuestasGanadoras() {
+		return apuestasGanadoras;
+	}
+
+	public int getUsuariosPagados() {
+		return usuariosPagados;
+	}
+
+	public double getTotalPagado() {
+		return totalPagado;
+	}
+
+	public int getTransacciones() {
+		return transacciones;
+	}
+
+	public long getMillis() {
+		return millis;
+	}
+
+	/**
+	 * Apuestas liquidadas por segundo
+	 * @return el rendimiento de la liquidacion
+	 */
+	public double getApuestasPorSegundo() {
+		return apuestasGanadoras * 1000.0 / Math.max(1, millis);
+	}
+
+	public String toString() {
+		return "Liquidada pregunta " + pregunta + ": " + apuestasGanadoras + " apuestas ganadoras, "
+				+ usuariosPagados + " usuarios, " + totalPagado + " chutiDolares pagados en " + transacciones
+				+ " transacciones (" + millis + " ms, " + String.format("%.1f", getApuestasPorSegundo()) + " apuestas/s)";
+	}
+}
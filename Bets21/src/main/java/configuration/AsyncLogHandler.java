@@ -0,0 +1,120 @@
+package configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Handler que deja los registros en una cola acotada y los escribe en otro
+ * handler desde un hilo propio, de modo que quien registra nunca espera a la
+ * consola. Si la cola esta llena el registro se descarta y se cuenta. Al
+ * parar la maquina virtual se cierra solo, para no perder lo que quede en la
+ * cola, ya que el hilo escritor es daemon y no la vacia.
+ */
+public class AsyncLogHandler extends Handler {
+
+	private static final Formatter mensajes = new SimpleFormatter();
+
+	private final Handler destino;
+	private final BlockingQueue<LogRecord> cola;
+	private final AtomicLong descartados = new AtomicLong();
+	private final Thread escritor;
+	private final Thread alParar;
+	private volatile boolean cerrado;
+
+	/**
+	 * @param destino el handler que escribe de verdad, usado solo desde el hilo escritor
+	 * @param capacidad registros que pueden esperar en la cola
+	 */
+	public AsyncLogHandler(Handler destino, int capacidad) {
+		this.destino = destino;
+		this.cola = new ArrayBlockingQueue<LogRecord>(Math.max(1, capacidad));
+		escritor = new Thread(new Runnable() {
+			public void run() {
+				escribir();
+			}
+		}, "log-writer");
+		escritor.setDaemon(true);
+		escritor.start();
+		alParar = new Thread(new Runnable() {
+			public void run() {
+				close();
+			}
+		}, "log-close");
+		Runtime.getRuntime().addShutdownHook(alParar);
+	}
+
+	public void publish(LogRecord r) {
+		if (cerrado || !isLoggable(r)) return;
+		// Los parametros pueden ser entidades que solo se deben leer en este hilo,
+		// asi que el mensaje se compone aqui y el origen se fija para no buscarlo
+		// despues en la pila de otro hilo
+		r.setMessage(mensajes.formatMessage(r));
+		r.setParameters(null);
+		r.setSourceClassName(r.getLoggerName());
+		if (!cola.offer(r)) {
+			descartados.incrementAndGet();
+		}
+	}
+
+	/**
+	 * No espera a la cola: el hilo escritor vuelca el destino cada vez que la vacia
+	 */
+	public void flush() {
+	}
+
+	/**
+	 * Escribe lo que quede en la cola y deja de aceptar registros. El destino se
+	 * vuelca pero no se cierra, porque normalmente escribe en System.out.
+	 */
+	public synchronized void close() {
+		if (cerrado) return;
+		cerrado = true;
+		if (Thread.currentThread() != alParar) {
+			try {
+				Runtime.getRuntime().removeShutdownHook(alParar);
+			} catch (IllegalStateException e) {
+				// la maquina virtual ya se esta parando
+			}
+		}
+		escritor.interrupt();
+		try {
+			escritor.join(TimeUnit.SECONDS.toMillis(1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		LogRecord r;
+		while ((r = cola.poll()) != null) {
+			destino.publish(r);
+		}
+		if (descartados.get() > 0) {
+			System.err.println("Log: " + descartados.get() + " registros descartados con la cola llena");
+		}
+		destino.flush();
+	}
+
+	/**
+	 * @return registros que no se han escrito porque la cola estaba llena
+	 */
+	public long getDescartados() {
+		return descartados.get();
+	}
+
+	private void escribir() {
+		try {
+			while (!cerrado) {
+				destino.publish(cola.take());
+				if (cola.isEmpty()) {
+					destino.flush();
+				}
+			}
+		} catch (InterruptedException e) {
+			// close() se encarga de lo que quede en la cola
+		}
+	}
+}
@@ -22,6 +22,49 @@ public class ConfigXML {
 	private String businessLogicPort;
 
 	private String businessLogicName;
+
+	//Minutes a logged in session is kept without being used
+	private int sessionTimeout;
+
+	//Maximum number of bets settled in each transaction when a question is settled
+	private int settlementBatchSize;
+
+	//Minutes between two refreshes of the balance snapshots from the ledger
+	private int snapshotInterval;
+
+	//Maximum number of months and of days kept by the event calendar cache
+	private int calendarCacheSize;
+
+	//Boleto redemptions kept in memory before adding them to Boleto.usados, and seconds between two flushes
+	private int boletoBatchSize;
+	private int boletoFlushInterval;
+
+	//Maximum number of CSV rows saved in each transaction when importing teams and players
+	private int csvBatchSize;
+
+	//Maximum number of bets saved together in one transaction (1 = one transaction per bet),
+	//milliseconds a bet may wait for others to join its transaction,
+	//and milliseconds a bet may stay queued before it is dropped without saving it
+	private int betBatchSize;
+	private int betMaxLatency;
+	private int betQueueTimeout;
+
+	//Idempotency keys remembered at most, and minutes after which a key is forgotten
+	private int idempotencyKeys;
+	private int idempotencyTtl;
+
+	//Times a transaction that changes balances is tried when it conflicts with another one,
+	//and milliseconds of the first random wait between two tries (doubled on each try, up to 64 times)
+	private int dbRetries;
+	private int dbRetryBackoff;
+
+	//File where the per-operation metrics are dumped, and minutes between two dumps (0 = never)
+	private String metricsFile;
+	private int metricsInterval;
+
+	//Lowest level written by the application loggers, and records kept waiting for the console before dropping them
+	private String logLevel;
+	private int logQueueSize;
 	
 	private static String dbFilename;
 
@@ -46,6 +89,15 @@ public class ConfigXML {
 	
 	private String locale;
 
+	//Maximum number of EntityManagers kept open by the DataAccess pool
+	private int dbPoolSize;
+
+	//Milliseconds a request waits for a free EntityManager before failing
+	private long dbPoolTimeout;
+
+	//Number of sub-accounts the house balance is split into
+	private int houseStripes;
+
 	public String getLocale() {
 		return locale;
 	}
@@ -92,6 +144,42 @@ public class ConfigXML {
 			  businessLogicPort = getTagValue("businessLogicPort", config);
 
 			  businessLogicName = getTagValue("businessLogicName", config);
+
+			  sessionTimeout = Integer.parseInt(getTagValue("sessionTimeout", config, "30"));
+
+			  settlementBatchSize = Integer.parseInt(getTagValue("settlementBatchSize", config, "500"));
+
+			  snapshotInterval = Integer.parseInt(getTagValue("snapshotInterval", config, "10"));
+
+			  calendarCacheSize = Integer.parseInt(getTagValue("calendarCacheSize", config, "64"));
+
+			  boletoBatchSize = Integer.parseInt(getTagValue("boletoBatchSize", config, "100"));
+
+			  boletoFlushInterval = Integer.parseInt(getTagValue("boletoFlushInterval", config, "5"));
+
+			  csvBatchSize = Integer.parseInt(getTagValue("csvBatchSize", config, "500"));
+
+			  betBatchSize = Integer.parseInt(getTagValue("betBatchSize", config, "100"));
+
+			  betMaxLatency = Integer.parseInt(getTagValue("betMaxLatency", config, "5"));
+
+			  betQueueTimeout = Integer.parseInt(getTagValue("betQueueTimeout", config, "10000"));
+
+			  idempotencyKeys = Integer.parseInt(getTagValue("idempotencyKeys", config, "100000"));
+
+			  idempotencyTtl = Integer.parseInt(getTagValue("idempotencyTtl", config, "60"));
+
+			  dbRetries = Integer.parseInt(getTagValue("dbRetries", config, "20"));
+
+			  dbRetryBackoff = Integer.parseInt(getTagValue("dbRetryBackoff", config, "2"));
+
+			  metricsFile = getTagValue("metricsFile", config, "metrics.txt");
+
+			  metricsInterval = Integer.parseInt(getTagValue("metricsInterval", config, "0"));
+
+			  logLevel = getTagValue("logLevel", config, "INFO");
+
+			  logQueueSize = Integer.parseInt(getTagValue("logQueueSize", config, "10000"));
 			  
 			  locale = getTagValue("locale", config);
 
@@ -99,7 +187,8 @@ public class ConfigXML {
 			  
 				
 
-			  dbFilename = getTagValue("dbFilename", config);
+			  // -Dbets21.dbFilename permite usar otro fichero sin tocar config.xml, p.ej. en los benchmarks
+			  dbFilename = System.getProperty("bets21.dbFilename", getTagValue("dbFilename", config));
 
 				//Two possible values: true (no instance of RemoteServer needs to be launched) or false (RemoteServer needs to be run first)
 			  value= ((Element)config.getElementsByTagName("database").item(0)).getAttribute("local");
@@ -118,6 +207,12 @@ public class ConfigXML {
 				
 			  password=getTagValue("password", config);
 
+			  dbPoolSize=Integer.parseInt(getTagValue("dbPoolSize", config, "8"));
+
+			  dbPoolTimeout=Long.parseLong(getTagValue("dbPoolTimeout", config, "5000"));
+
+			  houseStripes=Integer.parseInt(getTagValue("houseStripes", config, "16"));
+
 			  System.out.print("Read from config.xml: ");
 			  System.out.print("\t businessLogicLocal="+businessLogicLocal);
 			  System.out.print("\t databaseLocal="+databaseLocal);
@@ -138,6 +233,12 @@ public class ConfigXML {
 		  return nValue.getNodeValue();
 
 	 }
+
+	private static String getTagValue(String sTag, Element eElement, String defaultValue)
+	 {
+		  if (eElement.getElementsByTagName(sTag).getLength()==0) return defaultValue;
+		  return getTagValue(sTag, eElement);
+	 }
 	
 	public static ConfigXML getInstance() {
 		return theInstance;
@@ -154,6 +255,78 @@ public class ConfigXML {
 	public String getBusinessLogicName() {
 		return businessLogicName;
 	}
+
+	public int getSessionTimeout() {
+		return sessionTimeout;
+	}
+
+	public int getSettlementBatchSize() {
+		return settlementBatchSize;
+	}
+
+	public int getSnapshotInterval() {
+		return snapshotInterval;
+	}
+
+	public int getCalendarCacheSize() {
+		return calendarCacheSize;
+	}
+
+	public int getBoletoBatchSize() {
+		return boletoBatchSize;
+	}
+
+	public int getBoletoFlushInterval() {
+		return boletoFlushInterval;
+	}
+
+	public int getCsvBatchSize() {
+		return csvBatchSize;
+	}
+
+	public int getBetBatchSize() {
+		return betBatchSize;
+	}
+
+	public int getBetMaxLatency() {
+		return betMaxLatency;
+	}
+
+	public int getBetQueueTimeout() {
+		return betQueueTimeout;
+	}
+
+	public int getIdempotencyKeys() {
+		return idempotencyKeys;
+	}
+
+	public int getIdempotencyTtl() {
+		return idempotencyTtl;
+	}
+
+	public int getDbRetries() {
+		return dbRetries;
+	}
+
+	public int getDbRetryBackoff() {
+		return dbRetryBackoff;
+	}
+
+	public String getMetricsFile() {
+		return metricsFile;
+	}
+
+	public int getMetricsInterval() {
+		return metricsInterval;
+	}
+
+	public String getLogLevel() {
+		return logLevel;
+	}
+
+	public int getLogQueueSize() {
+		return logQueueSize;
+	}
 	
 	public String getDbFilename(){
 		return dbFilename;
@@ -167,4 +340,16 @@ public class ConfigXML {
 		return databaseNode;
 	}
 
+	public int getDbPoolSize() {
+		return dbPoolSize;
+	}
+
+	public long getDbPoolTimeout() {
+		return dbPoolTimeout;
+	}
+
+	public int getHouseStripes() {
+		return houseStripes;
+	}
+
 }
@@ -0,0 +1,99 @@
+package configuration;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.StreamHandler;
+
+/**
+ * Registro de la aplicacion sobre java.util.logging. La primera vez que se
+ * pide un logger se da a los paquetes de la aplicacion el nivel logLevel de
+ * config.xml y la consola se cambia por un AsyncLogHandler, asi que ningun
+ * hilo que registre espera a que se escriba System.out.
+ */
+public final class Log {
+
+	private static final String[] PAQUETES = { "business", "configuration", "dataAccess", "domain", "gui", "metrics",
+			"test" };
+
+	// java.util.logging solo guarda referencias debiles a los loggers, y con
+	// ellos se perderia el nivel configurado
+	private static final List<Logger> paquetes = new ArrayList<Logger>();
+	private static AsyncLogHandler consola;
+
+	private Log() {
+	}
+
+	/**
+	 * Devuelve el logger de una clase
+	 * @param clase la clase que registra
+	 * @return el logger, con el registro ya configurado
+	 */
+	public static Logger get(Class<?> clase) {
+		configurar();
+		return Logger.getLogger(clase.getName());
+	}
+
+	/**
+	 * @return el handler que escribe en la consola
+	 */
+	public static AsyncLogHandler getConsola() {
+		configurar();
+		return consola;
+	}
+
+	private static synchronized void configurar() {
+		if (consola != null) return;
+		ConfigXML c = ConfigXML.getInstance();
+		StreamHandler salida = new StreamHandler(System.out, new Formato());
+		salida.setLevel(Level.ALL);
+		consola = new AsyncLogHandler(salida, c.getLogQueueSize());
+		consola.setLevel(Level.ALL);
+
+		Logger raiz = Logger.getLogger("");
+		for (Handler h : raiz.getHandlers()) {
+			if (h instanceof ConsoleHandler) {
+				raiz.removeHandler(h);
+			}
+		}
+		raiz.addHandler(consola);
+
+		Level nivel = Level.parse(c.getLogLevel().trim().toUpperCase());
+		for (String paquete : PAQUETES) {
+			Logger l = Logger.getLogger(paquete);
+			l.setLevel(nivel);
+			paquetes.add(l);
+		}
+	}
+
+	/**
+	 * Una linea por registro: hora, nivel, logger y mensaje
+	 */
+	static class Formato extends Formatter {
+
+		private final SimpleDateFormat hora = new SimpleDateFormat("HH:mm:ss.SSS");
+
+		public String format(LogRecord r) {
+			StringBuilder sb = new StringBuilder();
+			sb.append(hora.format(new Date(r.getMillis()))).append(' ');
+			sb.append(String.format("%-7s ", r.getLevel().getName()));
+			sb.append(r.getLoggerName()).append(" - ").append(formatMessage(r));
+			sb.append(System.lineSeparator());
+			if (r.getThrown() != null) {
+				StringWriter traza = new StringWriter();
+				r.getThrown().printStackTrace(new PrintWriter(traza));
+				sb.append(traza);
+			}
+			return sb.toString();
+		}
+	}
+}
@@ -3,9 +3,13 @@ package configuration;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.TimeZone;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class UtilDate {
 
+	private static final Logger log = Log.get(UtilDate.class);
+
 	
 	public static Date trim(Date date) {
 
@@ -25,7 +29,7 @@ public class UtilDate {
 		 calendar.setTimeZone(TimeZone.getTimeZone("CET"));
 	     calendar.set(year, month, day,0,0,0);
 	     calendar.set(Calendar.MILLISECOND, 0);
-	     System.out.println("newDate: "+calendar.getTime());
+	     log.log(Level.FINE, "newDate: {0}", calendar.getTime());
 	     return calendar.getTime();
 	}
 	
@@ -0,0 +1,140 @@
+package dataAccess;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultado de importar un fichero CSV con CsvImporter. De las filas
+ * rechazadas solo se guardan las primeras MAX_RECHAZOS, aunque se cuentan todas.
+ */
+public class CsvImportReport {
+
+	public static final int MAX_RECHAZOS = 1000;
+
+	private final String fichero;
+	private int filas;
+	private int nuevos;
+	private int actualizados;
+	private int rechazados;
+	private final List<Rechazo> rechazos = new ArrayList<Rechazo>();
+	private int transacciones;
+	private long millis;
+
+	public CsvImportReport(String fichero) {
+		this.fichero = fichero;
+	}
+
+	void nuevo() {
+		filas++;
+		nuevos++;
+	}
+
+	void actualizado() {
+		filas++;
+		actualizados++;
+	}
+
+	void rechazar(int linea, String motivo) {
+		filas++;
+		rechazados++;
+		if (rechazos.size() < MAX_RECHAZOS) {
+			rechazos.add(new Rechazo(linea, motivo));
+		}
+	}
+
+	/**
+	 * Pasa a rechazadas filas que ya se habian contado como guardadas, porque la
+	 * transaccion de su lote no se ha podido confirmar
+	 */
+	void descartarLote(int nuevosLote, int actualizadosLote, List<Integer> lineas, String motivo) {
+		nuevos -= nuevosLote;
+		actualizados -= actualizadosLote;
+		filas -= lineas.size();
+		for (int linea : lineas) {
+			rechazar(linea, motivo);
+		}
+	}
+
+	void transaccion() {
+		transacciones++;
+	}
+
+	void terminar(long millis) {
+		this.millis = millis;
+	}
+
+	public String getFichero() {
+		return fichero;
+	}
+
+	public int getFilas() {
+		return filas;
+	}
+
+	public int getNuevos() {
+		return nuevos;
+	}
+
+	public int getActualizados() {
+		return actualizados;
+	}
+
+	public int getRechazados() {
+		return rechazados;
+	}
+
+	/**
+	 * @return las primeras filas rechazadas, con su linea y el motivo
+	 */
+	public List<Rechazo> getRechazos() {
+		return Collections.unmodifiableList(rechazos);
+	}
+
+	public int getTransacciones() {
+		return transacciones;
+	}
+
+	public long getMillis() {
+		return millis;
+	}
+
+	/**
+	 * Filas importadas por segundo
+	 * @return el rendimiento de la importacion
+	 */
+	public double getFilasPorSegundo() {
+		return filas * 1000.0 / Math.max(1, millis);
+	}
+
+	public String toString() {
+		return "Importado " + fichero + ": " + filas + " filas, " + nuevos + " nuevas, " + actualizados
+				+ " actualizadas, " + rechazados + " rechazadas en " + transacciones + " transacciones (" + millis
+				+ " ms, " + String.format("%.1f", getFilasPorSegundo()) + " filas/s)";
+	}
+
+	/**
+	 * Una fila que no se ha importado
+	 */
+	public static class Rechazo {
+		private final int linea;
+		private final String motivo;
+
+		public Rechazo(int linea, String motivo) {
+			this.linea = linea;
+			this.motivo = motivo;
+		}
+
+		public int getLinea() {
+			return linea;
+		}
+
+		public String getMotivo() {
+			return motivo;
+		}
+
+		public String toString() {
+			return "linea " + linea + ": " + motivo;
+		}
+	}
+}
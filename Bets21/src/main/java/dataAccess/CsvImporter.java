@@ -0,0 +1,382 @@
+package dataAccess;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import javax.persistence.TypedQuery;
+
+import configuration.Log;
+import domain.Equipo;
+import domain.EquipoId;
+import domain.Event;
+import domain.Jugador;
+import domain.Pronosticos;
+import domain.Question;
+
+/**
+ * Importa equipos, jugadores y calendarios desde ficheros CSV leyendo una fila cada vez.
+ * Las filas se guardan en transacciones de como mucho tamLote filas, y las que
+ * no se pueden importar se apuntan en el informe con su linea y el motivo sin
+ * parar la importacion. Un equipo o jugador que ya existe se actualiza, asi
+ * que importar dos veces el mismo fichero no duplica nada.
+ * <p>
+ * Equipos: nombre, temporada, fundacion, sede, aforo, presidente, entrenador, web
+ * <br>
+ * Jugadores: equipo, temporada, nombre, fecha de nacimiento (yyyy-MM-dd), altura
+ * <br>
+ * Calendarios: ver importarCalendario
+ */
+public class CsvImporter {
+
+	private static final Logger log = Log.get(CsvImporter.class);
+
+	private final DataAccess dbManager;
+	private final int tamLote;
+	private final boolean enTransaccion;
+
+	/**
+	 * @param dbManager el acceso a datos, que debe estar abierto en el hilo que importa
+	 * @param tamLote numero maximo de filas guardadas en cada transaccion
+	 * @param enTransaccion true si las filas se guardan en la transaccion ya abierta
+	 * por quien llama, que es quien la confirma
+	 */
+	public CsvImporter(DataAccess dbManager, int tamLote, boolean enTransaccion) {
+		this.dbManager = dbManager;
+		this.tamLote = Math.max(1, tamLote);
+		this.enTransaccion = enTransaccion;
+	}
+
+	/**
+	 * Importa un fichero de equipos
+	 * @param in el contenido del fichero
+	 * @param fichero nombre del fichero para el informe
+	 * @return el informe de la importacion
+	 * @throws IOException si no se puede leer el fichero
+	 */
+	public CsvImportReport importarEquipos(Reader in, String fichero) throws IOException {
+		return importar(in, fichero, new Fila() {
+			public Boolean guardar(EntityManager db, List<String> campos) {
+				columnas(campos, 8);
+				String nombre = texto(campos, 0, "nombre");
+				int temporada = numero(campos, 1, "temporada");
+				int fundacion = numero(campos, 2, "fundacion");
+				int aforo = numero(campos, 4, "aforo");
+				Equipo eq = db.find(Equipo.class, new EquipoId(nombre, temporada));
+				boolean nuevo = eq == null;
+				if (nuevo) {
+					eq = new Equipo(nombre, temporada);
+				}
+				eq.setFundacion(fundacion);
+				eq.setSede(campos.get(3));
+				eq.setAforo(aforo);
+				eq.setPresidente(campos.get(5));
+				eq.setEntrenador(campos.get(6));
+				eq.setWeb(campos.get(7));
+				if (nuevo) {
+					db.persist(eq);
+				}
+				return nuevo;
+			}
+		});
+	}
+
+	/**
+	 * Importa un fichero de jugadores. Cada jugador se guarda dentro de su
+	 * equipo, que tiene que existir ya.
+	 * @param in el contenido del fichero
+	 * @param fichero nombre del fichero para el informe
+	 * @return el informe de la importacion
+	 * @throws IOException si no se puede leer el fichero
+	 */
+	public CsvImportReport importarJugadores(Reader in, String fichero) throws IOException {
+		final SimpleDateFormat formato = new SimpleDateFormat("yyyy-MM-dd");
+		formato.setLenient(false);
+		return importar(in, fichero, new Fila() {
+			public Boolean guardar(EntityManager db, List<String> campos) {
+				columnas(campos, 5);
+				String equipo = texto(campos, 0, "equipo");
+				int temporada = numero(campos, 1, "temporada");
+				Jugador j = new Jugador(texto(campos, 2, "nombre"), fecha(formato, campos.get(3), "fecha de nacimiento"));
+				if (!campos.get(4).isEmpty()) {
+					try {
+						j.setAltura(Double.parseDouble(campos.get(4)));
+					} catch (NumberFormatException e) {
+						throw new IllegalArgumentException("la altura no es un numero: " + campos.get(4));
+					}
+				}
+				Equipo eq = equipo(db, equipo, temporada);
+				// se sustituye el elemento para que la lista quede modificada
+				List<Jugador> jugadores = eq.getJugadores();
+				for (int i = 0; i < jugadores.size(); i++) {
+					if (jugadores.get(i).getNombre().equals(j.getNombre())) {
+						jugadores.set(i, j);
+						return false;
+					}
+				}
+				jugadores.add(j);
+				return true;
+			}
+		});
+	}
+
+	/**
+	 * Importa el calendario de una temporada. Cada fila de tipo pregunta define
+	 * una pregunta que se crea, con sus pronosticos, en todos los partidos de las
+	 * filas siguientes; los pronosticos local y visitante son los equipos del
+	 * partido. Un partido ya guardado con la misma fecha y los mismos equipos no
+	 * se repite, solo se le anaden las preguntas y pronosticos que le falten.
+	 * Si una fila de tipo pregunta no es valida, se rechazan todos los partidos
+	 * que la siguen, porque se guardarian sin esa pregunta.
+	 * <p>
+	 * pregunta, texto, apuesta minima, true si se apuesta por un equipo, pronostico=cuota|...
+	 * <br>
+	 * partido, fecha (yyyy-MM-dd), temporada, local, visitante, descripcion
+	 * @param in el contenido del fichero
+	 * @param fichero nombre del fichero para el informe
+	 * @return el informe de la importacion; cuenta partidos, no preguntas
+	 * @throws IOException si no se puede leer el fichero
+	 */
+	public CsvImportReport importarCalendario(Reader in, String fichero) throws IOException {
+		final SimpleDateFormat formato = new SimpleDateFormat("yyyy-MM-dd");
+		formato.setLenient(false);
+		// las fechas de los eventos se guardan a las 0:00 en CET, como en UtilDate.newDate
+		formato.setTimeZone(TimeZone.getTimeZone("CET"));
+		final List<PreguntaPorDefecto> preguntas = new ArrayList<PreguntaPorDefecto>();
+		return importar(in, fichero, new Fila() {
+			private String preguntaNoValida;
+
+			public Boolean guardar(EntityManager db, List<String> campos) {
+				if (campos.get(0).equals("pregunta")) {
+					try {
+						preguntas.add(new PreguntaPorDefecto(campos));
+					} catch (IllegalArgumentException e) {
+						preguntaNoValida = e.getMessage();
+						throw e;
+					}
+					return null;
+				}
+				if (!campos.get(0).equals("partido")) {
+					throw new IllegalArgumentException("tipo de fila desconocido: " + campos.get(0));
+				}
+				if (preguntaNoValida != null) {
+					throw new IllegalArgumentException("va despues de una pregunta no valida: " + preguntaNoValida);
+				}
+				columnas(campos, 6);
+				Date fecha = fecha(formato, campos.get(1), "fecha");
+				int temporada = numero(campos, 2, "temporada");
+				Equipo local = equipo(db, texto(campos, 3, "local"), temporada);
+				Equipo visitante = equipo(db, texto(campos, 4, "visitante"), temporada);
+
+				TypedQuery<Event> query = db.createQuery(
+						"SELECT e FROM Event e WHERE e.eventDate=?1 AND e.eq1=?2 AND e.eq2=?3", Event.class);
+				query.setParameter(1, fecha);
+				query.setParameter(2, local);
+				query.setParameter(3, visitante);
+				List<Event> guardados = query.setMaxResults(1).getResultList();
+				boolean nuevo = guardados.isEmpty();
+				Event ev;
+				if (nuevo) {
+					String descripcion = campos.get(5).isEmpty() ? local + "-" + visitante : campos.get(5);
+					ev = new Event(descripcion, fecha, local, visitante);
+					db.persist(ev);
+				} else {
+					ev = guardados.get(0);
+				}
+				for (PreguntaPorDefecto p : preguntas) {
+					p.anadir(ev);
+				}
+				return nuevo;
+			}
+		});
+	}
+
+	private static Equipo equipo(EntityManager db, String nombre, int temporada) {
+		Equipo eq = db.find(Equipo.class, new EquipoId(nombre, temporada));
+		if (eq == null) {
+			throw new IllegalArgumentException("no existe el equipo " + nombre + " de la temporada " + temporada);
+		}
+		return eq;
+	}
+
+	private CsvImportReport importar(Reader in, String fichero, Fila fila) throws IOException {
+		long inicio = System.nanoTime();
+		CsvImportReport informe = new CsvImportReport(fichero);
+		CsvReader csv = new CsvReader(in);
+		EntityManager db = dbManager.db();
+
+		List<Integer> lineasLote = new ArrayList<Integer>();
+		int nuevosLote = 0;
+		int actualizadosLote = 0;
+		try {
+			List<String> campos;
+			while ((campos = csv.leer()) != null) {
+				if (!enTransaccion && !db.getTransaction().isActive()) {
+					UnitOfWork.current().empezar("importarCsv");
+				}
+				try {
+					Boolean nuevo = fila.guardar(db, campos);
+					if (nuevo == null) {
+						continue;
+					}
+					if (nuevo) {
+						informe.nuevo();
+						nuevosLote++;
+					} else {
+						informe.actualizado();
+						actualizadosLote++;
+					}
+					lineasLote.add(csv.getLinea());
+				} catch (IllegalArgumentException e) {
+					informe.rechazar(csv.getLinea(), e.getMessage());
+				}
+				if (lineasLote.size() == tamLote) {
+					confirmar(db, informe, lineasLote, nuevosLote, actualizadosLote);
+					nuevosLote = 0;
+					actualizadosLote = 0;
+				}
+			}
+			if (!enTransaccion && db.getTransaction().isActive()) {
+				confirmar(db, informe, lineasLote, nuevosLote, actualizadosLote);
+			}
+		} finally {
+			csv.close();
+			if (!enTransaccion && db.getTransaction().isActive()) {
+				UnitOfWork.current().deshacer();
+			}
+		}
+
+		informe.terminar((System.nanoTime() - inicio) / 1000000);
+		log.log(Level.INFO, "{0}", informe);
+		return informe;
+	}
+
+	private void confirmar(EntityManager db, CsvImportReport informe, List<Integer> lineasLote, int nuevosLote,
+			int actualizadosLote) {
+		if (!enTransaccion) {
+			try {
+				UnitOfWork.current().confirmar();
+				informe.transaccion();
+			} catch (PersistenceException e) {
+				log.log(Level.WARNING, "No se ha podido guardar un lote de " + lineasLote.size() + " filas", e);
+				informe.descartarLote(nuevosLote, actualizadosLote, lineasLote, "lote descartado: " + e.getMessage());
+			}
+			db.clear();
+		}
+		lineasLote.clear();
+	}
+
+	private static void columnas(List<String> campos, int n) {
+		if (campos.size() != n) {
+			throw new IllegalArgumentException("se esperaban " + n + " campos y hay " + campos.size());
+		}
+	}
+
+	private static String texto(List<String> campos, int i, String nombre) {
+		String valor = campos.get(i);
+		if (valor.isEmpty()) {
+			throw new IllegalArgumentException("falta el campo " + nombre);
+		}
+		return valor;
+	}
+
+	private static int numero(List<String> campos, int i, String nombre) {
+		try {
+			return Integer.parseInt(campos.get(i));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("el campo " + nombre + " no es un numero: " + campos.get(i));
+		}
+	}
+
+	private static Date fecha(SimpleDateFormat formato, String valor, String nombre) {
+		try {
+			return formato.parse(valor);
+		} catch (ParseException e) {
+			throw new IllegalArgumentException("el campo " + nombre + " no es una fecha yyyy-MM-dd: " + valor);
+		}
+	}
+
+	private static float porcentaje(String valor, String nombre) {
+		try {
+			return Float.parseFloat(valor);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("el campo " + nombre + " no es un numero: " + valor);
+		}
+	}
+
+	/**
+	 * Pregunta que el calendario crea en cada partido, con sus pronosticos
+	 */
+	private static class PreguntaPorDefecto {
+		private final String texto;
+		private final float minimo;
+		private final boolean equipo;
+		private final List<String> pronosticos = new ArrayList<String>();
+		private final List<Float> cuotas = new ArrayList<Float>();
+
+		PreguntaPorDefecto(List<String> campos) {
+			columnas(campos, 5);
+			texto = texto(campos, 1, "texto");
+			minimo = porcentaje(campos.get(2), "apuesta minima");
+			equipo = Boolean.parseBoolean(campos.get(3));
+			for (String p : campos.get(4).split("\\|")) {
+				int igual = p.lastIndexOf('=');
+				if (igual <= 0) {
+					throw new IllegalArgumentException("el pronostico no es nombre=cuota: " + p);
+				}
+				pronosticos.add(p.substring(0, igual).trim());
+				cuotas.add(porcentaje(p.substring(igual + 1).trim(), "cuota"));
+			}
+		}
+
+		void anadir(Event ev) {
+			Question q = null;
+			for (Question existente : ev.getQuestions()) {
+				if (existente.getQuestion().equals(texto)) {
+					q = existente;
+				}
+			}
+			if (q == null) {
+				q = ev.addQuestion(texto, minimo, equipo);
+				q.setEvent(ev);
+			}
+			for (int i = 0; i < pronosticos.size(); i++) {
+				Equipo eq = null;
+				if (pronosticos.get(i).equals("local")) {
+					eq = ev.getEq1();
+				} else if (pronosticos.get(i).equals("visitante")) {
+					eq = ev.getEq2();
+				}
+				String nombre = eq == null ? pronosticos.get(i) : eq.getNombre();
+				boolean existe = false;
+				for (Pronosticos p : q.getPronosticos()) {
+					existe |= nombre.equals(p.getPronostico());
+				}
+				if (!existe) {
+					q.addPronostico(nombre, cuotas.get(i), eq);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Guarda una fila ya separada en campos
+	 */
+	private interface Fila {
+		/**
+		 * @return true si se ha creado un objeto nuevo, false si se ha actualizado uno que ya
+		 * existia, o null si la fila no guarda nada y no cuenta en el informe
+		 * @throws IllegalArgumentException con el motivo si la fila no es valida
+		 */
+		Boolean guardar(EntityManager db, List<String> campos);
+	}
+}
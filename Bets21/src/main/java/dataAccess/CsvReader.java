@@ -0,0 +1,122 @@
+package dataAccess;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lector de ficheros CSV que devuelve un registro cada vez, sin cargar el
+ * fichero en memoria. Admite campos entre comillas con comas, comillas
+ * dobladas y saltos de linea dentro, y quita los espacios de alrededor de los
+ * campos sin comillas.
+ */
+public class CsvReader implements Closeable {
+
+	private final Reader in;
+	private final char separador;
+	private final char[] buf = new char[8192];
+	private int pos;
+	private int len;
+	private int linea = 1;
+	private int lineaRegistro;
+
+	/**
+	 * @param in de donde se leen los caracteres; conviene que no tenga buffer propio
+	 * @param separador el caracter que separa los campos
+	 */
+	public CsvReader(Reader in, char separador) {
+		this.in = in;
+		this.separador = separador;
+	}
+
+	public CsvReader(Reader in) {
+		this(in, ',');
+	}
+
+	/**
+	 * Lee el siguiente registro, saltando las lineas en blanco
+	 * @return los campos del registro, o null al final del fichero
+	 * @throws IOException si no se puede leer, o si el fichero acaba dentro de unas comillas
+	 */
+	public List<String> leer() throws IOException {
+		int c = siguiente();
+		while (c == '\n' || c == '\r') {
+			c = siguiente();
+		}
+		if (c < 0) return null;
+		lineaRegistro = linea;
+
+		List<String> campos = new ArrayList<String>();
+		StringBuilder campo = new StringBuilder();
+		boolean entreComillas = false;
+		boolean citado = false;
+		while (true) {
+			if (entreComillas) {
+				if (c < 0) {
+					throw new IOException("Comillas sin cerrar en el registro de la linea " + lineaRegistro);
+				}
+				if (c == '"') {
+					c = siguiente();
+					if (c != '"') {
+						entreComillas = false;
+						continue;
+					}
+				}
+				campo.append((char) c);
+			} else if (c == separador || c == '\n' || c == '\r' || c < 0) {
+				campos.add(citado ? campo.toString() : campo.toString().trim());
+				campo.setLength(0);
+				citado = false;
+				if (c != separador) {
+					if (c == '\r' && mirar() == '\n') {
+						siguiente();
+					}
+					return campos;
+				}
+			} else if (c == '"' && campo.toString().trim().isEmpty()) {
+				campo.setLength(0);
+				entreComillas = true;
+				citado = true;
+			} else {
+				campo.append((char) c);
+			}
+			c = siguiente();
+		}
+	}
+
+	/**
+	 * @return la linea del fichero en la que empieza el ultimo registro leido
+	 */
+	public int getLinea() {
+		return lineaRegistro;
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+
+	private int siguiente() throws IOException {
+		int c = mirar();
+		if (c >= 0) {
+			pos++;
+			if (c == '\n') {
+				linea++;
+			}
+		}
+		return c;
+	}
+
+	private int mirar() throws IOException {
+		if (pos == len) {
+			len = in.read(buf, 0, buf.length);
+			pos = 0;
+			if (len <= 0) {
+				len = 0;
+				return -1;
+			}
+		}
+		return buf[pos];
+	}
+}
@@ -1,8 +1,12 @@
 package dataAccess;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
@@ -10,16 +14,22 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
-import java.util.Vector;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 
+import javax.persistence.EntityExistsException;
 import javax.persistence.EntityManager;
-import javax.persistence.EntityManagerFactory;
-import javax.persistence.Persistence;
+import javax.persistence.LockModeType;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
 import javax.persistence.RollbackException;
 import javax.persistence.TypedQuery;
 
 import configuration.ConfigXML;
+import configuration.Log;
 import configuration.UtilDate;
 import domain.Apuesta;
 import domain.Boleto;
@@ -27,6 +37,7 @@ import domain.Card;
 import domain.Equipo;
 import domain.EquipoId;
 import domain.Event;
+import domain.HouseAccount;
 import domain.Payment;
 import domain.Pronosticos;
 import domain.Question;
@@ -34,7 +45,7 @@ import domain.User;
 import exceptions.BoletoNoExiste;
 import exceptions.BoletoUsado;
 import exceptions.CodigoRepetido;
-import exceptions.MaxUsed;
+import exceptions.EventFinished;
 import exceptions.NotEnoughChuti;
 import exceptions.PrognosticAlreadyExist;
 import exceptions.QuestionAlreadyExist;
@@ -46,8 +57,12 @@ import exceptions.WrongParameters;
  * It implements the data access to the objectDb database
  */
 public class DataAccess {
-	protected static EntityManager db;
-	protected static EntityManagerFactory emf;
+	private static final Logger log = Log.get(DataAccess.class);
+	private static EntityManagerPool pool;
+	private static volatile boolean cuentasPreparadas = false;
+	private static final AtomicLong reintentos = new AtomicLong();
+	// la espera entre intentos deja de doblarse al llegar a dbRetryBackoff*64
+	private static final int MAX_DOBLES_ESPERA = 6;
 
 	private int adminDNI = 11223344;
 
@@ -55,10 +70,13 @@ public class DataAccess {
 
 	public DataAccess(boolean initializeMode) {
 
-		System.out.println("Creating DataAccess instance => isDatabaseLocal: " + c.isDatabaseLocal()
-		+ " getDatabBaseOpenMode: " + c.getDataBaseOpenMode());
+		log.log(Level.FINE, "Creating DataAccess instance => isDatabaseLocal: {0} getDatabBaseOpenMode: {1}",
+				new Object[] { c.isDatabaseLocal(), c.getDataBaseOpenMode() });
 
-		open(initializeMode);
+		abrir(initializeMode, true);
+		// la unidad solo hacia falta para preparar la base de datos; si no se
+		// cerrara, el EntityManager se quedaria fuera del pool mientras viva el hilo
+		UnitOfWork.endImplicita();
 
 	}
 
@@ -74,8 +92,10 @@ public class DataAccess {
 	 */
 	public void initializeDB() {
 
-		db.getTransaction().begin();
 		try {
+			this.guardarEquiposDeCsv(null, false);
+
+			empezar("initializeDB");
 
 			Calendar today = Calendar.getInstance();
 
@@ -87,8 +107,6 @@ public class DataAccess {
 				year += 1;
 			}
 
-			this.guardarEquiposDeCsv(null, true);//db.getTransaction().begin();
-
 
 
 			Event ev1 = new Event("Partido liga", UtilDate.newDate(year, month, 17), this.obtenerEquipo("Atletico", 2021), this.obtenerEquipo("Athletic", 2021));
@@ -136,14 +154,14 @@ public class DataAccess {
 			}
 
 
-			db.persist(ev1);
-			db.persist(ev2);
-			db.persist(ev3);
-			db.persist(ev4);
-			db.persist(ev5);
-			db.persist(ev6);
-			db.persist(ev7);
-			db.persist(ev8);
+			db().persist(ev1);
+			db().persist(ev2);
+			db().persist(ev3);
+			db().persist(ev4);
+			db().persist(ev5);
+			db().persist(ev6);
+			db().persist(ev7);
+			db().persist(ev8);
 
 			User admin = new User(adminDNI, "1234567", "Admin", "Administrador", "SuperUser", "admin@ehu.eus",
 					UtilDate.newDate(1998, 4, 9));//b
@@ -156,20 +174,24 @@ public class DataAccess {
 			elpepe.setChutiGoles(10.0);
 			emue.setChutiGoles(100.0);
 
-			db.persist(admin);
-			db.persist(elpepe);
-			db.persist(emue);
+			db().persist(admin);
+			db().persist(elpepe);
+			db().persist(emue);
+			apuntar(elpepe, elpepe.getChutiGoles(), "saldo inicial");
+			apuntar(emue, emue.getChutiGoles(), "saldo inicial");
+			apuntar(admin, admin.getChutiGoles(), "saldo inicial");
+			repartirSaldoCasa(admin);
 
-			db.getTransaction().commit();
-			System.out.println("Db initialized");
+			confirmar();
+			log.info("Db initialized");
 		} catch (Exception e) {
-			e.printStackTrace();
+			log.log(Level.SEVERE, "No se ha podido inicializar la base de datos", e);
 		}
 	}
 
 	public List<Equipo> obtenerEquipos(int temporada){
 
-		TypedQuery<Equipo> query = db.createQuery("SELECT e FROM Equipo e WHERE e.temporada=?1", Equipo.class);
+		TypedQuery<Equipo> query = db().createQuery("SELECT e FROM Equipo e WHERE e.temporada=?1", Equipo.class);
 		query.setParameter(1, temporada);
 		List<Equipo> equipos = query.getResultList();
 		return equipos;
@@ -177,52 +199,79 @@ public class DataAccess {
 	}
 
 
-	public void guardarEquiposDeCsv(String path, boolean estado) throws IOException {
+	/**
+	 * Importa los equipos de un fichero CSV en UTF-8 con CsvImporter, en
+	 * transacciones de csvBatchSize filas
+	 * 
+	 * @param path   el fichero, o null para src/main/resources/equipos.csv
+	 * @param estado true si los equipos se guardan en la transaccion ya abierta
+	 * @return el informe con las filas importadas y las rechazadas
+	 * @throws IOException si no se puede leer el fichero
+	 */
+	public CsvImportReport guardarEquiposDeCsv(String path, boolean estado) throws IOException {
 
 		if (path == null) {
 			path = "src/main/resources/equipos.csv";
 		}
-		BufferedReader csvReader = new BufferedReader(new FileReader(path));
-		String row;
-		while((row = csvReader.readLine()) != null){
-			String[] data = row.split(",");
-			Equipo eq1 = new Equipo(data[0], Integer.parseInt(data[1]));
-			eq1.setFundacion(Integer.parseInt(data[2]));
-			eq1.setSede(data[3]);
-			eq1.setAforo(Integer.parseInt(data[4]));
-			eq1.setPresidente(data[5]);
-			eq1.setEntrenador(data[6]);
-			eq1.setWeb(data[7]);
-			saveEquipo(eq1, estado);
-		}
-		csvReader.close();
+		CsvImporter importador = new CsvImporter(this, c.getCsvBatchSize(), estado);
+		return importador.importarEquipos(
+				new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8), path);
+	}
+
+	/**
+	 * Importa los jugadores de un fichero CSV en UTF-8 y los guarda en sus
+	 * equipos, en transacciones de csvBatchSize filas
+	 * 
+	 * @param path el fichero
+	 * @return el informe con las filas importadas y las rechazadas
+	 * @throws IOException si no se puede leer el fichero
+	 */
+	public CsvImportReport guardarJugadoresDeCsv(String path) throws IOException {
+		CsvImporter importador = new CsvImporter(this, c.getCsvBatchSize(), false);
+		return importador.importarJugadores(
+				new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8), path);
+	}
+
+	/**
+	 * Importa un calendario de partidos, con sus preguntas y pronosticos por
+	 * defecto, de un CSV, en transacciones de csvBatchSize partidos. Los
+	 * partidos que ya estan guardados no se duplican.
+	 * 
+	 * @param in el contenido del CSV
+	 * @param nombre el nombre con el que se identifica en el informe
+	 * @return el informe con los partidos importados y las filas rechazadas
+	 * @throws IOException si no se puede leer el CSV
+	 */
+	public CsvImportReport guardarCalendarioDeCsv(Reader in, String nombre) throws IOException {
+		CsvImporter importador = new CsvImporter(this, c.getCsvBatchSize(), false);
+		return importador.importarCalendario(in, nombre);
 	}
 
 	public Equipo obtenerEquipo(String nombre, int temporada) {
 
 		EquipoId id = new EquipoId(nombre, temporada);
-		Equipo eq1 = db.find(Equipo.class, id);
+		Equipo eq1 = db().find(Equipo.class, id);
 		return eq1;
 	}
 
 	public Equipo saveEquipo(Equipo eq, boolean estado) throws RollbackException{
 
 		if (estado == true) {
-			db.persist(eq);
-			System.out.println("Se ha guardado el equipo: "+ eq.toString());
+			db().persist(eq);
+			log.log(Level.FINE, "Se ha guardado el equipo: {0}", eq);
 			return eq;
 		}
-		db.getTransaction().begin();
-		db.persist(eq);
-		db.getTransaction().commit();
-		System.out.println("Se ha guardado el equipo: "+ eq.toString());
+		empezar("saveEquipo");
+		db().persist(eq);
+		confirmar();
+		log.log(Level.FINE, "Se ha guardado el equipo: {0}", eq);
 		return eq;
 	}
 
 	public Equipo editarPartidosEquipo(Equipo eq, int tipo) {
 		EquipoId id = new EquipoId(eq.getNombre(), eq.getTemporada());
-		Equipo eq1 = db.find(Equipo.class, id);
-		db.getTransaction().begin();
+		Equipo eq1 = db().find(Equipo.class, id);
+		empezar("editarPartidosEquipo");
 		switch (tipo) {
 		case 0:
 			eq1.addEvGanados();
@@ -244,9 +293,9 @@ public class DataAccess {
 			break;
 		}
 		
-		db.persist(eq1);
-		db.getTransaction().commit();
-		System.out.println("Se ha actualizado el equipo: "+eq1.getNombre() );
+		db().persist(eq1);
+		confirmar();
+		log.log(Level.FINE, "Se ha actualizado el equipo: {0}", eq1.getNombre());
 		return eq1;
 		
 	}	
@@ -264,24 +313,24 @@ public class DataAccess {
 	 * @throws WrongParameters if the event, query or boolean is null
 	 */
 	public Question createQuestion(Event event, String question, float betMinimum, Boolean equipo) throws QuestionAlreadyExist, WrongParameters {
-		System.out.println(">> DataAccess: createQuestion=> event= " + event + " question= " + question + " betMinimum="
-				+ betMinimum);
+		log.log(Level.FINE, ">> DataAccess: createQuestion=> event= {0} question= {1} betMinimum={2}",
+				new Object[] { event, question, betMinimum });
 		if(event==null || question==null || betMinimum<0 || equipo==null) throw new WrongParameters();
-		Event ev = db.find(Event.class, event.getEventNumber());
+		Event ev = db().find(Event.class, event.getEventNumber());
 
 		if (ev.DoesQuestionExists(question))
 			throw new QuestionAlreadyExist(ResourceBundle.getBundle("Etiquetas").getString("ErrorQueryAlreadyExist"));
 
-		db.getTransaction().begin();
+		empezar("createQuestion");
 		Question q = ev.addQuestion(question, betMinimum, equipo);
 		q.setEvent(ev);
-		System.out.println(q);
-		// db.persist(q);
-		db.persist(ev); // db.persist(q) not required when CascadeType.PERSIST is added in questions
+		log.log(Level.FINE, "{0}", q);
+		// db().persist(q);
+		db().persist(ev); // db().persist(q) not required when CascadeType.PERSIST is added in questions
 		// property of Event class
 		// @OneToMany(fetch=FetchType.EAGER, cascade=CascadeType.PERSIST)
 
-		db.getTransaction().commit();
+		confirmar();
 		return q;
 
 	}
@@ -298,19 +347,19 @@ public class DataAccess {
 	 *                                pregunta
 	 */
 	public Pronosticos createPrognostic(int ev, Question q, String pronos, float porcen) throws PrognosticAlreadyExist {
-		System.out.println(
-				">> DataAccess: createPronostic=> Question= " + q + " prognostic= " + pronos + " Porcentaje=" + porcen);
-		Event evento = db.find(Event.class, ev);
-		Vector<Question> questions = evento.getQuestions();
+		log.log(Level.FINE, ">> DataAccess: createPronostic=> Question= {0} prognostic= {1} Porcentaje={2}",
+				new Object[] { q, pronos, porcen });
+		Event evento = db().find(Event.class, ev);
+		List<Question> questions = evento.getQuestions();
 		for (Question question : questions) {
-			if (question.getQuestionNumber() == q.getQuestionNumber()) {
+			if (question.getQuestionNumber().equals(q.getQuestionNumber())) {
 
 				if (question.doesPrognosticExists(pronos, null))
 					throw new PrognosticAlreadyExist();
-				db.getTransaction().begin();
+				empezar("createPrognostic");
 				Pronosticos p = question.addPronostico(pronos, porcen, null);
-				db.persist(evento);
-				db.getTransaction().commit();
+				db().persist(evento);
+				confirmar();
 				return p;
 
 			}
@@ -329,17 +378,17 @@ public class DataAccess {
 	 * @throws WrongParameters Error si algunos de los parametros introducidos es incorrecto
 	 */
 	public Pronosticos createPrognosticTeam(int ev, Question q, Equipo eq, float porcen) throws PrognosticAlreadyExist, WrongParameters {
-		Event evento = db.find(Event.class, ev);
+		Event evento = db().find(Event.class, ev);
 		if(evento==null || q==null || eq==null || porcen<0) throw new WrongParameters() ;
-		Vector<Question> questions = evento.getQuestions();
+		List<Question> questions = evento.getQuestions();
 		for (Question question : questions) {
-			if (question.getQuestionNumber() == q.getQuestionNumber()) {
+			if (question.getQuestionNumber().equals(q.getQuestionNumber())) {
 				if (question.doesPrognosticExists(null,eq))
 					throw new PrognosticAlreadyExist();
-				db.getTransaction().begin();
+				empezar("createPrognosticTeam");
 				Pronosticos p = question.addPronostico(null, porcen, eq);
-				db.persist(evento);
-				db.getTransaction().commit();
+				db().persist(evento);
+				confirmar();
 				return p;
 
 			}
@@ -348,12 +397,9 @@ public class DataAccess {
 
 	}
 
-	public Vector<Equipo>getEquipoFromQuestion(int q){
-		Question q1 = db.find(Question.class, q );
-		Vector<Equipo> equipos = new Vector<Equipo>();
-		equipos.add(q1.getEvent().getEq1());
-		equipos.add(q1.getEvent().getEq2());
-		return equipos;
+	public List<Equipo>getEquipoFromQuestion(int q){
+		Event ev = db().find(Question.class, q ).getEvent();
+		return Arrays.asList(ev.getEq1(), ev.getEq2());
 
 	}
 
@@ -366,11 +412,11 @@ public class DataAccess {
 	 * @param event Event que representa un evento a eliminar
 	 */
 	public void deleteEvent(Event event) {
-		Event ev = db.find(Event.class, event.getEventNumber());
-		db.getTransaction().begin();
-		db.remove(ev);
-		db.getTransaction().commit();
-		System.out.println(">> DataAccess: " + ev.toString() + " removed");
+		Event ev = db().find(Event.class, event.getEventNumber());
+		empezar("deleteEvent");
+		db().remove(ev);
+		confirmar();
+		log.log(Level.FINE, ">> DataAccess: {0} removed", ev);
 	}
 
 	/**
@@ -380,12 +426,12 @@ public class DataAccess {
 	 * @param s     String que representa la nueva descripcion
 	 */
 	public void changeEventDescription(Event event, String s) {
-		Event ev = db.find(Event.class, event.getEventNumber());
-		db.getTransaction().begin();
+		Event ev = db().find(Event.class, event.getEventNumber());
+		empezar("changeEventDescription");
 		ev.setDescription(s);
-		db.persist(ev);
-		db.getTransaction().commit();
-		System.out.println(">> DataAccess: " + event.toString() + " changed by " + ev.toString());
+		db().persist(ev);
+		confirmar();
+		log.log(Level.FINE, ">> DataAccess: {0} changed by {1}", new Object[] { event, ev });
 
 	}
 
@@ -396,13 +442,13 @@ public class DataAccess {
 	 * @param dt    Date que representa la nueva fecha del evento
 	 */
 	public void changeEventDate(Event event, Date dt) {
-		Event ev = db.find(Event.class, event.getEventNumber());
-		db.getTransaction().begin();
+		Event ev = db().find(Event.class, event.getEventNumber());
+		empezar("changeEventDate");
 		ev.setEventDate(dt);
-		db.persist(ev);
-		db.getTransaction().commit();
-		System.out.println(">> DataAccess: " + event.toString() + "date " + event.getEventDate() + " changed by "
-				+ ev.toString() + "date " + ev.getEventDate());
+		db().persist(ev);
+		confirmar();
+		log.log(Level.FINE, ">> DataAccess: {0}date {1} changed by {2}date {3}",
+				new Object[] { event, event.getEventDate(), ev, ev.getEventDate() });
 
 	}
 
@@ -412,31 +458,25 @@ public class DataAccess {
 	 * @param date in which events are retrieved
 	 * @return collection of events
 	 */
-	public Vector<Event> getEvents(Date date) {
-		System.out.println(">> DataAccess: getEvents");
-		Vector<Event> res = new Vector<Event>();
-		TypedQuery<Event> query = db.createQuery("SELECT ev FROM Event ev WHERE ev.eventDate=?1", Event.class);
+	public List<Event> getEvents(Date date) {
+		log.fine(">> DataAccess: getEvents");
+		TypedQuery<Event> query = db().createQuery("SELECT ev FROM Event ev WHERE ev.eventDate=?1", Event.class);
 		query.setParameter(1, date);
-		List<Event> events = query.getResultList();
-		for (Event ev : events) {
-			System.out.println(ev.toString());
-			res.add(ev);
+		List<Event> events = FetchPlan.CALENDARIO.cargar(query.getResultList());
+		if (log.isLoggable(Level.FINER)) {
+			for (Event ev : events) {
+				log.finer(ev.toString());
+			}
 		}
-		return res;
+		return events;
 	}
 
-	public Vector<Event> getEventsBetweenDates(Date pastDate, Date todayDate) {
-		System.out.println(">> DataAccess: getEventsBetweenDates ");
-		Vector<Event> res = new Vector<Event>();
-		TypedQuery<Event> query = db.createQuery("SELECT ev FROM Event ev WHERE ev.eventDate>=?1 AND ev.eventDate<?2", Event.class);
+	public List<Event> getEventsBetweenDates(Date pastDate, Date todayDate) {
+		log.fine(">> DataAccess: getEventsBetweenDates ");
+		TypedQuery<Event> query = db().createQuery("SELECT ev FROM Event ev WHERE ev.eventDate>=?1 AND ev.eventDate<?2", Event.class);
 		query.setParameter(1, pastDate);
 		query.setParameter(2, todayDate);
-		List<Event> events = query.getResultList();
-		for (Event ev : events) {
-			//System.out.println(ev.toString());
-			res.add(ev);
-		}
-		return res;
+		return FetchPlan.EVENTO.cargar(query.getResultList());
 	}
 
 
@@ -448,23 +488,23 @@ public class DataAccess {
 	 * @param date of the month for which days with events want to be retrieved
 	 * @return collection of dates
 	 */
-	public Vector<Date> getEventsMonth(Date date) {
-		System.out.println(">> DataAccess: getEventsMonth");
-		Vector<Date> res = new Vector<Date>();
+	public List<Date> getEventsMonth(Date date) {
+		log.fine(">> DataAccess: getEventsMonth");
 
 		Date firstDayMonthDate = UtilDate.firstDayMonth(date);
 		Date lastDayMonthDate = UtilDate.lastDayMonth(date);
 
-		TypedQuery<Date> query = db.createQuery(
+		TypedQuery<Date> query = db().createQuery(
 				"SELECT DISTINCT ev.eventDate FROM Event ev WHERE ev.eventDate BETWEEN ?1 and ?2", Date.class);
 		query.setParameter(1, firstDayMonthDate);
 		query.setParameter(2, lastDayMonthDate);
 		List<Date> dates = query.getResultList();
-		for (Date d : dates) {
-			System.out.println(d.toString());
-			res.add(d);
+		if (log.isLoggable(Level.FINER)) {
+			for (Date d : dates) {
+				log.finer(d.toString());
+			}
 		}
-		return res;
+		return dates;
 	}
 
 	/**
@@ -477,12 +517,15 @@ public class DataAccess {
 	 */
 	public User createUser(User usr) throws UserAlreadyExist {
 
-		User us = db.find(User.class, usr.getDNI());
+		User us = db().find(User.class, usr.getDNI());
 		if (us == null) {
 
-			db.getTransaction().begin();
-			db.persist(usr);
-			db.getTransaction().commit();
+			empezar("createUser");
+			db().persist(usr);
+			if (usr.getChutiGoles() != null && usr.getChutiGoles() != 0) {
+				apuntar(usr, usr.getChutiGoles(), "saldo inicial");
+			}
+			confirmar();
 			return usr;
 
 		}
@@ -495,11 +538,11 @@ public class DataAccess {
 	 * @throws UserDoesntExist si el usuario no existe
 	 */
 	public void deleteUser(User usr) throws UserDoesntExist {
-		User us = db.find(User.class, usr.getDNI());
+		User us = db().find(User.class, usr.getDNI());
 		if (us != null) {
-			db.getTransaction().begin();
-			db.remove(us);
-			db.getTransaction().commit();
+			empezar("deleteUser");
+			db().remove(us);
+			confirmar();
 			return;
 		}
 		throw new UserDoesntExist();
@@ -512,13 +555,13 @@ public class DataAccess {
 	 * @throws UserDoesntExist lanza esto si no existe
 	 */
 	public void banUser(User usr, String message) throws UserDoesntExist {
-		User us = db.find(User.class, usr.getDNI());
+		User us = db().find(User.class, usr.getDNI());
 		if (us != null) {
-			db.getTransaction().begin();
+			empezar("banUser");
 			us.setMessage(message);
 			us.setBan(true);
-			db.persist(us);
-			db.getTransaction().commit();
+			db().persist(us);
+			confirmar();
 			return;
 		}
 		throw new UserDoesntExist();
@@ -531,19 +574,31 @@ public class DataAccess {
 	 * @throws NotEnoughChuti lanza esto si no hay suficientes creditos en la substraccion 
 	 */
 	public void setChutiGoles(User usr, Double chuti) throws NotEnoughChuti {
-		User us = db.find(User.class, usr.getDNI());
-		if (us != null) {
-			db.getTransaction().begin();
-			if (chuti<0) {
-				if (us.getChutiGoles()<(-chuti)) {
-					throw new NotEnoughChuti();
+		for (int intento = 1; ; intento++) {
+			try {
+				empezar("setChutiGoles");
+				User us = db().find(User.class, usr.getDNI());
+				if (us == null) {
+					deshacer();
+					return;
+				}
+				boolean casa = us.getDNI() == adminDNI;
+				if (chuti<0) {
+					if ((casa ? getSaldoCasa() : us.getChutiGoles())<(-chuti)) {
+						throw new NotEnoughChuti();
+					}
 				}
+				if (casa) {
+					moverCasa(us.getDNI(), chuti, "ajuste");
+				} else {
+					moverUsuario(us, chuti, "ajuste");
+				}
+				confirmar();
+				return;
+			} catch (RollbackException e) {
+				prepararReintento(e, intento);
 			}
-			us.setChutiGoles(us.getChutiGoles() + chuti);
-			db.getTransaction().commit();
-			return;
 		}
-
 	}
 
 	/**
@@ -556,11 +611,11 @@ public class DataAccess {
 	 */
 	public User obtainUser(int DNI) throws UserDoesntExist {
 
-		User us = db.find(User.class, DNI);
+		User us = db().find(User.class, DNI);
 
 		if (us != null) {
-			System.out.println(">> DataAccess: obtainUser=> DNI: "+us.getDNI()+" Name: " + us.getNombre());
-			return us;
+			log.log(Level.FINE, ">> DataAccess: obtainUser=> DNI: {0} Name: {1}", new Object[] { us.getDNI(), us.getNombre() });
+			return conSaldoCasa(us);
 		}
 
 		throw new UserDoesntExist();
@@ -574,14 +629,14 @@ public class DataAccess {
 	 * @return
 	 */
 	public Question obtainQuestion(int ev, int q) {
-		Event event = db.find(Event.class, ev);
+		Event event = db().find(Event.class, ev);
 
-		Vector<Question> questions = event.getQuestions();
+		List<Question> questions = event.getQuestions();
 		for (Question question : questions) {
 			if (question.getQuestionNumber() == q) {
-				System.out.println(">> DataAccess: obtainQuestion=>  question= " + question + " betMinimum="
-						+ question.getBetMinimum());
-				return question;
+				log.log(Level.FINE, ">> DataAccess: obtainQuestion=>  question= {0} betMinimum={1}",
+						new Object[] { question, question.getBetMinimum() });
+				return FetchPlan.PREGUNTAS.cargar(question);
 			}
 		}
 		return null;
@@ -597,29 +652,417 @@ public class DataAccess {
 	 */
 	public void open(boolean initializeMode) {
 
-		System.out.println("Opening DataAccess instance => isDatabaseLocal: " + c.isDatabaseLocal()
-		+ " getDatabBaseOpenMode: " + c.getDataBaseOpenMode());
+		log.log(Level.FINE, "Opening DataAccess instance => isDatabaseLocal: {0} getDatabBaseOpenMode: {1}",
+				new Object[] { c.isDatabaseLocal(), c.getDataBaseOpenMode() });
+
+		abrir(initializeMode, false);
+
+	}
+
+	/**
+	 * Abre la unidad de trabajo del hilo. La que abre el constructor se cierra
+	 * al terminar de construirlo; un open() dentro de otro se anida en el de
+	 * fuera en vez de cerrarlo
+	 */
+	private void abrir(boolean initializeMode, boolean implicita) {
+		UnitOfWork.begin(getPool(c, initializeMode), implicita);
+		if (!initializeMode && !cuentasPreparadas) {
+			prepararCuentas();
+		}
+	}
+
+	/**
+	 * Devuelve el EntityManager de la unidad de trabajo abierta por el hilo
+	 * actual, de modo que cada peticion usa su propio contexto de persistencia
+	 * 
+	 * @return el EntityManager del hilo
+	 */
+	protected EntityManager db() {
+		return unidad().getEntityManager();
+	}
+
+	/**
+	 * Devuelve la unidad de trabajo del hilo. Si se usa DataAccess sin open(),
+	 * como hacen las pruebas, se abre una implicita que dura hasta close()
+	 */
+	private UnitOfWork unidad() {
+		if (!UnitOfWork.isOpen()) {
+			UnitOfWork.begin(getPool(c, false), true);
+		}
+		return UnitOfWork.current();
+	}
+
+	/**
+	 * Devuelve el pool de EntityManagers del proceso, creando la factoria la
+	 * primera vez. En modo inicializacion se cierra la factoria anterior y se
+	 * vuelve a crear borrando la base de datos
+	 * 
+	 * @param c              configuracion de la base de datos
+	 * @param initializeMode Boolean que indica si hay que borrar la base de datos
+	 * @return el pool compartido por todas las instancias de DataAccess
+	 */
+	private static synchronized EntityManagerPool getPool(ConfigXML c, boolean initializeMode) {
+		if (pool != null && !initializeMode) {
+			return pool;
+		}
+		if (pool != null) {
+			pool.close();
+		}
 
 		String fileName = c.getDbFilename();
 		if (initializeMode) {
 			fileName = fileName + ";drop";
-			System.out.println("Deleting the DataBase");
+			log.info("Deleting the DataBase");
 		}
 
 		if (c.isDatabaseLocal()) {
-			emf = Persistence.createEntityManagerFactory("objectdb:" + fileName);
-			db = emf.createEntityManager();
+			pool = new EntityManagerPool("objectdb:" + fileName, null, c.getDbPoolSize(), c.getDbPoolTimeout());
 		} else {
 			Map<String, String> properties = new HashMap<String, String>();
 			properties.put("javax.persistence.jdbc.user", c.getUser());
 			properties.put("javax.persistence.jdbc.password", c.getPassword());
 
-			emf = Persistence.createEntityManagerFactory(
-					"objectdb://" + c.getDatabaseNode() + ":" + c.getDatabasePort() + "/" + fileName, properties);
+			pool = new EntityManagerPool("objectdb://" + c.getDatabaseNode() + ":" + c.getDatabasePort() + "/" + fileName,
+					properties, c.getDbPoolSize(), c.getDbPoolTimeout());
+		}
+		// Las consultas sobre una clase que aun no tiene objetos guardados fallan si no se registra antes,
+		// y prepararCuentas consulta estas aunque la base de datos este recien creada
+		EntityManager em = pool.checkout();
+		try {
+			// En una base de datos ya guardada con un esquema anterior, ObjectDB se bloquea si se registra
+			// la clase nueva mientras activa los indices nuevos. Una consulta antes termina de poner el
+			// esquema al dia; en una base de datos vacia falla, y entonces no hay nada que poner al dia
+			try {
+				em.createQuery("SELECT COUNT(u) FROM User u", Long.class).getSingleResult();
+			} catch (PersistenceException e) {
+				log.log(Level.FINE, "Base de datos sin usuarios: {0}", e.getMessage());
+			}
+			em.getMetamodel().entity(HouseAccount.class);
+			em.getMetamodel().entity(Payment.class);
+			em.getMetamodel().entity(Apuesta.class);
+		} finally {
+			pool.release(em);
+		}
+		return pool;
+	}
+
+	/**
+	 * Devuelve el pool de EntityManagers para consultar sus metricas
+	 * @return el pool, o null si todavia no se ha abierto la base de datos
+	 */
+	public static EntityManagerPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Devuelve la subcuenta de la casa que corresponde a una clave, creandola si
+	 * todavia no existe. Debe llamarse dentro de una transaccion
+	 * @param clave el DNI del usuario o el hash del codigo que mueve el dinero
+	 * @return la subcuenta elegida
+	 */
+	private HouseAccount cuentaCasa(int clave) {
+		int franja = Math.floorMod(clave, Math.max(1, c.getHouseStripes()));
+		HouseAccount cuenta = db().find(HouseAccount.class, franja);
+		if (cuenta == null) {
+			cuenta = new HouseAccount(franja, 0);
+			db().persist(cuenta);
+		}
+		return cuenta;
+	}
+
+	/**
+	 * Metodo que devuelve el saldo de la casa, sumando todas sus subcuentas
+	 * @return el saldo total de la casa
+	 */
+	public double getSaldoCasa() {
+		Double saldo = db().createQuery("SELECT SUM(h.saldo) FROM HouseAccount h", Double.class).getSingleResult();
+		return saldo == null ? 0 : saldo;
+	}
+
+	/**
+	 * Reparte el saldo del administrador entre las subcuentas de la casa y lo
+	 * deja a cero en su usuario. Debe llamarse dentro de una transaccion
+	 * @param admin el usuario administrador
+	 */
+	private void repartirSaldoCasa(User admin) {
+		int franjas = Math.max(1, c.getHouseStripes());
+		double saldo = admin.getChutiGoles() == null ? 0 : admin.getChutiGoles();
+		for (int i = 0; i < franjas; i++) {
+			db().persist(new HouseAccount(i, saldo / franjas));
+		}
+		admin.setChutiGoles(0.0);
+		cuentasPreparadas = true;
+	}
+
+	/**
+	 * Prepara una base de datos creada por una version anterior: crea las
+	 * subcuentas de la casa si el saldo sigue en el usuario administrador, y una
+	 * foto inicial de cada saldo si aun no hay libro de movimientos. Solo se
+	 * comprueba una vez por proceso
+	 */
+	private void prepararCuentas() {
+		synchronized (DataAccess.class) {
+			if (cuentasPreparadas) return;
+			long cuentas = db().createQuery("SELECT COUNT(h) FROM HouseAccount h", Long.class).getSingleResult();
+			User admin = db().find(User.class, adminDNI);
+			if (cuentas == 0 && admin != null) {
+				empezar("prepararCuentas");
+				repartirSaldoCasa(admin);
+				confirmar();
+				log.log(Level.INFO, "Saldo de la casa repartido en {0} subcuentas", c.getHouseStripes());
+			}
+			long apuntes = db().createQuery("SELECT COUNT(p) FROM Payment p WHERE p.card IS NULL", Long.class).getSingleResult();
+			long fotos = db().createQuery("SELECT COUNT(u) FROM User u WHERE u.fotoFecha IS NOT NULL", Long.class).getSingleResult();
+			if (apuntes == 0 && fotos == 0) {
+				Integer hasta = db().createQuery("SELECT MAX(p.numeroPayment) FROM Payment p", Integer.class).getSingleResult();
+				empezar("prepararCuentas");
+				for (User us : db().createQuery("SELECT u FROM User u", User.class).getResultList()) {
+					double saldo = us.getDNI() == adminDNI ? getSaldoCasa() : us.getChutiGoles();
+					us.tomarFoto(saldo, hasta == null ? 0 : hasta);
+				}
+				confirmar();
+				db().clear();
+				log.info("Creadas las fotos iniciales de los saldos");
+			}
+			migrarIndices();
+			cuentasPreparadas = true;
+		}
+	}
+
+	/**
+	 * Da valor a los campos por los que se busca con indices en las filas
+	 * guardadas antes de que existieran, que no tienen ninguno: el concepto de
+	 * los pagos con tarjeta y si cada apuesta esta liquidada, que lo esta si su
+	 * pregunta ya se ha cerrado. Se cambian de una en una porque ObjectDB no
+	 * guarda lo que cambia un UPDATE en las filas de antes del campo
+	 */
+	private void migrarIndices() {
+		empezar("migrarIndices");
+		int pagos = 0;
+		for (Payment p : db().createQuery("SELECT p FROM Payment p WHERE p.concepto IS NULL", Payment.class).getResultList()) {
+			p.setConcepto(Payment.PAGO_TARJETA);
+			pagos++;
+		}
+		int apuestas = 0;
+		for (Apuesta a : db().createQuery("SELECT a FROM Apuesta a WHERE a.liquidada IS NULL", Apuesta.class).getResultList()) {
+			a.setLiquidada(a.getQuestion() != null && !a.getQuestion().isEstado());
+			apuestas++;
+		}
+		confirmar();
+		db().clear();
+		if (pagos > 0 || apuestas > 0) {
+			log.log(Level.INFO, "Migrados {0} pagos con tarjeta y {1} apuestas", new Object[] { pagos, apuestas });
+		}
+	}
+
+	/**
+	 * Pone en el administrador el saldo de la casa en lugar del que guarda su
+	 * fila, que deja de usarse. El usuario se separa del contexto de persistencia
+	 * para que ese saldo no se escriba en la base de datos
+	 * @param us el usuario leido
+	 * @return el mismo usuario
+	 */
+	private User conSaldoCasa(User us) {
+		if (us != null && us.getDNI() == adminDNI) {
+			db().detach(us);
+			us.setChutiGoles(getSaldoCasa());
+		}
+		return us;
+	}
+
+	/**
+	 * Prepara la repeticion de una transaccion que no se ha podido confirmar
+	 * porque otra ha cambiado antes los mismos saldos, o ha creado a la vez la
+	 * misma subcuenta de la casa o el mismo boleto. Se vacia el contexto para
+	 * volver a leerlos y se espera un tiempo aleatorio que crece con cada intento,
+	 * sin bloquear a las transacciones de los demas hilos.
+	 * @param e el fallo al confirmar
+	 * @param intento el intento que ha fallado, empezando en 1
+	 * @throws RollbackException el mismo fallo si no es un conflicto o ya no quedan intentos
+	 */
+	private void prepararReintento(RollbackException e, int intento) {
+		if (!esConflicto(e) || intento >= c.getDbRetries()) {
+			throw e;
+		}
+		reintentos.incrementAndGet();
+		log.log(Level.FINE, "Conflicto al confirmar, intento {0}: {1}", new Object[] { intento, e.getMessage() });
+		deshacer();
+		db().clear();
+		long espera = (long) c.getDbRetryBackoff() << Math.min(intento - 1, MAX_DOBLES_ESPERA);
+		try {
+			Thread.sleep(ThreadLocalRandom.current().nextLong(espera + 1));
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw e;
+		}
+	}
+
+	/**
+	 * Abre una transaccion que se mide en Metricas con el nombre de la operacion
+	 * @param operacion el metodo de DataAccess que la empieza
+	 */
+	private void empezar(String operacion) {
+		unidad().empezar(operacion);
+	}
 
-			db = emf.createEntityManager();
+	/**
+	 * Confirma la transaccion abierta con empezar
+	 */
+	private void confirmar() {
+		unidad().confirmar();
+	}
+
+	/**
+	 * Deshace la transaccion abierta con empezar, si sigue activa
+	 */
+	private void deshacer() {
+		unidad().deshacer();
+	}
+
+	private static boolean esConflicto(Throwable e) {
+		for (Throwable t = e; t != null; t = t.getCause()) {
+			if (t instanceof OptimisticLockException || t instanceof EntityExistsException) return true;
 		}
+		return false;
+	}
+
+	/**
+	 * @return transacciones repetidas por conflictos desde que arranco el proceso
+	 */
+	public static long getReintentos() {
+		return reintentos.get();
+	}
 
+	/**
+	 * Apunta un movimiento en el libro. Debe llamarse dentro de la transaccion
+	 * que cambia el saldo, para que ambos queden o no guardados a la vez
+	 * @param cuenta el usuario afectado, el administrador para la casa
+	 * @param cantidad positiva para abonar, negativa para cargar
+	 * @param concepto el motivo del movimiento
+	 */
+	private void apuntar(User cuenta, double cantidad, String concepto) {
+		db().persist(new Payment(cuenta, cantidad, concepto));
+	}
+
+	/**
+	 * Abona o carga una cantidad a un usuario y la apunta en el libro
+	 * @param us el usuario, cargado en la transaccion actual
+	 * @param cantidad positiva para abonar, negativa para cargar
+	 * @param concepto el motivo del movimiento
+	 */
+	private void moverUsuario(User us, double cantidad, String concepto) {
+		us.addChutiGoles(cantidad);
+		apuntar(us, cantidad, concepto);
+	}
+
+	/**
+	 * Abona o carga una cantidad a la subcuenta de la casa que corresponde a la
+	 * clave y la apunta en el libro a nombre del administrador
+	 * @param clave el DNI del usuario o el hash del codigo que mueve el dinero
+	 * @param cantidad positiva para abonar, negativa para cargar
+	 * @param concepto el motivo del movimiento
+	 */
+	private void moverCasa(int clave, double cantidad, String concepto) {
+		cuentaCasa(clave).addSaldo(cantidad);
+		apuntar(db().find(User.class, adminDNI), cantidad, concepto);
+	}
+
+	/**
+	 * Acumula en la foto de saldo de cada cuenta los movimientos apuntados
+	 * despues de su propia foto, cada cuenta en su propia transaccion
+	 * @return el numero de cuentas cuya foto se ha actualizado
+	 */
+	public int actualizarSnapshots() {
+		List<Integer> dnis = db().createQuery("SELECT u.DNI FROM User u", Integer.class).getResultList();
+		int cuentas = 0;
+		for (Integer dni : dnis) {
+			if (fotografiar(dni)) cuentas++;
+		}
+		log.log(Level.FINE, "Actualizadas las fotos de {0} cuentas", cuentas);
+		return cuentas;
+	}
+
+	/**
+	 * Actualiza la foto de una cuenta. La transaccion escribe la fila que
+	 * tambien escribe todo movimiento de esa cuenta: el usuario, o las
+	 * subcuentas de la casa si es el administrador. Un movimiento que ya tenia
+	 * numero pero aun no se habia confirmado choca con la foto y se repite con
+	 * un numero nuevo, asi que nunca queda uno sin sumar por debajo de fotoHasta
+	 * @param dni la cuenta
+	 * @return false si no habia movimientos nuevos
+	 */
+	private boolean fotografiar(int dni) {
+		for (int intento = 1; ; intento++) {
+			try {
+				empezar("fotografiar");
+				User us = db().find(User.class, dni);
+				Object[] fila = null;
+				if (us != null) {
+					TypedQuery<Object[]> query = db().createQuery("SELECT SUM(p.chutigoles), MAX(p.numeroPayment) FROM Payment p "
+							+ "WHERE p.user=?1 AND p.numeroPayment > ?2", Object[].class);
+					query.setParameter(1, us);
+					query.setParameter(2, us.getFotoHasta() == null ? 0 : us.getFotoHasta());
+					fila = query.getSingleResult();
+				}
+				if (fila == null || fila[1] == null) {
+					deshacer();
+					return false;
+				}
+				if (dni == adminDNI) {
+					for (HouseAccount franja : db().createQuery("SELECT h FROM HouseAccount h", HouseAccount.class).getResultList()) {
+						db().lock(franja, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+					}
+				}
+				double anterior = us.getFotoSaldo() == null ? 0 : us.getFotoSaldo();
+				us.tomarFoto(anterior + ((Number) fila[0]).doubleValue(), ((Number) fila[1]).intValue());
+				confirmar();
+				db().clear();
+				return true;
+			} catch (RollbackException e) {
+				prepararReintento(e, intento);
+			}
+		}
+	}
+
+	/**
+	 * Reconstruye el saldo de una cuenta a partir de su ultima foto y de los
+	 * movimientos apuntados despues, y lo vuelve a guardar en el usuario o, si es
+	 * el administrador, en las subcuentas de la casa
+	 * @param dni el DNI de la cuenta
+	 * @return el saldo reconstruido
+	 * @throws UserDoesntExist si no existe el usuario
+	 */
+	public double rebuildBalance(int dni) throws UserDoesntExist {
+		for (int intento = 1; ; intento++) {
+			try {
+				empezar("rebuildBalance");
+				User us = db().find(User.class, dni);
+				if (us == null) throw new UserDoesntExist();
+				TypedQuery<Double> query = db().createQuery("SELECT SUM(p.chutigoles) FROM Payment p "
+						+ "WHERE p.user.DNI = ?1 AND p.numeroPayment > ?2", Double.class);
+				query.setParameter(1, dni);
+				query.setParameter(2, us.getFotoHasta() == null ? 0 : us.getFotoHasta());
+				Double posteriores = query.getSingleResult();
+				double saldo = (us.getFotoSaldo() == null ? 0 : us.getFotoSaldo()) + (posteriores == null ? 0 : posteriores);
+
+				if (dni == adminDNI) {
+					List<HouseAccount> franjas = db().createQuery("SELECT h FROM HouseAccount h", HouseAccount.class).getResultList();
+					if (franjas.isEmpty()) {
+						db().persist(new HouseAccount(0, saldo));
+					}
+					for (HouseAccount franja : franjas) {
+						franja.setSaldo(saldo / franjas.size());
+					}
+				} else {
+					us.setChutiGoles(saldo);
+				}
+				confirmar();
+				log.log(Level.INFO, "Saldo reconstruido de {0}: {1} chutiDolares", new Object[] { dni, saldo });
+				return saldo;
+			} catch (RollbackException e) {
+				prepararReintento(e, intento);
+			}
+		}
 	}
 
 	/**
@@ -631,8 +1074,8 @@ public class DataAccess {
 	 * @return Boolean true si existe y false en caso contrario
 	 */
 	public boolean existQuestion(Event event, String question) {
-		System.out.println(">> DataAccess: existQuestion=> event= " + event + " question= " + question);
-		Event ev = db.find(Event.class, event.getEventNumber());
+		log.log(Level.FINE, ">> DataAccess: existQuestion=> event= {0} question= {1}", new Object[] { event, question });
+		Event ev = db().find(Event.class, event.getEventNumber());
 		return ev.DoesQuestionExists(question);
 
 	}
@@ -645,7 +1088,7 @@ public class DataAccess {
 	 */
 	public boolean existUser(User user) {
 
-		User us = db.find(User.class, user.getDNI());
+		User us = db().find(User.class, user.getDNI());
 		if (us != null) {
 			return true;
 		}
@@ -653,11 +1096,11 @@ public class DataAccess {
 	}
 
 	/**
-	 * Cierra la base de datos
+	 * Cierra la base de datos, devolviendo el EntityManager al pool
 	 */
 	public void close() {
-		db.close();
-		System.out.println("DataBase closed");
+		UnitOfWork.end();
+		log.fine("DataBase closed");
 	}
 
 	/**
@@ -665,9 +1108,9 @@ public class DataAccess {
 	 * @param evento el evento del cual se buscan las preguntas
 	 * @return el vector de preguntas
 	 */
-	public Vector<Question> getQuestionsFromEvent(Event evento) {
+	public List<Question> getQuestionsFromEvent(Event evento) {
 
-		return db.find(Event.class, evento).getQuestions();
+		return FetchPlan.PREGUNTAS.cargar(db().find(Event.class, evento)).getQuestions();
 
 	}
 
@@ -676,34 +1119,161 @@ public class DataAccess {
 	 * @param pregunta la pregunta de la cual se quieren lso pronosticos
 	 * @return devuelve el vector de pronosticos
 	 */
-	public Vector<Pronosticos> getPronosticosFromQuestion(Question pregunta) {
+	public List<Pronosticos> getPronosticosFromQuestion(Question pregunta) {
 
-		return db.find(Question.class, pregunta).getPronosticos();
+		return FetchPlan.PREGUNTAS.cargar(db().find(Question.class, pregunta)).getPronosticos();
 
 	}
 
 	/**
-	 * Aade una apuesta 
+	 * Aade una apuesta. Se guarda una copia nueva en cada intento, asi que
+	 * el objeto que se pasa no se modifica
 	 * @param apuesta la apuesta a aadir
 	 */
 	public void addApuesta(Apuesta apuesta) {
+		int dni = apuesta.getUser().getDNI();
+		int pregunta = apuesta.getQuestion().getQuestionNumber();
+		int evento = apuesta.getEvento().getEventNumber();
+		int pronostico = apuesta.getPronostico().getPrognosticNumber();
+		double cantidad = apuesta.getChutiGoles();
+		for (int intento = 1; ; intento++) {
+			try {
+				empezar("addApuesta");
+				User usuario= db().find(User.class, dni);
+				moverUsuario(usuario, -cantidad, "apuesta");
+				moverCasa(usuario.getDNI(), +cantidad, "apuesta de " + usuario.getDNI());
+
+				db().persist(new Apuesta(usuario, db().find(Pronosticos.class, pronostico), cantidad,
+						db().find(Event.class, evento), db().find(Question.class, pregunta)));
+				confirmar();
+				break;
+			} catch (RollbackException e) {
+				prepararReintento(e, intento);
+			}
+		}
+		log.fine("apuesta realizada");
+	}
 
-		db.getTransaction().begin();
-		User usuario= db.find(User.class, apuesta.getUser().getDNI());
-		User admin = db.find(User.class, adminDNI);
-		usuario.addApuesta(apuesta);
-		usuario.addChutiGoles(-apuesta.getChutiGoles());
-		admin.addChutiGoles(+apuesta.getChutiGoles());
+	/**
+	 * Registra una apuesta comprobando en la misma transaccion el pronostico,
+	 * la apuesta minima y el saldo del usuario
+	 * @param dni el DNI de quien apuesta
+	 * @param questionNumber la pregunta
+	 * @param prognosticNumber el pronostico elegido, que debe ser de esa pregunta
+	 * @param cantidad lo que se apuesta
+	 * @return el saldo del usuario despues de apostar
+	 * @throws UserDoesntExist si el usuario no existe
+	 * @throws WrongParameters si el pronostico no es de la pregunta o la cantidad no llega a la apuesta minima
+	 * @throws EventFinished si la pregunta ya esta cerrada o el evento ya ha empezado
+	 * @throws NotEnoughChuti si el usuario no tiene saldo suficiente
+	 */
+	public double placeBet(int dni, int questionNumber, int prognosticNumber, double cantidad)
+			throws UserDoesntExist, WrongParameters, EventFinished, NotEnoughChuti {
+		for (int intento = 1; ; intento++) {
+			try {
+				empezar("placeBet");
+				double saldo = apostar(dni, questionNumber, prognosticNumber, cantidad);
+				confirmar();
+				return saldo;
+			} catch (RollbackException e) {
+				prepararReintento(e, intento);
+			}
+		}
+	}
+
+	/**
+	 * Registra un lote de apuestas en una sola transaccion. Cada apuesta se
+	 * comprueba como en placeBet y las que no son validas se rechazan sin
+	 * afectar a las demas; el resultado de cada una queda en su pedido.
+	 * @param pedidos las apuestas, de uno o varios usuarios
+	 * @throws RollbackException si no se puede confirmar la transaccion ni
+	 * repitiendola, y entonces no se ha guardado ninguna
+	 */
+	public void placeBets(List<PedidoApuesta> pedidos) {
+		for (int intento = 1; ; intento++) {
+			try {
+				empezar("placeBets");
+				for (PedidoApuesta p : pedidos) {
+					try {
+						p.aceptar(apostar(p.getDni(), p.getQuestionNumber(), p.getPrognosticNumber(), p.getCantidad()));
+					} catch (UserDoesntExist | WrongParameters | EventFinished | NotEnoughChuti e) {
+						p.rechazar(e);
+					}
+				}
+				confirmar();
+				break;
+			} catch (RollbackException e) {
+				prepararReintento(e, intento);
+			}
+		}
+		log.log(Level.FINE, "Guardado un lote de {0} apuestas", pedidos.size());
+	}
 
-		Question q = db.find(Question.class, apuesta.getQuestion().getQuestionNumber());
-		Event e = db.find(Event.class, apuesta.getEvento().getEventNumber());
-		q.addApuesta(apuesta);
+	/**
+	 * Comprueba y registra una apuesta en la transaccion abierta. Todas las
+	 * comprobaciones se hacen antes de mover dinero, asi que una apuesta
+	 * rechazada no deja nada a medias.
+	 */
+	private double apostar(int dni, int questionNumber, int prognosticNumber, double cantidad)
+			throws UserDoesntExist, WrongParameters, EventFinished, NotEnoughChuti {
+		Pronosticos pronostico = db().find(Pronosticos.class, prognosticNumber);
+		if (pronostico == null || pronostico.getQuestion() == null
+				|| pronostico.getQuestion().getQuestionNumber() != questionNumber) throw new WrongParameters();
+		Question pregunta = pronostico.getQuestion();
+		if (cantidad < pregunta.getBetMinimum()) throw new WrongParameters();
+		Event evento = pregunta.getEvent();
+		if (evento == null) {
+			// las preguntas de initializeDB no tienen el evento asignado
+			TypedQuery<Event> query = db().createQuery("SELECT e FROM Event e WHERE ?1 MEMBER OF e.questions", Event.class);
+			query.setParameter(1, pregunta);
+			evento = query.getSingleResult();
+		}
+		if (!pregunta.isEstado() || pregunta.isLiquidando() || new Date().after(evento.getEventDate()))
+			throw new EventFinished(ResourceBundle.getBundle("Etiquetas").getString("ErrorEventHasFinished"));
+
+		User usuario = db().find(User.class, dni);
+		if (usuario == null) throw new UserDoesntExist();
+		if (usuario.getChutiGoles() < cantidad) throw new NotEnoughChuti();
+		moverUsuario(usuario, -cantidad, "apuesta");
+		moverCasa(usuario.getDNI(), +cantidad, "apuesta de " + usuario.getDNI());
+		db().persist(new Apuesta(usuario, pronostico, cantidad, evento, pregunta));
+		log.log(Level.FINE, "Apuesta de {0} a {1}: {2}", new Object[] { dni, prognosticNumber, cantidad });
+		return usuario.getChutiGoles();
+	}
 
-		db.persist(e);
-		db.persist(usuario);
-		db.persist(admin);
-		db.getTransaction().commit();
-		System.out.println("apuesta realizada");
+	/**
+	 * Deja de admitir apuestas y cancelaciones en una pregunta para poder
+	 * liquidarla. La transaccion escribe todas las subcuentas de la casa, que
+	 * tambien escribe toda apuesta, asi que una apuesta que leyo la pregunta
+	 * antes y aun no se habia confirmado choca con ella, se repite y se rechaza.
+	 * Despues de esto ya no se guarda ninguna apuesta que no vea pagarLote.
+	 * @param q la pregunta que se va a liquidar
+	 */
+	public void empezarLiquidacion(Question q) {
+		for (int intento = 1; ; intento++) {
+			try {
+				empezar("empezarLiquidacion");
+				Question pregunta = db().find(Question.class, q.getQuestionNumber());
+				if (pregunta == null || !pregunta.isEstado()) {
+					deshacer();
+					return;
+				}
+				pregunta.setLiquidando(true);
+				for (int franja = 0; franja < Math.max(1, c.getHouseStripes()); franja++) {
+					HouseAccount cuenta = db().find(HouseAccount.class, franja);
+					if (cuenta == null) {
+						db().persist(new HouseAccount(franja, 0));
+					} else {
+						db().lock(cuenta, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+					}
+				}
+				confirmar();
+				log.log(Level.FINE, "Pregunta {0} cerrada a nuevas apuestas para liquidarla", q.getQuestionNumber());
+				return;
+			} catch (RollbackException e) {
+				prepararReintento(e, intento);
+			}
+		}
 	}
 
 	/**
@@ -712,18 +1282,95 @@ public class DataAccess {
 	 * @param chuti la cantidad a pagar
 	 */
 	public void pagarUsuario(User us, double chuti) {
-		db.getTransaction().begin();
-		User usuario= db.find(User.class, us.getDNI());
-		User admin = db.find(User.class, adminDNI);
+		for (int intento = 1; ; intento++) {
+			try {
+				empezar("pagarUsuario");
+				User usuario= db().find(User.class, us.getDNI());
+
+				moverUsuario(usuario, chuti, "premio");
+				moverCasa(usuario.getDNI(), -chuti, "premio de " + usuario.getDNI());
+
+				db().persist(usuario);
+				confirmar();
+				break;
+			} catch (RollbackException e) {
+				prepararReintento(e, intento);
+			}
+		}
+		log.log(Level.FINE, "Pagado al usuario: {0} {1} chutiDolares", new Object[] { us.getDNI(), chuti });
 
-		usuario.addChutiGoles(chuti);
-		admin.addChutiGoles(-chuti);
+	}
 
-		db.persist(usuario);
-		db.persist(admin);
-		db.getTransaction().commit();
-		System.out.println("Pagado al usuario: "+us.getDNI() + " "+ chuti+" chutiDolares");
+	/**
+	 * Cuenta las apuestas que han acertado el pronostico de una pregunta
+	 * @param q la pregunta
+	 * @param p el pronostico ganador
+	 * @return el numero de apuestas ganadoras
+	 */
+	public long contarApuestasGanadoras(Question q, Pronosticos p) {
+		TypedQuery<Long> query = db().createQuery("SELECT COUNT(a) FROM Apuesta a "
+				+ "WHERE a.pregunta.questionNumber=?1 AND a.pronostico.prognosticNumber=?2", Long.class);
+		query.setParameter(1, q.getQuestionNumber());
+		query.setParameter(2, p.getPrognosticNumber());
+		return query.getSingleResult();
+	}
 
+	/**
+	 * Liquida en una unica transaccion las siguientes apuestas de una pregunta
+	 * que aun no se han liquidado, en orden de numero: paga las que han acertado
+	 * y las marca todas como liquidadas, para que dejen de salir entre las
+	 * abiertas de su usuario. Los premios se agregan por usuario y se descuentan
+	 * de la subcuenta de la casa que corresponde a cada uno. Si la liquidacion
+	 * se corta a medias, volver a llamarlo solo liquida las que faltan.
+	 * @param q la pregunta a liquidar, que debe seguir abierta
+	 * @param p el pronostico ganador
+	 * @param desde numero de la ultima apuesta del lote anterior, 0 para el primero
+	 * @param cuantas numero maximo de apuestas del lote
+	 * @param pagados donde se suma, una vez confirmada la transaccion, lo pagado a cada DNI
+	 * @return el numero de la ultima apuesta liquidada, o 0 si no quedaba ninguna
+	 */
+	public int pagarLote(Question q, Pronosticos p, int desde, int cuantas, Map<Integer, Double> pagados) {
+		for (int intento = 1; ; intento++) {
+			try {
+				empezar("pagarLote");
+				Question pregunta = db().find(Question.class, q.getQuestionNumber());
+				Pronosticos pronostico = db().find(Pronosticos.class, p.getPrognosticNumber());
+				if (pregunta == null || !pregunta.isEstado()) {
+					deshacer();
+					return 0;
+				}
+				TypedQuery<Apuesta> query = db().createQuery("SELECT a FROM Apuesta a WHERE a.pregunta=?1 AND a.numeroPronostico>?2 "
+						+ "AND a.liquidada=false ORDER BY a.numeroPronostico", Apuesta.class);
+				query.setParameter(1, pregunta);
+				query.setParameter(2, desde);
+				query.setMaxResults(cuantas);
+				int ultima = 0;
+				Map<Integer, Double> premios = new HashMap<Integer, Double>();
+				for (Apuesta a : query.getResultList()) {
+					a.setLiquidada(true);
+					ultima = a.getNumeroPronostico();
+					if (a.getUser() == null || a.getPronostico() == null
+							|| !a.getPronostico().getPrognosticNumber().equals(pronostico.getPrognosticNumber())) continue;
+					Double antes = premios.get(a.getUser().getDNI());
+					premios.put(a.getUser().getDNI(), (antes == null ? 0 : antes) + a.getChutiGoles() * pronostico.getPorcentaje());
+				}
+				for (Map.Entry<Integer, Double> premio : premios.entrySet()) {
+					User usuario = db().find(User.class, premio.getKey());
+					moverUsuario(usuario, premio.getValue(), "premio");
+					moverCasa(usuario.getDNI(), -premio.getValue(), "premio de " + usuario.getDNI());
+				}
+				confirmar();
+				db().clear();
+				for (Map.Entry<Integer, Double> premio : premios.entrySet()) {
+					Double antes = pagados.get(premio.getKey());
+					pagados.put(premio.getKey(), (antes == null ? 0 : antes) + premio.getValue());
+				}
+				log.log(Level.FINE, "Liquidado hasta la apuesta {1}, pagando a {0} usuarios", new Object[] { premios.size(), ultima });
+				return ultima;
+			} catch (RollbackException e) {
+				prepararReintento(e, intento);
+			}
+		}
 	}
 
 	/**
@@ -733,13 +1380,14 @@ public class DataAccess {
 	 */
 	public void cerrarApuestaPregunta(Question q, Pronosticos p) {
 
-		db.getTransaction().begin();
-		Question qu = db.find(Question.class, q.getQuestionNumber());
+		empezar("cerrarApuestaPregunta");
+		Question qu = db().find(Question.class, q.getQuestionNumber());
 		qu.setEstado(false);
+		qu.setLiquidando(false);
 		qu.setPronosticoFinal(p);
-		db.persist(qu);
-		db.getTransaction().commit();
-		System.out.println("Pregunta: "+q.getQuestion()+" cerrada correctamente");
+		db().persist(qu);
+		confirmar();
+		log.log(Level.FINE, "Pregunta: {0} cerrada correctamente", q.getQuestion());
 
 	}
 
@@ -749,12 +1397,12 @@ public class DataAccess {
 	 */
 	public void cerrarEventoPublico(Event e) {
 
-		db.getTransaction().begin();
-		Event ev = db.find(Event.class, e.getEventNumber());
+		empezar("cerrarEventoPublico");
+		Event ev = db().find(Event.class, e.getEventNumber());
 		ev.setEstadoPublico(false);
-		db.persist(ev);
-		db.getTransaction().commit();
-		System.out.println("Evento: "+e.getDescription()+" cerrado al publico correctamente");
+		db().persist(ev);
+		confirmar();
+		log.log(Level.FINE, "Evento: {0} cerrado al publico correctamente", e.getDescription());
 
 	}
 
@@ -764,12 +1412,12 @@ public class DataAccess {
 	 */
 	public void cerrarEvento(Event e) {
 
-		db.getTransaction().begin();
-		Event ev = db.find(Event.class, e.getEventNumber());
+		empezar("cerrarEvento");
+		Event ev = db().find(Event.class, e.getEventNumber());
 		ev.setEstado(false);
-		db.persist(ev);
-		db.getTransaction().commit();
-		System.out.println("Evento: "+e.getDescription()+" cerrado correctamente");
+		db().persist(ev);
+		confirmar();
+		log.log(Level.FINE, "Evento: {0} cerrado correctamente", e.getDescription());
 
 	}
 
@@ -780,12 +1428,12 @@ public class DataAccess {
 	 * @return devuelve los pronosticos
 	 */
 	public Pronosticos getPronostico(Question pregunta, String ganador) {
-		Question preg = db.find(Question.class, pregunta.getQuestionNumber());
-		TypedQuery<Pronosticos> query = db.createQuery("SELECT p FROM Pronosticos p WHERE p.question=?1 AND p.pronostico=?2", Pronosticos.class);
+		Question preg = db().find(Question.class, pregunta.getQuestionNumber());
+		TypedQuery<Pronosticos> query = db().createQuery("SELECT p FROM Pronosticos p WHERE p.question=?1 AND p.pronostico=?2", Pronosticos.class);
 		query.setParameter(1, preg);
 		query.setParameter(2, ganador);
 		Pronosticos pronostico = query.getSingleResult();
-		System.out.println(pronostico);
+		log.log(Level.FINE, "{0}", pronostico);
 		return pronostico;
 
 	}
@@ -796,7 +1444,7 @@ public class DataAccess {
 	 * @return el usuario encontrado
 	 */
 	public User findUser(User usuario) {
-		return db.find(User.class, usuario.getDNI());
+		return conSaldoCasa(db().find(User.class, usuario.getDNI()));
 	}
 
 	/**
@@ -805,157 +1453,342 @@ public class DataAccess {
 	 * @param fecha la fecha de dicho evento
 	 */
 	public void addEvent(String descripcion, Date fecha, Equipo eq1, Equipo eq2) {
-		db.getTransaction().begin();
+		empezar("addEvent");
 		Event evento= new Event(descripcion, fecha, eq1, eq2);
-		System.out.println(evento);
-		db.persist(evento);
-		db.getTransaction().commit();
-		System.out.println("evento creado");
+		log.log(Level.FINE, "{0}", evento);
+		db().persist(evento);
+		confirmar();
+		log.fine("evento creado");
 	}
 
-	public Vector<Card> obtainUserCards(User us){
+	public List<Card> obtainUserCards(User us){
 
 
-		User u= db.find(User.class, us.getDNI());
-		System.out.println("Las tarjetas son: "+ u.getCards());
+		User u= db().find(User.class, us.getDNI());
+		log.log(Level.FINE, "Las tarjetas son: {0}", u.getCards());
 		return u.getCards();
 
 	}
 
 	public void addCardUser(User us, String tarjeta) {
-		db.getTransaction().begin();
-		User u= db.find(User.class, us.getDNI());
+		empezar("addCardUser");
+		User u= db().find(User.class, us.getDNI());
 		Card c = new Card(tarjeta,us);
 		u.addCards(c);
-		db.persist(u);
-		db.persist(c);
-		db.getTransaction().commit();
-		System.out.println("Tarjeta del usuario aadida correctamente"+u.getCards());
+		db().persist(u);
+		db().persist(c);
+		confirmar();
+		log.log(Level.FINE, "Tarjeta del usuario aadida correctamente{0}", u.getCards());
 	}
 
-	public Vector<Apuesta> getBetsFromUser(User us) {
-		System.out.println(">> DataAccess: getBetsFromUser ");
-		User us1 = db.find(User.class, us.getDNI());
-		Vector<Apuesta> res = new Vector<Apuesta>();
-		TypedQuery<Apuesta> query = db.createQuery("SELECT a FROM Apuesta a WHERE a.user=?1", Apuesta.class);
+	public List<Apuesta> getBetsFromUser(User us) {
+		log.fine(">> DataAccess: getBetsFromUser ");
+		User us1 = db().find(User.class, us.getDNI());
+		TypedQuery<Apuesta> query = db().createQuery("SELECT a FROM Apuesta a WHERE a.user=?1", Apuesta.class);
 		query.setParameter(1, us1);
-		List<Apuesta> apuestas = query.getResultList();
-		for (Apuesta a : apuestas) {
-			res.add(a);
-		}
-		return res;
+		return query.getResultList();
 	}
 
-	public Vector<Apuesta> getBetsFromUserOpen(User us) {
-		System.out.println(">> DataAccess: getBetsFromUser ");
-		User us1 = db.find(User.class, us.getDNI());
-		Vector<Apuesta> res = new Vector<Apuesta>();
-		TypedQuery<Apuesta> query = db.createQuery("SELECT a FROM Apuesta a WHERE a.user=?1 AND a.pregunta.estado=true", Apuesta.class);
+	public List<Apuesta> getBetsFromUserOpen(User us) {
+		log.fine(">> DataAccess: getBetsFromUser ");
+		User us1 = db().find(User.class, us.getDNI());
+		TypedQuery<Apuesta> query = db().createQuery("SELECT a FROM Apuesta a WHERE a.user=?1 AND a.liquidada=false", Apuesta.class);
 		query.setParameter(1, us1);
-		List<Apuesta> apuestas = query.getResultList();
-		for (Apuesta a : apuestas) {
-			res.add(a);
-		}
-		return res;
-	}
-	public void cancelarApuesta(Apuesta a) {
-		Apuesta ap = db.find(Apuesta.class, a.getNumeroPronostico());
-		if (ap != null) {
-			db.getTransaction().begin();
-			Question q = db.find(Question.class, ap.getQuestion().getQuestionNumber());
-			q.eliminarApuesta(ap);
-			User user=db.find(User.class, a.getUser());
-			user.eliminarApuesta(ap);
-			User admin=db.find(User.class, adminDNI);
-			admin.addChutiGoles(-a.getChutiGoles()*0.75);
-			user.addChutiGoles(a.getChutiGoles()*0.75);
-			db.remove(ap);
-			db.persist(user);
-			db.persist(admin);
-			db.persist(q);
-			db.getTransaction().commit();
-			return;
-		}
+		return query.getResultList();
+	}
 
+	/**
+	 * Obtiene una pagina de las apuestas de un usuario, de la mas reciente a la
+	 * mas antigua. La pagina empieza despues de la ultima apuesta de la anterior:
+	 * el indice sobre Apuesta.user guarda las apuestas de cada usuario por su
+	 * numero, asi que la consulta lee solo las filas de la pagina, sin contar las
+	 * que salta como setFirstResult. Hay que comparar a.user y no a.user.DNI para
+	 * que ObjectDB use el indice en ese orden
+	 * @param us el usuario
+	 * @param ultima numero de la ultima apuesta de la pagina anterior, o null para la primera
+	 * @param cuantas numero maximo de apuestas de la pagina
+	 * @return las apuestas de la pagina
+	 */
+	public List<Apuesta> getBetsFromUserPagina(User us, Integer ultima, int cuantas) {
+		TypedQuery<Apuesta> query = db().createQuery("SELECT a FROM Apuesta a WHERE a.user=?1 AND a.numeroPronostico<?2 ORDER BY a.numeroPronostico DESC", Apuesta.class);
+		query.setParameter(1, db().find(User.class, us.getDNI()));
+		query.setParameter(2, ultima == null ? Integer.MAX_VALUE : ultima);
+		query.setMaxResults(cuantas);
+		return query.getResultList();
 	}
-	public void crearBoleto(String codigo, int max, double valor) throws NotEnoughChuti, CodigoRepetido{
-		db.getTransaction().begin();
-		if (db.find(Boleto.class, codigo)!=null) throw new CodigoRepetido();
-		Boleto b = new Boleto(codigo, max, valor);
-		User admin=db.find(User.class, adminDNI);
-		if(admin.getChutiGoles()<max*valor) throw new NotEnoughChuti();
-		admin.addChutiGoles(-(max*valor));
-		db.persist(b);
-		db.getTransaction().commit();
+
+	/**
+	 * Como getBetsFromUserPagina, pero solo con las apuestas a preguntas abiertas.
+	 * Una pregunta solo se cierra cuando se han liquidado todas sus apuestas, asi
+	 * que se buscan las apuestas sin liquidar, con el indice (user, liquidada), y
+	 * no se lee ninguna de las ya cerradas aunque el usuario tenga muchas
+	 * @param us el usuario
+	 * @param ultima numero de la ultima apuesta de la pagina anterior, o null para la primera
+	 * @param cuantas numero maximo de apuestas de la pagina
+	 * @return las apuestas de la pagina
+	 */
+	public List<Apuesta> getBetsFromUserOpenPagina(User us, Integer ultima, int cuantas) {
+		TypedQuery<Apuesta> query = db().createQuery("SELECT a FROM Apuesta a WHERE a.user=?1 AND a.liquidada=false AND a.numeroPronostico<?2 ORDER BY a.numeroPronostico DESC", Apuesta.class);
+		query.setParameter(1, db().find(User.class, us.getDNI()));
+		query.setParameter(2, ultima == null ? Integer.MAX_VALUE : ultima);
+		query.setMaxResults(cuantas);
+		return query.getResultList();
+	}
+	/**
+	 * Cancela una apuesta y devuelve al usuario el 75% de lo apostado, segun la
+	 * cantidad guardada en la apuesta. Solo la puede cancelar su propio usuario,
+	 * y solo mientras la pregunta siga abierta y no se haya pagado
+	 * @param numeroApuesta el numero de la apuesta
+	 * @param dni el usuario que pide cancelarla
+	 * @return true si se ha cancelado
+	 */
+	public boolean cancelarApuesta(int numeroApuesta, int dni) {
+		for (int intento = 1; ; intento++) {
+			try {
+				empezar("cancelarApuesta");
+				Apuesta ap = db().find(Apuesta.class, numeroApuesta);
+				if (ap == null || ap.getUser() == null || ap.getUser().getDNI() != dni || ap.isLiquidada()
+						|| (ap.getQuestion() != null && (!ap.getQuestion().isEstado() || ap.getQuestion().isLiquidando()))) {
+					deshacer();
+					return false;
+				}
+				User user = ap.getUser();
+				double devuelto = ap.getChutiGoles() * 0.75;
+				moverCasa(user.getDNI(), -devuelto, "cancelacion de " + user.getDNI());
+				moverUsuario(user, devuelto, "cancelacion");
+				db().remove(ap);
+				confirmar();
+				log.log(Level.FINE, "Apuesta {0} de {1} cancelada", new Object[] { numeroApuesta, dni });
+				return true;
+			} catch (RollbackException e) {
+				prepararReintento(e, intento);
+			}
+		}
 	}
 
-	public void useBoleto(String codigo, User usuario) throws MaxUsed, BoletoNoExiste, BoletoUsado {
-		try {
-			db.getTransaction().begin();
-			Boleto b = db.find(Boleto.class, codigo);
-			User user = db.find(User.class, usuario);
-			if (b== null) throw new BoletoNoExiste();
-			if (b.getUsuarios().contains(usuario.getDNI())) throw new BoletoUsado();
-			b.used();
-			b.addUser(usuario.getDNI());
-			user.addChutiGoles(b.getPrecio());
-			db.persist(b);
-			db.persist(user);
-			db.getTransaction().commit();
-		} catch (MaxUsed e) {
-			throw new MaxUsed();
+	public void crearBoleto(String codigo, int max, double valor) throws NotEnoughChuti, CodigoRepetido{
+		for (int intento = 1; ; intento++) {
+			try {
+				empezar("crearBoleto");
+				if (db().find(Boleto.class, codigo)!=null) throw new CodigoRepetido();
+				Boleto b = new Boleto(codigo, max, valor);
+				if(getSaldoCasa()<max*valor) throw new NotEnoughChuti();
+				moverCasa(codigo.hashCode(), -(max*valor), "boleto " + codigo);
+				db().persist(b);
+				confirmar();
+				return;
+			} catch (RollbackException e) {
+				prepararReintento(e, intento);
+			}
 		}
+	}
 
+	/**
+	 * Crea en una transaccion un lote de boletos con los mismos canjes y valor.
+	 * Los codigos que ya existen se saltan, para que quien genera los codigos
+	 * los sustituya por otros en el siguiente lote.
+	 * @param codigos los codigos del lote, sin repetidos
+	 * @param max veces que se puede canjear cada boleto
+	 * @param valor lo que se abona en cada canje
+	 * @param cobro lo que se carga a la casa en esta transaccion, 0 si ya se ha cobrado
+	 * @param concepto el motivo del cargo en el libro
+	 * @return los codigos que se han creado
+	 * @throws NotEnoughChuti si la casa no tiene saldo para el cobro
+	 */
+	public List<String> crearBoletos(List<String> codigos, int max, double valor, double cobro, String concepto) throws NotEnoughChuti {
+		for (int intento = 1; ; intento++) {
+			try {
+				empezar("crearBoletos");
+				if (cobro > 0) {
+					if (getSaldoCasa() < cobro) throw new NotEnoughChuti();
+					moverCasa(concepto.hashCode(), -cobro, concepto);
+				}
+				List<String> creados = new ArrayList<String>(codigos.size());
+				for (String codigo : codigos) {
+					if (db().find(Boleto.class, codigo) == null) {
+						db().persist(new Boleto(codigo, max, valor));
+						creados.add(codigo);
+					}
+				}
+				confirmar();
+				return creados;
+			} catch (RollbackException e) {
+				prepararReintento(e, intento);
+			}
+		}
 	}
-	public void eliminarBoleto(String codigo) throws BoletoNoExiste {
-		db.getTransaction().begin();
-		Boleto b = db.find(Boleto.class, codigo);
-		if (b==null) throw new BoletoNoExiste();
-		User admin = db.find(User.class, adminDNI);
-		while(b.getUsados()<b.getMax()) {
+
+	/**
+	 * Devuelve a la casa lo cobrado por boletos que al final no se han creado
+	 * @param cantidad lo que se devuelve
+	 * @param concepto el motivo del abono en el libro
+	 */
+	public void devolverBoletos(double cantidad, String concepto) {
+		for (int intento = 1; ; intento++) {
 			try {
-				b.used();
-				admin.addChutiGoles(b.getPrecio());
-			} catch (MaxUsed e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				empezar("devolverBoletos");
+				moverCasa(concepto.hashCode(), cantidad, concepto);
+				confirmar();
+				return;
+			} catch (RollbackException e) {
+				prepararReintento(e, intento);
 			}
+		}
+	}
 
+	/**
+	 * Abona un boleto a un usuario. El canje queda apuntado en el libro del
+	 * usuario con el concepto "boleto codigo", y ese apunte es lo que se busca
+	 * en el indice (concepto, user) de Payment para no canjearlo dos veces, asi
+	 * que el coste no depende de cuantos usuarios hayan canjeado ya el boleto.
+	 * No comprueba ni toca Boleto.usados: el cupo lo lleva la fachada, que
+	 * suma los canjes con sumarUsosBoletos.
+	 * @param codigo el codigo del boleto
+	 * @param usuario quien lo canjea
+	 * @throws BoletoNoExiste si no hay ningun boleto con ese codigo
+	 * @throws BoletoUsado si el usuario ya lo habia canjeado
+	 */
+	public void useBoleto(String codigo, User usuario) throws BoletoNoExiste, BoletoUsado {
+		for (int intento = 1; ; intento++) {
+			try {
+				empezar("useBoleto");
+				Boleto b = db().find(Boleto.class, codigo);
+				if (b== null) throw new BoletoNoExiste();
+				User user = db().find(User.class, usuario.getDNI());
+				String concepto = "boleto " + codigo;
+				if (tieneApunte(user, concepto)) throw new BoletoUsado();
+				moverUsuario(user, b.getPrecio(), concepto);
+				confirmar();
+				return;
+			} catch (RollbackException e) {
+				prepararReintento(e, intento);
+			}
 		}
-		db.persist(b);
-		db.persist(admin);
-		db.getTransaction().commit();
+	}
 
+	/**
+	 * Calcula cuantas veces se puede canjear todavia un boleto. Los canjes se
+	 * cuentan en el libro, que esta al dia aunque Boleto.usados vaya por detras
+	 * @param codigo el codigo del boleto
+	 * @return los canjes que quedan, 0 si se ha agotado o eliminado
+	 * @throws BoletoNoExiste si no hay ningun boleto con ese codigo
+	 */
+	public int getLibresBoleto(String codigo) throws BoletoNoExiste {
+		Boleto b = db().find(Boleto.class, codigo);
+		if (b == null) throw new BoletoNoExiste();
+		return Math.max(0, b.getMax() - Math.max(b.getUsados(), contarCanjes(codigo)));
 	}
 
-	public void makePayment(User usr, double chutis, Date hoy, String card) {
-		User us = db.find(User.class, usr.getDNI());
-		Card c = db.find(Card.class, card);
-		if (us != null) {
-			db.getTransaction().begin();
-			us.setChutiGoles(us.getChutiGoles() + chutis);
-			Payment p = new Payment(us,c,chutis,hoy);
-			us.addPayments(p);
-			db.persist(p);
-			db.persist(us);
-			db.getTransaction().commit();
-			return;
+	/**
+	 * Suma a Boleto.usados los canjes acumulados por la fachada, en una sola transaccion
+	 * @param canjes numero de canjes nuevos por codigo de boleto
+	 */
+	public void sumarUsosBoletos(Map<String, Integer> canjes) {
+		for (int intento = 1; ; intento++) {
+			try {
+				empezar("sumarUsosBoletos");
+				for (Map.Entry<String, Integer> e : canjes.entrySet()) {
+					Boleto b = db().find(Boleto.class, e.getKey());
+					if (b != null) {
+						b.setUsados(Math.min(b.getMax(), b.getUsados() + e.getValue()));
+					}
+				}
+				confirmar();
+				return;
+			} catch (RollbackException e) {
+				prepararReintento(e, intento);
+			}
 		}
+	}
 
+	private int contarCanjes(String codigo) {
+		TypedQuery<Long> query = db().createQuery("SELECT COUNT(p) FROM Payment p WHERE p.concepto=?1 AND p.user.DNI<>?2", Long.class);
+		query.setParameter(1, "boleto " + codigo);
+		query.setParameter(2, adminDNI);
+		return query.getSingleResult().intValue();
+	}
 
+	private boolean tieneApunte(User us, String concepto) {
+		TypedQuery<Integer> query = db().createQuery("SELECT p.numeroPayment FROM Payment p WHERE p.user=?1 AND p.concepto=?2", Integer.class);
+		query.setParameter(1, us);
+		query.setParameter(2, concepto);
+		query.setMaxResults(1);
+		return !query.getResultList().isEmpty();
 	}
+	public void eliminarBoleto(String codigo) throws BoletoNoExiste {
+		for (int intento = 1; ; intento++) {
+			try {
+				empezar("eliminarBoleto");
+				Boleto b = db().find(Boleto.class, codigo);
+				if (b==null) throw new BoletoNoExiste();
+				// se devuelven las plazas que no se han canjeado segun el libro, por si
+				// Boleto.usados aun no tiene sumados los ultimos canjes
+				int usados = Math.max(b.getUsados(), contarCanjes(codigo));
+				double devuelto = Math.max(0, b.getMax() - usados) * b.getPrecio();
+				b.setUsados(b.getMax());
+				moverCasa(codigo.hashCode(), devuelto, "boleto " + codigo);
+				db().persist(b);
+				confirmar();
+				return;
+			} catch (RollbackException e) {
+				prepararReintento(e, intento);
+			}
+		}
 
-	public Vector<Payment> getPaymentsFromUser(User us) {
-		System.out.println(">> DataAccess: getPaymentsFromUser ");
-		User us1 = db.find(User.class, us.getDNI());
-		Vector<Payment> res = new Vector<Payment>();
-		TypedQuery<Payment> query = db.createQuery("SELECT p FROM Payment p WHERE  p.user=?1", Payment.class);
-		query.setParameter(1, us1);
-		List<Payment> pagos = query.getResultList();
-		for (Payment p : pagos) {
-			res.add(p);
+	}
+
+	public void makePayment(User usr, double chutis, Date hoy, String card) {
+		for (int intento = 1; ; intento++) {
+			try {
+				empezar("makePayment");
+				User us = db().find(User.class, usr.getDNI());
+				Card c = db().find(Card.class, card);
+				if (us == null) {
+					deshacer();
+					return;
+				}
+				// el propio pago es el apunte del libro de movimientos
+				if (us.getDNI() == adminDNI) {
+					cuentaCasa(us.getDNI()).addSaldo(chutis);
+				} else {
+					us.setChutiGoles(us.getChutiGoles() + chutis);
+				}
+				// los pagos se leen del libro por su indice, el usuario no los guarda
+				db().persist(new Payment(us,c,chutis,hoy));
+				confirmar();
+				return;
+			} catch (RollbackException e) {
+				prepararReintento(e, intento);
+			}
 		}
-		return res;
+	}
+
+	public List<Payment> getPaymentsFromUser(User us) {
+		log.fine(">> DataAccess: getPaymentsFromUser ");
+		User us1 = db().find(User.class, us.getDNI());
+		TypedQuery<Payment> query = db().createQuery("SELECT p FROM Payment p WHERE p.concepto=?1 AND p.user=?2", Payment.class);
+		query.setParameter(1, Payment.PAGO_TARJETA);
+		query.setParameter(2, us1);
+		return query.getResultList();
+	}
+
+	/**
+	 * Obtiene una pagina de los pagos con tarjeta de un usuario, del mas reciente
+	 * al mas antiguo, empezando despues del ultimo pago de la pagina anterior.
+	 * Los pagos se buscan por su concepto con el indice (concepto, user), asi que
+	 * no se leen los demas apuntes del libro de movimientos del usuario
+	 * @param us el usuario
+	 * @param ultimo numero del ultimo pago de la pagina anterior, o null para la primera
+	 * @param cuantos numero maximo de pagos de la pagina
+	 * @return los pagos de la pagina
+	 */
+	public List<Payment> getPaymentsFromUserPagina(User us, Integer ultimo, int cuantos) {
+		TypedQuery<Payment> query = db().createQuery("SELECT p FROM Payment p WHERE p.concepto=?1 AND p.user=?2 AND p.numeroPayment<?3 ORDER BY p.numeroPayment DESC", Payment.class);
+		query.setParameter(1, Payment.PAGO_TARJETA);
+		query.setParameter(2, db().find(User.class, us.getDNI()));
+		query.setParameter(3, ultimo == null ? Integer.MAX_VALUE : ultimo);
+		query.setMaxResults(cuantos);
+		return query.getResultList();
 	}
 
 
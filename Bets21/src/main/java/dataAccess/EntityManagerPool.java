@@ -0,0 +1,165 @@
+package dataAccess;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+/**
+ * Pool acotado de EntityManagers sobre una unica EntityManagerFactory.
+ * La factoria se crea una sola vez por proceso y los EntityManagers se
+ * reutilizan entre peticiones en lugar de reconstruirlos en cada open().
+ */
+public class EntityManagerPool {
+
+	private final EntityManagerFactory emf;
+	private final BlockingQueue<EntityManager> libres;
+	private final int maxSize;
+	private final long timeoutMillis;
+	private final AtomicInteger creados = new AtomicInteger();
+
+	private final AtomicLong checkouts = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong esperaTotalNanos = new AtomicLong();
+	private final AtomicLong esperaMaxNanos = new AtomicLong();
+
+	/**
+	 * Crea la factoria y un pool vacio que se ira llenando bajo demanda
+	 * @param url la url de objectdb de la base de datos
+	 * @param properties propiedades de conexion, o null
+	 * @param maxSize numero maximo de EntityManagers abiertos a la vez
+	 * @param timeoutMillis tiempo maximo de espera por un EntityManager libre
+	 */
+	public EntityManagerPool(String url, Map<String, String> properties, int maxSize, long timeoutMillis) {
+		if (properties == null) {
+			this.emf = Persistence.createEntityManagerFactory(url);
+		} else {
+			this.emf = Persistence.createEntityManagerFactory(url, properties);
+		}
+		this.maxSize = maxSize;
+		this.timeoutMillis = timeoutMillis;
+		this.libres = new LinkedBlockingQueue<EntityManager>(maxSize);
+	}
+
+	/**
+	 * Obtiene un EntityManager del pool, creandolo si aun no se ha llegado al maximo
+	 * @return un EntityManager listo para usar por un unico hilo
+	 * @throws IllegalStateException si no queda ninguno libre tras el tiempo de espera
+	 */
+	public EntityManager checkout() {
+		long inicio = System.nanoTime();
+		EntityManager em = libres.poll();
+		while (em == null) {
+			int n = creados.get();
+			if (n < maxSize) {
+				if (creados.compareAndSet(n, n + 1)) {
+					em = emf.createEntityManager();
+				}
+				continue;
+			}
+			try {
+				em = libres.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (em == null) {
+				timeouts.incrementAndGet();
+				throw new IllegalStateException("No hay EntityManagers libres tras " + timeoutMillis + " ms");
+			}
+		}
+		if (!em.isOpen()) {
+			creados.decrementAndGet();
+			return checkout();
+		}
+		registrarEspera(System.nanoTime() - inicio);
+		return em;
+	}
+
+	/**
+	 * Devuelve un EntityManager al pool, deshaciendo cualquier transaccion que
+	 * haya quedado abierta y vaciando su contexto de persistencia
+	 * @param em el EntityManager obtenido con checkout()
+	 */
+	public void release(EntityManager em) {
+		if (em == null) return;
+		if (!em.isOpen()) {
+			creados.decrementAndGet();
+			return;
+		}
+		if (em.getTransaction().isActive()) {
+			em.getTransaction().rollback();
+		}
+		em.clear();
+		if (!libres.offer(em)) {
+			em.close();
+			creados.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Cierra todos los EntityManagers libres y la factoria
+	 */
+	public void close() {
+		EntityManager em;
+		while ((em = libres.poll()) != null) {
+			em.close();
+		}
+		creados.set(0);
+		emf.close();
+	}
+
+	private void registrarEspera(long nanos) {
+		checkouts.incrementAndGet();
+		esperaTotalNanos.addAndGet(nanos);
+		long max = esperaMaxNanos.get();
+		while (nanos > max && !esperaMaxNanos.compareAndSet(max, nanos)) {
+			max = esperaMaxNanos.get();
+		}
+	}
+
+	public EntityManagerFactory getFactory() {
+		return emf;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public int getCreados() {
+		return creados.get();
+	}
+
+	public int getLibres() {
+		return libres.size();
+	}
+
+	public long getCheckouts() {
+		return checkouts.get();
+	}
+
+	public long getTimeouts() {
+		return timeouts.get();
+	}
+
+	public double getEsperaMediaMillis() {
+		long n = checkouts.get();
+		return n == 0 ? 0 : esperaTotalNanos.get() / 1e6 / n;
+	}
+
+	public double getEsperaMaxMillis() {
+		return esperaMaxNanos.get() / 1e6;
+	}
+
+	public String toString() {
+		return "EntityManagerPool[creados=" + getCreados() + "/" + maxSize + ", libres=" + getLibres()
+				+ ", checkouts=" + getCheckouts() + ", timeouts=" + getTimeouts()
+				+ ", esperaMedia=" + String.format("%.3f", getEsperaMediaMillis()) + " ms"
+				+ ", esperaMax=" + String.format("%.3f", getEsperaMaxMillis()) + " ms]";
+	}
+}
@@ -0,0 +1,69 @@
+package dataAccess;
+
+import java.util.List;
+
+import domain.Event;
+import domain.Question;
+
+/**
+ * Que parte del grafo de un evento se carga antes de devolverlo. Las preguntas
+ * y los pronosticos se cargan de forma perezosa, y al cerrar
+ * DataAccess lo que no se haya cargado queda a null, asi que cada consulta
+ * elige el plan que necesitan quienes la usan.
+ */
+public enum FetchPlan {
+	/** Solo los datos del evento, sin sus preguntas */
+	EVENTO(false, false),
+	/** El evento y sus preguntas, sin pronosticos: lo que muestra el calendario */
+	CALENDARIO(true, false),
+	/** Las preguntas con sus pronosticos: lo que hace falta para apostar o cerrar una pregunta */
+	PREGUNTAS(true, true);
+
+	private final boolean preguntas;
+	private final boolean pronosticos;
+
+	private FetchPlan(boolean preguntas, boolean pronosticos) {
+		this.preguntas = preguntas;
+		this.pronosticos = pronosticos;
+	}
+
+	/**
+	 * Carga lo que indica el plan de un evento que aun esta en el contexto de persistencia
+	 * @param ev el evento
+	 * @return el mismo evento
+	 */
+	public Event cargar(Event ev) {
+		if (ev != null && preguntas) {
+			for (Question q : ev.getQuestions()) {
+				cargar(q);
+			}
+		}
+		return ev;
+	}
+
+	/**
+	 * Carga lo que indica el plan de cada evento de una lista
+	 * @param eventos los eventos, todavia en el contexto de persistencia
+	 * @return la misma lista
+	 */
+	public List<Event> cargar(List<Event> eventos) {
+		if (preguntas) {
+			for (Event ev : eventos) {
+				cargar(ev);
+			}
+		}
+		return eventos;
+	}
+
+	/**
+	 * Carga lo que indica el plan de una pregunta que aun esta en el contexto de persistencia
+	 * @param q la pregunta
+	 * @return la misma pregunta
+	 */
+	public Question cargar(Question q) {
+		if (q != null && pronosticos) {
+			q.getPronosticos().size();
+		}
+		return q;
+	}
+}
@@ -0,0 +1,62 @@
+package dataAccess;
+
+/**
+ * Una apuesta pendiente de guardar con DataAccess.placeBets. Despues de
+ * guardar el lote tiene el saldo del usuario, o el motivo por el que se ha
+ * rechazado.
+ */
+public class PedidoApuesta {
+
+	private final int dni;
+	private final int questionNumber;
+	private final int prognosticNumber;
+	private final double cantidad;
+	private double saldo;
+	private Exception error;
+
+	public PedidoApuesta(int dni, int questionNumber, int prognosticNumber, double cantidad) {
+		this.dni = dni;
+		this.questionNumber = questionNumber;
+		this.prognosticNumber = prognosticNumber;
+		this.cantidad = cantidad;
+	}
+
+	public int getDni() {
+		return dni;
+	}
+
+	public int getQuestionNumber() {
+		return questionNumber;
+	}
+
+	public int getPrognosticNumber() {
+		return prognosticNumber;
+	}
+
+	public double getCantidad() {
+		return cantidad;
+	}
+
+	/**
+	 * @return el saldo del usuario despues de apostar, si no hay error
+	 */
+	public double getSaldo() {
+		return saldo;
+	}
+
+	/**
+	 * @return la excepcion por la que se ha rechazado la apuesta, o null si se ha guardado
+	 */
+	public Exception getError() {
+		return error;
+	}
+
+	public void aceptar(double saldo) {
+		this.saldo = saldo;
+		this.error = null;
+	}
+
+	public void rechazar(Exception error) {
+		this.error = error;
+	}
+}
@@ -0,0 +1,167 @@
+package dataAccess;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+
+import metrics.Metricas;
+
+/**
+ * Unidad de trabajo confinada a un hilo. Cada hilo que abre DataAccess obtiene
+ * su propio EntityManager del pool, de modo que las peticiones concurrentes al
+ * servicio web no comparten contexto de persistencia ni transacciones.
+ * Las transacciones que se empiezan con empezar(operacion) se miden en
+ * Metricas con ese nombre hasta confirmar() o deshacer().
+ */
+public final class UnitOfWork {
+
+	private static final ThreadLocal<UnitOfWork> actual = new ThreadLocal<UnitOfWork>();
+
+	private final EntityManagerPool pool;
+	private final EntityManager em;
+	private final boolean implicita;
+	private int abiertas = 1;
+	private String operacion;
+	private long inicio;
+
+	private UnitOfWork(EntityManagerPool pool, EntityManager em, boolean implicita) {
+		this.pool = pool;
+		this.em = em;
+		this.implicita = implicita;
+	}
+
+	/**
+	 * Abre una unidad de trabajo para el hilo actual. Si el hilo ya tenia una
+	 * abierta del mismo pool, la nueva se anida en ella: comparte su
+	 * EntityManager y solo se cierra de verdad con el end() de la de fuera
+	 * @param pool el pool del que se obtiene el EntityManager
+	 * @return la unidad de trabajo del hilo
+	 */
+	public static UnitOfWork begin(EntityManagerPool pool) {
+		return begin(pool, false);
+	}
+
+	/**
+	 * Abre una unidad de trabajo para el hilo actual
+	 * @param pool el pool del que se obtiene el EntityManager
+	 * @param implicita true para la que abre DataAccess sin open(), en su
+	 *                  constructor o cuando se usa sin abrirlo. Dentro de una
+	 *                  unidad abierta con open() se usa esa sin anidarse. Una
+	 *                  unidad implicita, o una de un pool que ya no se usa, se
+	 *                  cierra al abrir otra
+	 * @return la unidad de trabajo del hilo
+	 */
+	static UnitOfWork begin(EntityManagerPool pool, boolean implicita) {
+		UnitOfWork uow = actual.get();
+		if (uow != null && !uow.implicita && uow.pool == pool) {
+			// la de fuera la cierra quien la abrio; el constructor solo necesita que haya una
+			if (!implicita) {
+				uow.abiertas++;
+			}
+			return uow;
+		}
+		if (uow != null) {
+			uow.cerrar();
+		}
+		uow = new UnitOfWork(pool, pool.checkout(), implicita);
+		actual.set(uow);
+		return uow;
+	}
+
+	/**
+	 * Devuelve la unidad de trabajo del hilo actual
+	 * @return la unidad de trabajo abierta por este hilo
+	 * @throws IllegalStateException si el hilo no ha abierto DataAccess
+	 */
+	public static UnitOfWork current() {
+		UnitOfWork uow = actual.get();
+		if (uow == null) {
+			throw new IllegalStateException("DataAccess no esta abierto en el hilo " + Thread.currentThread().getName());
+		}
+		return uow;
+	}
+
+	/**
+	 * Indica si el hilo actual tiene una unidad de trabajo abierta
+	 * @return true si la tiene
+	 */
+	public static boolean isOpen() {
+		return actual.get() != null;
+	}
+
+	/**
+	 * Cierra la unidad de trabajo del hilo actual, si la hay. Si estaba anidada
+	 * solo se sale de ella; la de fuera devuelve su EntityManager al pool y
+	 * deshace la transaccion que haya quedado abierta
+	 */
+	public static void end() {
+		UnitOfWork uow = actual.get();
+		if (uow != null && --uow.abiertas == 0) {
+			uow.cerrar();
+		}
+	}
+
+	/**
+	 * Cierra la unidad de trabajo del hilo actual solo si es implicita
+	 */
+	static void endImplicita() {
+		UnitOfWork uow = actual.get();
+		if (uow != null && uow.implicita) {
+			uow.cerrar();
+		}
+	}
+
+	public EntityManager getEntityManager() {
+		return em;
+	}
+
+	/**
+	 * Empieza una transaccion y empieza a medirla
+	 * @param operacion el nombre con el que se registra en Metricas
+	 */
+	public void empezar(String operacion) {
+		em.getTransaction().begin();
+		this.operacion = operacion;
+		inicio = System.nanoTime();
+	}
+
+	/**
+	 * Confirma la transaccion empezada con empezar y registra lo que ha tardado
+	 */
+	public void confirmar() {
+		boolean error = true;
+		try {
+			em.getTransaction().commit();
+			error = false;
+		} finally {
+			terminar(error);
+		}
+	}
+
+	/**
+	 * Deshace la transaccion, si sigue activa, y la registra como fallida
+	 */
+	public void deshacer() {
+		try {
+			EntityTransaction tx = em.getTransaction();
+			if (tx.isActive()) {
+				tx.rollback();
+			}
+		} finally {
+			terminar(true);
+		}
+	}
+
+	private void cerrar() {
+		actual.remove();
+		// una transaccion sin confirmar() ni deshacer() se deshace al devolver el EntityManager
+		terminar(true);
+		pool.release(em);
+	}
+
+	private void terminar(boolean error) {
+		if (operacion != null) {
+			Metricas.global().registrar("DataAccess", operacion, System.nanoTime() - inicio, error);
+			operacion = null;
+		}
+	}
+}
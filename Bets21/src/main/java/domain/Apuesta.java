@@ -1,31 +1,47 @@
 package domain;
 
+import javax.jdo.annotations.Index;
+import javax.jdo.annotations.Indices;
 import javax.persistence.*;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlIDREF;
 
 
 @XmlAccessorType(XmlAccessType.FIELD)
 @Entity
+// sirven para leer solo las apuestas aun sin liquidar de un usuario o de una pregunta
+@Indices({ @Index(members = { "user", "liquidada" }), @Index(members = { "pregunta", "liquidada" }) })
 public class Apuesta {
 	@Id @GeneratedValue
 	private Integer numeroPronostico;
 
+	@XmlIDREF
+	@Index
 	private User user;
 
 	private Pronosticos pronostico;
 	private double chutiGoles;
 
+	@XmlIDREF
 	private Question pregunta;
+	@XmlIDREF
 	private Event evento;
+	// true cuando la apuesta ya se ha liquidado, y pagado si era ganadora, al cerrar la pregunta.
+	// Es Boolean para que las filas anteriores a este campo, que no tienen valor, se distingan de false
+	private Boolean liquidada;
 	
+	public Apuesta() {
+		super();
+	}
+
 	public Apuesta(User user, Pronosticos pronostico, double chutiGoles, Event e, Question pregunta) {
 		this.setUser(user);
 		this.setPronostico(pronostico);
 		this.setChutiGoles(chutiGoles);
 		this.setQuestion(pregunta);
 		this.setEvento(e);
-		
+		this.setLiquidada(false);
 	}
 
 	public Question getQuestion() {
@@ -93,5 +109,13 @@ public class Apuesta {
 		this.evento = evento;
 	}
 
+	public boolean isLiquidada() {
+		return Boolean.TRUE.equals(liquidada);
+	}
+
+	public void setLiquidada(Boolean liquidada) {
+		this.liquidada = liquidada;
+	}
+
 
 }
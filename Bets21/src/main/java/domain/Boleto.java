@@ -1,7 +1,6 @@
 package domain;
 
 import java.io.Serializable;
-import java.util.Vector;
 
 import javax.persistence.Entity;
 
@@ -9,35 +8,27 @@ import javax.persistence.Id;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlID;
-import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 import exceptions.MaxUsed;
 @XmlAccessorType(XmlAccessType.FIELD)
 @Entity
 public class Boleto implements Serializable {
 	@XmlID
-	@XmlJavaTypeAdapter(IntegerAdapter.class)
 	@Id
 	private String code;
 	private Integer max;
 	private double valor;
 	private Integer usados;
-	private Vector<Integer> usuarios;
 	
+	public Boleto() {
+		super();
+	}
+
 	public Boleto(String code, Integer max, double precio) {
 		this.code = code;
 		this.max = max;
 		this.valor = precio;
 		this.usados = 0;
-		this.usuarios= new Vector<Integer>();
-	}
-
-	public Vector<Integer> getUsuarios() {
-		return usuarios;
-	}
-
-	public void setUsuarios(Vector<Integer> usuarios) {
-		this.usuarios = usuarios;
 	}
 
 	public String getCode() {
@@ -79,8 +70,5 @@ public class Boleto implements Serializable {
 			throw new MaxUsed();
 		}
 	}
-	public void addUser(Integer user) {
-		this.usuarios.add(user);
-	}
 
 }
@@ -7,19 +7,23 @@ import javax.persistence.Id;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlID;
-import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import javax.xml.bind.annotation.XmlIDREF;
 
 //@SuppressWarnings("serial")
 @XmlAccessorType(XmlAccessType.FIELD)
 @Entity
 public class Card implements Serializable{
 	@XmlID
-	@XmlJavaTypeAdapter(IntegerAdapter.class)
 	@Id
 	private String cardNumber;
 	
+	@XmlIDREF
 	private User user;
 
+	public Card() {
+		super();
+	}
+
 	public Card(String cardNumber, User user) {
 		super();
 		this.cardNumber = cardNumber;
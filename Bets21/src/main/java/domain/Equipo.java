@@ -3,7 +3,8 @@ package domain;
 
 
 
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.persistence.*;
 import javax.xml.bind.annotation.XmlAccessType;
@@ -34,10 +35,14 @@ public class Equipo {
 	//@XmlIDREF
 	//private Vector <Event> eventos = new Vector <Event>();
 	
-	@OneToMany(fetch=FetchType.EAGER, cascade = CascadeType.PERSIST)
-	private Vector <Jugador> jugadores = new Vector<Jugador>();
+	@ElementCollection(fetch=FetchType.LAZY)
+	private List<Jugador> jugadores = new ArrayList<Jugador>();
 	
 	
+	public Equipo() {
+		super();
+	}
+
 	public Equipo(String nombre, int temporada) {
 		
 		this.nombre = nombre;
@@ -71,7 +76,7 @@ public class Equipo {
 
 
 
-	public void setJugadores(Vector<Jugador> jugadores) {
+	public void setJugadores(List<Jugador> jugadores) {
 		this.jugadores = jugadores;
 	}
 
@@ -109,7 +114,7 @@ public class Equipo {
 		jugadores.add(jugador);
 	}
 	
-	public Vector<Jugador> getJugadores(){
+	public List<Jugador> getJugadores(){
 		return this.jugadores;
 	}
 	
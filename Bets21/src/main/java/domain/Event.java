@@ -3,8 +3,9 @@ package domain;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.Vector;
+import java.util.List;
 
+import javax.jdo.annotations.Index;
 import javax.persistence.*;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -26,18 +27,19 @@ public class Event implements Serializable {
 	private String description; 
 	private Equipo eq1;
 	private Equipo eq2;
+	@Index
 	private Date eventDate;
-	@OneToMany(fetch=FetchType.EAGER, cascade=CascadeType.PERSIST)
-	private Vector<Question> questions=new Vector<Question>();
+	@OneToMany(fetch=FetchType.LAZY, cascade=CascadeType.PERSIST)
+	private List<Question> questions=new ArrayList<Question>();
 	
 	private boolean estado;//true = abierto
 	private boolean estadoPublico;
 
-	public Vector<Question> getQuestions() {
+	public List<Question> getQuestions() {
 		return questions;
 	}
 
-	public void setQuestions(Vector<Question> questions) {
+	public void setQuestions(List<Question> questions) {
 		this.questions = questions;
 	}
 
@@ -52,7 +54,7 @@ public class Event implements Serializable {
 		this.setEstadoPublico(true);
 		this.setEq1(eq1);
 		this.setEq2(eq2);
-		this.setQuestions(new Vector<Question>());
+		this.setQuestions(new ArrayList<Question>());
 	}
 
 	public Integer getEventNumber() {
@@ -93,7 +95,6 @@ public class Event implements Serializable {
 	 */
 	public Question addQuestion(String question, float betMinimum, boolean equipo)  {
         Question q=new Question(question,betMinimum, this, equipo);
-        System.out.println(q.getEvent());
         questions.add(q);
         return q;
 	}
@@ -172,6 +173,31 @@ public class Event implements Serializable {
 	public void setEq2(Equipo eq2) {
 		this.eq2 = eq2;
 	}
+
+	/**
+	 * Copia el evento y sus preguntas, de modo que se puede modificar la copia
+	 * sin tocar el original. Los equipos y los pronosticos se comparten
+	 * @return la copia
+	 */
+	public Event copia() {
+		Event e = new Event();
+		e.eventNumber = eventNumber;
+		e.description = description;
+		e.eq1 = eq1;
+		e.eq2 = eq2;
+		e.eventDate = eventDate == null ? null : new Date(eventDate.getTime());
+		e.estado = estado;
+		e.estadoPublico = estadoPublico;
+		if (questions == null) {
+			e.questions = null;
+		} else {
+			e.questions = new ArrayList<Question>(questions.size());
+			for (Question q : questions) {
+				e.questions.add(q.copia(e));
+			}
+		}
+		return e;
+	}
 	
 	
 
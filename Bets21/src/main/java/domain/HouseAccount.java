@@ -0,0 +1,56 @@
+package domain;
+
+import java.io.Serializable;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Version;
+
+/**
+ * Una de las subcuentas en las que se reparte el saldo de la casa. Cada
+ * movimiento de dinero toca solo la subcuenta que le corresponde, de modo que
+ * las apuestas concurrentes no compiten por una unica fila del administrador.
+ * El saldo de la casa es la suma de todas las subcuentas.
+ */
+@Entity
+public class HouseAccount implements Serializable {
+
+	@Id
+	private Integer franja;
+	private double saldo;
+	@Version
+	private long version;
+
+	public HouseAccount() {
+		super();
+	}
+
+	public HouseAccount(Integer franja, double saldo) {
+		this.franja = franja;
+		this.saldo = saldo;
+	}
+
+	public Integer getFranja() {
+		return franja;
+	}
+
+	public double getSaldo() {
+		return saldo;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public void setSaldo(double saldo) {
+		this.saldo = saldo;
+	}
+
+	public void addSaldo(double cantidad) {
+		this.saldo += cantidad;
+	}
+
+	public String toString() {
+		return "HouseAccount[" + franja + "]=" + saldo;
+	}
+}
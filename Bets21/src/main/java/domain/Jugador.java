@@ -5,25 +5,47 @@ import java.util.Date;
 
 import javax.persistence.*;
 
-import javax.xml.bind.annotation.XmlIDREF;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlTransient;
 
 
+// se guarda dentro de su equipo: como entidad pasaria del limite de tipos de ObjectDB
+@XmlAccessorType(XmlAccessType.FIELD)
+@Embeddable
 public class Jugador {
 	
-	@Id
 	private String nombre;
 	
 	private int edad;
 	private Date fechaNac;
 	private double altura;
 	
-	@XmlIDREF
+	@XmlTransient @Transient
 	private Equipo equipo;
 	
+	public Jugador() {
+		super();
+	}
+	
 	public Jugador(String nombre, Date fechaNac) {
 		this.nombre = nombre;
+		this.setFechaNac(fechaNac);
+	}
+
+	public String getNombre() {
+		return nombre;
+	}
+
+	public Date getFechaNac() {
+		return fechaNac;
+	}
+
+	public void setFechaNac(Date fechaNac) {
 		this.fechaNac = fechaNac;
-		this.setEdad(Calendar.getInstance().get(Calendar.YEAR) - this.fechaNac.getYear());
+		Calendar nac = Calendar.getInstance();
+		nac.setTime(fechaNac);
+		this.setEdad(Calendar.getInstance().get(Calendar.YEAR) - nac.get(Calendar.YEAR));
 	}
 
 	public int getEdad() {
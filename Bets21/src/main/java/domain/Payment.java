@@ -2,6 +2,7 @@ package domain;
 
 import java.util.Date;
 
+import javax.jdo.annotations.Index;
 import javax.persistence.*;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -10,22 +11,47 @@ import javax.xml.bind.annotation.XmlIDREF;
 
 @XmlAccessorType(XmlAccessType.FIELD)
 @Entity
+// sirve para buscar si un usuario ya ha canjeado un boleto y para contar sus canjes
+@Index(members = { "concepto", "user" })
 public class Payment {
+	// concepto de los pagos con tarjeta, por el que se buscan con el indice (concepto, user)
+	public static final String PAGO_TARJETA = "pago con tarjeta";
+
 	@Id @GeneratedValue
 	private Integer numeroPayment;
 	
 	@XmlIDREF
+	@Index
 	private User user;
 	private Card card;
 	private double chutigoles;
 	private Date fecha;
+	private String concepto;
 	
 	
+	public Payment() {
+		super();
+	}
+
 	public Payment(User user, Card card, double chutigoles, Date fecha) {
 		this.user = user;
 		this.card = card;
 		this.chutigoles = chutigoles;
 		this.fecha = fecha;
+		this.concepto = PAGO_TARJETA;
+	}
+
+	/**
+	 * Crea un apunte del libro de movimientos que no corresponde a un pago con tarjeta
+	 * @param user la cuenta afectada, el administrador para la casa
+	 * @param chutigoles positiva para abonar, negativa para cargar
+	 * @param concepto el motivo del movimiento
+	 */
+	public Payment(User user, double chutigoles, String concepto) {
+		this.user = user;
+		this.chutigoles = chutigoles;
+		this.fecha = new Date();
+		this.concepto = concepto;
 	}
 
 
@@ -77,6 +103,16 @@ public class Payment {
 	public void setFecha(Date fecha) {
 		this.fecha = fecha;
 	}
+
+
+	public String getConcepto() {
+		return concepto;
+	}
+
+
+	public void setConcepto(String concepto) {
+		this.concepto = concepto;
+	}
 	
 	
 }
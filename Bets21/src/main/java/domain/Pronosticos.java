@@ -1,5 +1,6 @@
 package domain;
 
+import javax.jdo.annotations.Index;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
@@ -11,6 +12,7 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 @XmlAccessorType(XmlAccessType.FIELD)
 @Entity
+@Index(members = { "question", "pronostico" })
 /**
  * Clase que genera objetos de tipo Pronosticos
  *
@@ -28,6 +30,10 @@ public class Pronosticos {
 	private Equipo equipo = null;
 	@XmlIDREF
 	private Question question;
+	public Pronosticos() {
+		super();
+	}
+
 	/**
 	 * Contructora que inicializa un objeto de tipo Pronosticos
 	 * @param pronostico
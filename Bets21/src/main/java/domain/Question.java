@@ -1,11 +1,13 @@
 package domain;
 
 import java.io.*;
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.persistence.*;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlID;
 import javax.xml.bind.annotation.XmlIDREF;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
@@ -20,6 +22,7 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 public class Question implements Serializable {
 	
 	@Id 
+	@XmlID
 	@XmlJavaTypeAdapter(IntegerAdapter.class)
 	@GeneratedValue
 	private Integer questionNumber;
@@ -29,12 +32,12 @@ public class Question implements Serializable {
 	@XmlIDREF
 	private Event event;
 	
-	@OneToMany(fetch=FetchType.EAGER, cascade = CascadeType.PERSIST)
-	private Vector<Pronosticos> pronosticos = new Vector<Pronosticos>();
-	@OneToMany(fetch=FetchType.EAGER, cascade = CascadeType.PERSIST)
-	private Vector<Apuesta> apuestas = new Vector<Apuesta>();
+	@OneToMany(fetch=FetchType.LAZY, cascade = CascadeType.PERSIST)
+	private List<Pronosticos> pronosticos = new ArrayList<Pronosticos>();
 	
 	private boolean estado;
+	// true mientras se liquida: ya no admite apuestas aunque aun no este cerrada
+	private Boolean liquidando;
 	private boolean equipo;//si la respuesta se trata de un equipo
 	private Pronosticos PronosticoFinal;
 
@@ -206,29 +209,10 @@ public class Question implements Serializable {
 		}
 	}
 	
-	public Vector<Pronosticos> getPronosticos() {
+	public List<Pronosticos> getPronosticos() {
 		return pronosticos;
 	}
 	
-	public Apuesta addApuesta(Apuesta a)  {
-        
-        apuestas.add(a);
-        return a;
-	}
-	
-	public Vector<Apuesta>getApuestas(){
-		return apuestas;
-	}
-	
-	public void eliminarApuesta(Apuesta ap) {
-		for (int i = 0; i<apuestas.size();i++) {
-			if (apuestas.get(i).getNumeroPronostico() == ap.getNumeroPronostico()) {
-				apuestas.remove(i);
-				return;
-			}
-		}
-	}
-	
 	/**
      * Metodo que comprueba si un pronostico ya existe
      * @param pronostico String que representa un pronostico
@@ -260,6 +244,12 @@ public class Question implements Serializable {
 	public void setEstado(boolean estado) {
 		this.estado = estado;
 	}
+	public boolean isLiquidando() {
+		return Boolean.TRUE.equals(liquidando);
+	}
+	public void setLiquidando(Boolean liquidando) {
+		this.liquidando = liquidando;
+	}
 	public Pronosticos getPronosticoFinal() {
 		return PronosticoFinal;
 	}
@@ -273,6 +263,26 @@ public class Question implements Serializable {
 		this.equipo = equipo;
 	}
 
+	/**
+	 * Copia la pregunta para un evento copiado. Los pronosticos se comparten con
+	 * la original, pero no la lista que los guarda
+	 * @param ev la copia del evento al que pertenece
+	 * @return la copia
+	 */
+	public Question copia(Event ev) {
+		Question q = new Question();
+		q.questionNumber = questionNumber;
+		q.question = question;
+		q.betMinimum = betMinimum;
+		q.result = result;
+		q.event = ev;
+		q.pronosticos = pronosticos == null ? null : new ArrayList<Pronosticos>(pronosticos);
+		q.estado = estado;
+		q.equipo = equipo;
+		q.PronosticoFinal = PronosticoFinal;
+		return q;
+	}
+
 
 	
 }
\ No newline at end of file
@@ -1,15 +1,18 @@
 package domain;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.Vector;
+import java.util.List;
 
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Version;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlID;
+import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 //@SuppressWarnings("serial")
@@ -39,13 +42,21 @@ public class User implements Serializable{
 	private Double chutiGoles;
 	private Boolean privilegiado; // true = administrador, false = cliente
 	
-	//@OneToMany(fetch=FetchType.EAGER, cascade = CascadeType.PERSIST)
-	private Vector<Apuesta> apuestas =new Vector<Apuesta>();
-	private Vector<Card> cards =  new Vector<Card>();
-	private Vector<Payment> payments= new Vector<Payment>();
+	private List<Card> cards =  new ArrayList<Card>();
+	// foto del saldo: lo acumulado en el libro de movimientos hasta el pago fotoHasta
+	private Double fotoSaldo;
+	private Integer fotoHasta;
+	private Date fotoFecha;
+	// cada transaccion que cambia el saldo comprueba que nadie lo ha cambiado antes
+	@Version @XmlTransient
+	private long version;
 	
 	
 
+	public User() {
+		super();
+	}
+
 	/**
 	 * Constructora de la clase User
 	 * @param numMovil Integer que representa el numero de un telefono movil
@@ -172,31 +183,11 @@ public class User implements Serializable{
 	public void setBan(boolean ban) {
 		this.ban = ban;
 	}
-	public Vector<Apuesta> getApuestas() {
-		return apuestas;
-	}
-	public void setApuestas(Vector<Apuesta> apuestas) {
-		this.apuestas = apuestas;
-	}
-	
-	public void eliminarApuesta(Apuesta ap) {
-		for (int i = 0; i<apuestas.size();i++) {
-			if (apuestas.get(i).getNumeroPronostico() == ap.getNumeroPronostico()) {
-				apuestas.remove(i);
-				return;
-			}
-		}
-	}
-	
-	public void addApuesta(Apuesta apuesta) {
-		this.apuestas.add(apuesta);
-	}
-	
 	
-	public Vector<Card> getCards() {
+	public List<Card> getCards() {
 		return cards;
 	}
-	public void setCards(Vector<Card> cards) {
+	public void setCards(List<Card> cards) {
 		this.cards = cards;
 	}
 
@@ -204,14 +195,30 @@ public class User implements Serializable{
 		this.cards.add(tarjeta);
 	}
 	
-	public Vector<Payment> getPayments() {
-		return payments;
+	public Double getFotoSaldo() {
+		return fotoSaldo;
 	}
-	public void setPayments(Vector<Payment> payments) {
-		this.payments = payments;
+
+	public Integer getFotoHasta() {
+		return fotoHasta;
 	}
-	
-	public void addPayments(Payment pago) {
-		this.payments.add(pago);
+
+	public Date getFotoFecha() {
+		return fotoFecha;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Guarda una nueva foto del saldo
+	 * @param saldo el saldo acumulado hasta el movimiento indicado
+	 * @param hasta el numero del ultimo movimiento incluido en la foto
+	 */
+	public void tomarFoto(double saldo, int hasta) {
+		this.fotoSaldo = saldo;
+		this.fotoHasta = hasta;
+		this.fotoFecha = new Date();
 	}
 }
\ No newline at end of file
@@ -12,9 +12,9 @@ import domain.Event;
 
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.util.ArrayList;
 import java.util.Locale;
 import java.util.ResourceBundle;
-import java.util.Vector;
 import java.awt.event.ActionListener;
 import java.awt.event.ActionEvent;
 
@@ -150,7 +150,7 @@ public class AdminMainGUI extends JFrame {
 
 			jButtonCreateQuery.addActionListener(new java.awt.event.ActionListener() {
 				public void actionPerformed(java.awt.event.ActionEvent e) {
-					JFrame a = new CreateQuestionGUI(new Vector<Event>(), mainGui);
+					JFrame a = new CreateQuestionGUI(new ArrayList<Event>(), mainGui);
 					a.setVisible(true);
 					setVisible(false);
 				}
@@ -8,9 +8,9 @@ import javax.swing.JButton;
 import javax.swing.JComboBox;
 
 import java.awt.event.ActionListener;
+import java.util.List;
 import java.util.Date;
 import java.util.ResourceBundle;
-import java.util.Vector;
 import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import javax.swing.border.EmptyBorder;
@@ -229,7 +229,7 @@ public class AdministrarFondosGUI extends JFrame{
 		textoNumTarjeta.setVisible(true);
 		btnGuardarTarjeta.setVisible(true);
 		
-		Vector<Card> tarjetas;
+		List<Card> tarjetas;
 		try {
 			
 			tarjetas = facade.obtenerTarjetasUsr();
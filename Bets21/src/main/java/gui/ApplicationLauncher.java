@@ -6,12 +6,14 @@ import java.util.Locale;
 
 import javax.swing.UIManager;
 import javax.xml.namespace.QName;
+import javax.xml.ws.BindingProvider;
 import javax.xml.ws.Service;
 
 import business.logic.BLFacade;
 import business.logic.BLFacadeImplementation;
 import configuration.ConfigXML;
 import dataAccess.DataAccess;
+import metrics.Metricas;
 
 public class ApplicationLauncher { 
 	
@@ -46,7 +48,7 @@ public class ApplicationLauncher {
 				//In this option, you can parameterize the DataAccess (e.g. a Mock DataAccess object)
 
 				DataAccess da= new DataAccess(c.getDataBaseOpenMode().equals("initialize"));
-				appFacadeInterface=new BLFacadeImplementation(da);
+				appFacadeInterface=Metricas.global().envolver(BLFacade.class, new BLFacadeImplementation(da), "BLFacade");
 
 				
 			}
@@ -62,11 +64,12 @@ public class ApplicationLauncher {
 		        //1st argument refers to wsdl document above
 				//2nd argument is service name, refer to wsdl document above
 //		        QName qname = new QName("http://businessLogic/", "FacadeImplementationWSService");
-		        QName qname = new QName("http://businessLogic/", "BLFacadeImplementationService");
+		        QName qname = new QName("http://logic.business/", "BLFacadeImplementationService");
 		 
 		        Service service = Service.create(url, qname);
 
 		         appFacadeInterface = service.getPort(BLFacade.class);
+		         ((BindingProvider) appFacadeInterface).getRequestContext().put(BindingProvider.SESSION_MAINTAIN_PROPERTY, true);
 			} 
 			/*if (c.getDataBaseOpenMode().equals("initialize")) 
 				appFacadeInterface.initializeBD();
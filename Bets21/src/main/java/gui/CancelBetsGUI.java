@@ -8,6 +8,7 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.Serializable;
 
+import java.util.List;
 import java.util.ResourceBundle;
 import java.util.Vector;
 
@@ -45,6 +46,9 @@ public class CancelBetsGUI extends JFrame implements Serializable{
 	private DefaultTableModel tableModelBets; 
 	private JTable tableBets;
 	private JScrollPane scrollPaneBets;
+	private static final int PAGINA = 50;
+	private Integer ultimaApuesta;
+	private JButton btnMas;
 
 
 	private String[] columnNamesBets = new String[] {
@@ -129,19 +133,10 @@ public class CancelBetsGUI extends JFrame implements Serializable{
 					tableModelBets.setDataVector(null, columnNamesBets);
 					tableModelBets.setColumnCount(5);
 
-				Vector<Apuesta> apuestas= facade.getBetsFromUserOpen();
+				ultimaApuesta = null;
+				List<Apuesta> apuestas= siguientePagina();
 				if(!apuestas.isEmpty()) {
-					for (domain.Apuesta a:apuestas){
-
-							Vector<Object> row = new Vector<Object>();
-							System.out.println("Apuesta "+a);
-							row.add(a.getEvento().toString());
-							row.add(a.getPronostico().getQuestion().getQuestion());
-							row.add(a.getPronostico().toString());
-							row.add(a.getChutiGoles());
-							row.add(a);
-							tableModelBets.addRow(row);	
-					}
+					mostrar(apuestas);
 
 					tableBets.getColumnModel().getColumn(0).setPreferredWidth(100);
 					tableBets.getColumnModel().getColumn(1).setPreferredWidth(25);
@@ -159,8 +154,9 @@ public class CancelBetsGUI extends JFrame implements Serializable{
 							
 							btnNewButton_1.addActionListener(new ActionListener() {
 								public void actionPerformed(ActionEvent e) {
-									facade.cancelarApuesta(a);
-									lblBetCanceled.setVisible(true);
+									if (facade.cancelarApuesta(a)) {
+										lblBetCanceled.setVisible(true);
+									}
 																		
 								}
 							});
@@ -175,6 +171,16 @@ public class CancelBetsGUI extends JFrame implements Serializable{
 		});
 
 
+		btnMas = new JButton(ResourceBundle.getBundle("Etiquetas").getString("MoreResults"));
+		btnMas.setBounds(20, 300, 138, 23);
+		contentPane.add(btnMas);
+		btnMas.setEnabled(false);
+		btnMas.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				mostrar(siguientePagina());
+			}
+		});
+
 		JButton btnNewButton_2 = new JButton(ResourceBundle.getBundle("Etiquetas").getString("GoBack"));
 		btnNewButton_2.setBounds(465, 10, 111, 21);
 		contentPane.add(btnNewButton_2);
@@ -191,5 +197,29 @@ public class CancelBetsGUI extends JFrame implements Serializable{
 
 
 
+	}
+
+	/**
+	 * Pide a la fachada las apuestas abiertas que siguen a las que ya se ven
+	 */
+	private List<Apuesta> siguientePagina() {
+		List<Apuesta> apuestas = facade.getBetsFromUserOpenPagina(ultimaApuesta, PAGINA);
+		if (!apuestas.isEmpty()) {
+			ultimaApuesta = apuestas.get(apuestas.size() - 1).getNumeroPronostico();
+		}
+		btnMas.setEnabled(apuestas.size() == PAGINA);
+		return apuestas;
+	}
+
+	private void mostrar(List<Apuesta> apuestas) {
+		for (domain.Apuesta a:apuestas){
+			Vector<Object> row = new Vector<Object>();
+			row.add(a.getEvento().toString());
+			row.add(a.getPronostico().getQuestion().getQuestion());
+			row.add(a.getPronostico().toString());
+			row.add(a.getChutiGoles());
+			row.add(a);
+			tableModelBets.addRow(row);
+		}
 	}
 }
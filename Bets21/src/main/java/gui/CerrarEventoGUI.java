@@ -6,6 +6,7 @@ import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.Serializable;
+import java.util.List;
 import java.util.Date;
 import java.util.Properties;
 import java.util.ResourceBundle;
@@ -190,7 +191,7 @@ public class CerrarEventoGUI extends JFrame implements Serializable{
 					lblNewLabel_4.setVisible(true);
 				}
 
-				Vector<Event> eventos= facade.getEventsBetweenDates(fechaEventoPas, fechaEventoHoy);
+				List<Event> eventos= facade.getEventsBetweenDates(fechaEventoPas, fechaEventoHoy);
 				if(!eventos.isEmpty()) {
 					for (domain.Event ev:eventos){
 
@@ -267,7 +268,7 @@ public class CerrarEventoGUI extends JFrame implements Serializable{
 		lblNewLabel_2_1.setBounds(10, 304, 564, 20);
 		contentPane.add(lblNewLabel_2_1);
 
-		Vector<Question> questions= facade.getQuestionsFromEvent(ev);
+		List<Question> questions= facade.getQuestionsFromEvent(ev);
 		if(!questions.isEmpty()) {
 			for (domain.Question q:questions){
 
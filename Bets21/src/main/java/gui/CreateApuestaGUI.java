@@ -9,11 +9,12 @@ import java.awt.event.ActionListener;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
 import java.util.ResourceBundle;
-import java.util.Vector;
 
 import javax.swing.DefaultComboBoxModel;
 import javax.swing.JButton;
@@ -27,11 +28,14 @@ import com.toedter.calendar.JCalendar;
 
 import business.logic.BLFacade;
 import configuration.UtilDate;
-import domain.Apuesta;
 import domain.Event;
 import domain.Question;
 import exceptions.CodigoRepetido;
+import exceptions.EventFinished;
+import exceptions.NotEnoughChuti;
 import exceptions.StringIsEmpty;
+import exceptions.UserDoesntExist;
+import exceptions.WrongParameters;
 
 import java.awt.Font;
 import javax.swing.JCheckBox;
@@ -56,7 +60,7 @@ public class CreateApuestaGUI extends JFrame {
 	private JButton jButtonClose = new JButton(ResourceBundle.getBundle("Etiquetas").getString("Close"));
 	private JLabel jLabelMsg = new JLabel();
 
-	private Vector<Date> datesWithEventsCurrentMonth = new Vector<Date>();
+	private List<Date> datesWithEventsCurrentMonth = new ArrayList<Date>();
 
 	private JComboBox<Question> jComboBoxQuestions= new JComboBox<Question>();
 	DefaultComboBoxModel<Question> modelQuestions = new DefaultComboBoxModel<Question>();
@@ -66,6 +70,7 @@ public class CreateApuestaGUI extends JFrame {
 
 	private JComboBox comboBoxPronosticos= new JComboBox<String>();
 	DefaultComboBoxModel<String> modelPronosticos = new DefaultComboBoxModel<String>();
+	private List<domain.Pronosticos> pronosticosPregunta = new ArrayList<domain.Pronosticos>();
 
 	private JLabel lblNewLabel_4;
 	private JLabel lblNewLabel_5;
@@ -158,7 +163,8 @@ public class CreateApuestaGUI extends JFrame {
 					domain.Question question = ((domain.Question) jComboBoxQuestions.getSelectedItem());
 					lblApuestaMin.setText("Min: "+question.getBetMinimum()+" ");
 
-					Vector<domain.Pronosticos> pronosticos = facade.getPronosticosFromQuestion(question);
+					List<domain.Pronosticos> pronosticos = facade.getPronosticosFromQuestion(question);
+					pronosticosPregunta = pronosticos;
 
 					if (pronosticos.isEmpty())
 						jLabelListOfEvents.setText(ResourceBundle.getBundle("Etiquetas").getString("NoEvents")
@@ -191,7 +197,7 @@ public class CreateApuestaGUI extends JFrame {
 
 					event = ((domain.Event) jComboBoxEvents.getSelectedItem());
 
-					Vector<domain.Question> Questions = facade.getQuestionsFromEvent(event);
+					List<domain.Question> Questions = facade.getQuestionsFromEvent(event);
 
 					if (Questions.isEmpty())
 						jLabelListOfEvents.setText(ResourceBundle.getBundle("Etiquetas").getString("NoEvents")
@@ -274,10 +280,11 @@ public class CreateApuestaGUI extends JFrame {
 		getContentPane().add(lblNewLabel);
 		btnNewButton.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent arg0) {
+				lblNewLabel_4.setVisible(false);
 				lblNewLabel_5.setVisible(false);
-				domain.Event event = ((domain.Event) jComboBoxEvents.getSelectedItem());
+				lblNewLabel_5.setText(ResourceBundle.getBundle("Etiquetas").getString("BelowMin"));
 				try {
-				String ganador=((String) comboBoxPronosticos.getSelectedItem());
+				int ganador=comboBoxPronosticos.getSelectedIndex();
 				String dinerito=cantidad.getText();
 				if (dinerito.isEmpty()) {
 					throw new StringIsEmpty();
@@ -290,19 +297,23 @@ public class CreateApuestaGUI extends JFrame {
 
 				Question q = (domain.Question) jComboBoxQuestions.getSelectedItem();
 				
-				if(ganador!=null && dinero<=facade.obtainCurrentUsr().getChutiGoles() && dinero>=q.getBetMinimum()) {
-
-					Apuesta apuesta= new Apuesta(facade.obtainCurrentUsr(),facade.getPronostico(q, ganador), dinero, event,  q);
-					facade.addApuesta(apuesta);
+				if(ganador>=0) {
+					// una sola llamada: la fachada comprueba el saldo y la apuesta minima
+					facade.placeBet(q.getQuestionNumber(), pronosticosPregunta.get(ganador).getPrognosticNumber(), dinero);
 					realizada.setVisible(true);
-					
-				}else if (dinero>facade.obtainCurrentUsr().getChutiGoles()) {
-					lblNewLabel_4.setVisible(true);
-				}else if (dinero<((domain.Question) jComboBoxQuestions.getSelectedItem()).getBetMinimum()) {
-					lblNewLabel_5.setVisible(true);
 				}
 				}catch(StringIsEmpty e1) {
 					lblNewLabel_5.setVisible(true);
+				}catch(WrongParameters e1) {
+					lblNewLabel_5.setVisible(true);
+				}catch(NotEnoughChuti e1) {
+					lblNewLabel_4.setVisible(true);
+				}catch(EventFinished e1) {
+					lblNewLabel_5.setText(e1.getMessage());
+					lblNewLabel_5.setVisible(true);
+				}catch(UserDoesntExist e1) {
+					lblNewLabel_5.setText(e1.getMessage());
+					lblNewLabel_5.setVisible(true);
 				}
 
 			}
@@ -393,7 +404,7 @@ public class CreateApuestaGUI extends JFrame {
 					try {
 
 
-						Vector<domain.Event> events = facade.getEvents(firstDay);
+						List<domain.Event> events = facade.getEvents(firstDay);
 
 						if (events.isEmpty())
 							jLabelListOfEvents.setText(ResourceBundle.getBundle("Etiquetas").getString("NoEvents")
@@ -428,7 +439,7 @@ public class CreateApuestaGUI extends JFrame {
 	}
 
 
-	public static void paintDaysWithEvents(JCalendar jCalendar,Vector<Date> datesWithEventsCurrentMonth) {
+	public static void paintDaysWithEvents(JCalendar jCalendar,List<Date> datesWithEventsCurrentMonth) {
 		// For each day with events in current month, the background color for that day is changed.
 
 
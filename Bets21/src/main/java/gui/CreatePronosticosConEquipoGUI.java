@@ -3,7 +3,7 @@ package gui;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.Vector;
+import java.util.List;
 
 import javax.swing.JButton;
 import javax.swing.JFrame;
@@ -71,9 +71,9 @@ public class CreatePronosticosConEquipoGUI extends JFrame {
 		setTitle("Bets21");
 
 
-		Vector<Equipo> equipos = facade.getEquipoFromQuestion(this.q);
-		eq1 = equipos.firstElement();
-		eq2 = equipos.lastElement();
+		List<Equipo> equipos = facade.getEquipoFromQuestion(this.q);
+		eq1 = equipos.get(0);
+		eq2 = equipos.get(1);
 
 		JCheckBox chckbxEq1 = new JCheckBox(eq1.getNombre());
 		chckbxEq1.setBounds(10, 38, 97, 23);
@@ -2,6 +2,7 @@ package gui;
 
 import java.text.DateFormat;
 import java.util.*;
+import java.util.List;
 
 import javax.swing.*;
 
@@ -45,11 +46,11 @@ public class CreateQuestionGUI extends JFrame {
 	private JLabel jLabelMsg = new JLabel();
 	private JLabel jLabelError = new JLabel();
 	
-	private Vector<Date> datesWithEventsCurrentMonth = new Vector<Date>();
+	private List<Date> datesWithEventsCurrentMonth = new ArrayList<Date>();
 	private JFrame padreFrame;
 	private JCheckBox chckbxNewCheckBox;
 	
-	public CreateQuestionGUI(Vector<domain.Event> v, JFrame padre) {
+	public CreateQuestionGUI(List<domain.Event> v, JFrame padre) {
 		try {
 			jbInit(v);
 			this.padreFrame = padre;
@@ -63,7 +64,7 @@ public class CreateQuestionGUI extends JFrame {
 		dispose();
 	}
 
-	private void jbInit(Vector<domain.Event> v) throws Exception {
+	private void jbInit(List<domain.Event> v) throws Exception {
 		
 		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
@@ -175,7 +176,7 @@ public class CreateQuestionGUI extends JFrame {
 					try {
 				
 
-						Vector<domain.Event> events = facade.getEvents(firstDay);
+						List<domain.Event> events = facade.getEvents(firstDay);
 
 						if (events.isEmpty())
 							jLabelListOfEvents.setText(ResourceBundle.getBundle("Etiquetas").getString("NoEvents")
@@ -206,7 +207,7 @@ public class CreateQuestionGUI extends JFrame {
 	}
 
 	
-public static void paintDaysWithEvents(JCalendar jCalendar,Vector<Date> datesWithEventsCurrentMonth) {
+public static void paintDaysWithEvents(JCalendar jCalendar,List<Date> datesWithEventsCurrentMonth) {
 		// For each day with events in current month, the background color for that day is changed.
 
 		
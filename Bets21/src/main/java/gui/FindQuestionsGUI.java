@@ -12,6 +12,7 @@ import java.awt.event.*;
 import java.beans.*;
 import java.text.DateFormat;
 import java.util.*;
+import java.util.List;
 
 import javax.swing.table.DefaultTableModel;
 
@@ -32,7 +33,7 @@ public class FindQuestionsGUI extends JFrame {
 	private JScrollPane scrollPaneEvents = new JScrollPane();
 	private JScrollPane scrollPaneQueries = new JScrollPane();
 	
-	private Vector<Date> datesWithEventsCurrentMonth = new Vector<Date>();
+	private List<Date> datesWithEventsCurrentMonth = new ArrayList<Date>();
 
 	private JTable tableEvents= new JTable();
 	private JTable tableQueries = new JTable();
@@ -163,7 +164,7 @@ public class FindQuestionsGUI extends JFrame {
 
 					
 
-						Vector<domain.Event> events=facade.getEvents(firstDay);
+						List<domain.Event> events=facade.getEvents(firstDay);
 
 						if (events.isEmpty() ) jLabelEvents.setText(ResourceBundle.getBundle("Etiquetas").getString("NoEvents")+ ": "+dateformat1.format(calendarAct.getTime()));
 						else jLabelEvents.setText(ResourceBundle.getBundle("Etiquetas").getString("Events")+ ": "+dateformat1.format(calendarAct.getTime()));
@@ -200,7 +201,7 @@ public class FindQuestionsGUI extends JFrame {
 			public void mouseClicked(MouseEvent e) {
 				int i=tableEvents.getSelectedRow();
 				ev=(domain.Event)tableModelEvents.getValueAt(i,3); // obtain ev object
-				Vector<Question> queries=ev.getQuestions();
+				List<Question> queries=ev.getQuestions();
 
 				tableModelQueries.setDataVector(null, columnNamesQueries);
 
@@ -241,13 +242,13 @@ public class FindQuestionsGUI extends JFrame {
 			public void mouseClicked(MouseEvent e) {
 
 				int i=tableQueries.getSelectedRow();
-				q= ev.getQuestions().elementAt(i).getQuestionNumber(); // obtain q object
+				q= ev.getQuestions().get(i).getQuestionNumber(); // obtain q object
 				System.out.println(q);
 				int eve = ev.getEventNumber();
 				PronosticosGUI pronosGui = new PronosticosGUI(questionFrame, eve, q);
 				pronosGui.setVisible(true);
 				setVisible(false);
-				//Vector<Pronosticos> queries=ev.get(Pronosticos);
+				//List<Pronosticos> queries=ev.get(Pronosticos);
 			}
 		});
 
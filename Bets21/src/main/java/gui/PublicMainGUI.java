@@ -9,11 +9,12 @@ import java.awt.event.ActionListener;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
 import java.util.ResourceBundle;
-import java.util.Vector;
 
 import javax.swing.ButtonGroup;
 import javax.swing.DefaultComboBoxModel;
@@ -62,7 +63,7 @@ public class PublicMainGUI extends JFrame {
 	private JScrollPane scrollPaneEvents = new JScrollPane();
 	private JLabel jLabelMsg = new JLabel();
 
-	private Vector<Date> datesWithEventsCurrentMonth = new Vector<Date>();
+	private List<Date> datesWithEventsCurrentMonth = new ArrayList<Date>();
 
 	private JComboBox<Question> jComboBoxQuestions= new JComboBox<Question>();
 	DefaultComboBoxModel<Question> modelQuestions = new DefaultComboBoxModel<Question>();
@@ -123,7 +124,7 @@ public class PublicMainGUI extends JFrame {
 
 					domain.Question Question = ((domain.Question) jComboBoxQuestions.getSelectedItem());
 
-					Vector<domain.Pronosticos> pronosticos = appFacadeInterface.getPronosticosFromQuestion(Question);
+					List<domain.Pronosticos> pronosticos = appFacadeInterface.getPronosticosFromQuestion(Question);
 
 					if (pronosticos.isEmpty())
 						jLabelListOfEvents.setText(ResourceBundle.getBundle("Etiquetas").getString("NoEvents")
@@ -160,7 +161,7 @@ public class PublicMainGUI extends JFrame {
 					lblNewLabel_3.setVisible(true);
 					domain.Event event = ((domain.Event) jComboBoxEvents.getSelectedItem());
 
-					Vector<domain.Question> Questions = appFacadeInterface.getQuestionsFromEvent(event);
+					List<domain.Question> Questions = appFacadeInterface.getQuestionsFromEvent(event);
 
 					if (Questions.isEmpty())
 						jLabelListOfEvents.setText(ResourceBundle.getBundle("Etiquetas").getString("NoEvents")
@@ -278,7 +279,7 @@ public class PublicMainGUI extends JFrame {
 					try {
 
 
-						Vector<domain.Event> events = appFacadeInterface.getEvents(firstDay);
+						List<domain.Event> events = appFacadeInterface.getEvents(firstDay);
 
 						if (events.isEmpty())
 							jLabelListOfEvents.setText(ResourceBundle.getBundle("Etiquetas").getString("NoEvents")
@@ -313,7 +314,7 @@ public class PublicMainGUI extends JFrame {
 	}
 
 
-	public static void paintDaysWithEvents(JCalendar jCalendar,Vector<Date> datesWithEventsCurrentMonth) {
+	public static void paintDaysWithEvents(JCalendar jCalendar,List<Date> datesWithEventsCurrentMonth) {
 		// For each day with events in current month, the background color for that day is changed.
 
 
@@ -3,6 +3,7 @@ package gui;
 import java.awt.Font;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.List;
 import java.util.ResourceBundle;
 import java.util.Vector;
 
@@ -25,6 +26,9 @@ public class ViewBetsGUI extends JFrame {
 	private DefaultTableModel tableModelBets; 
 	private JTable tableBets;
 	private JScrollPane scrollPane;
+	private static final int PAGINA = 50;
+	private Integer ultimaApuesta;
+	private JButton btnMas;
 
 
 	private String[] columnNamesEvents = new String[] {
@@ -84,23 +88,16 @@ public class ViewBetsGUI extends JFrame {
 
 
 
-		Vector<domain.Apuesta> bets= facade.getBetsFromUser();
-		if(!bets.isEmpty()) {
-			for (domain.Apuesta ev:bets){
-				Vector<Object> row = new Vector<Object>();
-
-				System.out.println("Events "+ev);
-
-				row.add(ev.getEvento().toString());
-				row.add(ev.getPronostico().getQuestion().getQuestion());
-				row.add(ev.getPronostico().toString());
-				row.add(ev.getChutiGoles());
-				row.add(ev); // ev object added in order to obtain it with tableModelEvents.getValueAt(i,2)
-				tableModelBets.addRow(row);	
-
-
+		btnMas = new JButton(ResourceBundle.getBundle("Etiquetas").getString("MoreResults"));
+		btnMas.setBounds(10, 229, 122, 21);
+		contentPane.add(btnMas);
+		btnMas.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				cargarPagina();
 			}
-		}
+		});
+		cargarPagina();
+
 		
 		JButton btnNewButton = new JButton(ResourceBundle.getBundle("Etiquetas").getString("GoBack"));
 		btnNewButton.setBounds(302, 229, 122, 21);
@@ -111,4 +108,22 @@ public class ViewBetsGUI extends JFrame {
 			}
 		});
 	}
+
+	/**
+	 * Pide a la fachada la siguiente pagina de apuestas y la pone al final de la tabla
+	 */
+	private void cargarPagina() {
+		List<domain.Apuesta> bets= facade.getBetsFromUserPagina(ultimaApuesta, PAGINA);
+		for (domain.Apuesta ev:bets){
+			Vector<Object> row = new Vector<Object>();
+			row.add(ev.getEvento().toString());
+			row.add(ev.getPronostico().getQuestion().getQuestion());
+			row.add(ev.getPronostico().toString());
+			row.add(ev.getChutiGoles());
+			row.add(ev); // ev object added in order to obtain it with tableModelEvents.getValueAt(i,2)
+			tableModelBets.addRow(row);
+			ultimaApuesta = ev.getNumeroPronostico();
+		}
+		btnMas.setEnabled(bets.size() == PAGINA);
+	}
 }
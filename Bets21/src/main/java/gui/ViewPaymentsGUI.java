@@ -3,6 +3,7 @@ package gui;
 import java.awt.Font;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.List;
 import java.util.ResourceBundle;
 import java.util.Vector;
 
@@ -32,6 +33,9 @@ public class ViewPaymentsGUI extends JFrame {
 	private DefaultTableModel tableModelPayments; 
 	private JTable tablePayments;
 	private JScrollPane scrollPane;
+	private static final int PAGINA = 50;
+	private Integer ultimoPago;
+	private JButton btnMas;
 
 	/**
 	 * Launch the application.
@@ -81,21 +85,16 @@ public class ViewPaymentsGUI extends JFrame {
 
 
 
-		Vector<domain.Payment> pagos= facade.getPaymentsFromUser();
-		System.out.println(pagos);
-		if(!pagos.isEmpty()) {
-			for (domain.Payment p:pagos){
-				Vector<Object> row = new Vector<Object>();
-
-				row.add(p.getFecha());
-				row.add(p.getChutigoles());
-				row.add(p.getCard().getCardNumber());
-				row.add(p);
-				tableModelPayments.addRow(row);	
-
-
+		btnMas = new JButton(ResourceBundle.getBundle("Etiquetas").getString("MoreResults"));
+		btnMas.setBounds(10, 229, 122, 21);
+		contentPane.add(btnMas);
+		btnMas.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				cargarPagina();
 			}
-		}
+		});
+		cargarPagina();
+
 		
 		JButton btnNewButton = new JButton(ResourceBundle.getBundle("Etiquetas").getString("GoBack"));
 		btnNewButton.setBounds(302, 229, 122, 21);
@@ -106,4 +105,21 @@ public class ViewPaymentsGUI extends JFrame {
 			}
 		});
 	}
+
+	/**
+	 * Pide a la fachada la siguiente pagina de pagos y la pone al final de la tabla
+	 */
+	private void cargarPagina() {
+		List<domain.Payment> pagos= facade.getPaymentsFromUserPagina(ultimoPago, PAGINA);
+		for (domain.Payment p:pagos){
+			Vector<Object> row = new Vector<Object>();
+			row.add(p.getFecha());
+			row.add(p.getChutigoles());
+			row.add(p.getCard().getCardNumber());
+			row.add(p);
+			tableModelPayments.addRow(row);
+			ultimoPago = p.getNumeroPayment();
+		}
+		btnMas.setEnabled(pagos.size() == PAGINA);
+	}
 }
@@ -0,0 +1,209 @@
+package metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import configuration.ConfigXML;
+import configuration.Log;
+
+/**
+ * Metricas por operacion de la fachada y de las transacciones de DataAccess.
+ * Cada operacion se registra la primera vez que se usa y se publica por JMX
+ * como bets21:type=capa,name=operacion. Todas juntas se pueden volcar a un
+ * fichero, bajo demanda o cada metricsInterval minutos segun config.xml.
+ */
+public class Metricas implements MetricasMXBean {
+
+	private static final Logger log = Log.get(Metricas.class);
+
+	private static final Metricas global = new Metricas(true);
+
+	static {
+		publicar("bets21:type=Metricas", global);
+		ConfigXML c = ConfigXML.getInstance();
+		global.programarVolcado(c.getMetricsFile(), c.getMetricsInterval());
+	}
+
+	private final ConcurrentMap<String, Operacion> operaciones = new ConcurrentHashMap<String, Operacion>();
+	private final boolean jmx;
+
+	/**
+	 * @param jmx si las operaciones se publican por JMX
+	 */
+	public Metricas(boolean jmx) {
+		this.jmx = jmx;
+	}
+
+	/**
+	 * Devuelve las metricas del proceso, publicadas por JMX y volcadas
+	 * periodicamente si asi se indica en config.xml
+	 * @return las metricas compartidas
+	 */
+	public static Metricas global() {
+		return global;
+	}
+
+	/**
+	 * Devuelve la operacion de una capa, creandola si es la primera vez
+	 * @param capa BLFacade, DataAccess...
+	 * @param nombre el nombre del metodo
+	 * @return la operacion
+	 */
+	public Operacion operacion(String capa, String nombre) {
+		String clave = capa + "." + nombre;
+		Operacion op = operaciones.get(clave);
+		if (op == null) {
+			Operacion nueva = new Operacion(capa, nombre);
+			op = operaciones.putIfAbsent(clave, nueva);
+			if (op == null) {
+				op = nueva;
+				if (jmx) {
+					publicar("bets21:type=" + capa + ",name=" + nombre, op);
+				}
+			}
+		}
+		return op;
+	}
+
+	public void registrar(String capa, String nombre, long nanos, boolean error) {
+		operacion(capa, nombre).registrar(nanos, error);
+	}
+
+	/**
+	 * Devuelve las operaciones ordenadas por el tiempo total que han consumido,
+	 * de modo que la primera es la que mas conviene mirar
+	 * @return copia de la lista de operaciones
+	 */
+	public List<Operacion> getOperaciones() {
+		List<Operacion> lista = new ArrayList<Operacion>(operaciones.values());
+		Collections.sort(lista, new Comparator<Operacion>() {
+			public int compare(Operacion a, Operacion b) {
+				return Double.compare(b.getMediaMillis() * b.getLlamadas(), a.getMediaMillis() * a.getLlamadas());
+			}
+		});
+		return lista;
+	}
+
+	public String getResumen() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%-10s %-28s %9s %7s %9s %9s %9s %9s %9s%n", "capa", "operacion", "llamadas", "errores",
+				"media ms", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+		for (Operacion op : getOperaciones()) {
+			sb.append(op).append(String.format("%n"));
+		}
+		return sb.toString();
+	}
+
+	public void volcar(String fichero) {
+		try {
+			volcar(new File(fichero));
+		} catch (IOException e) {
+			throw new IllegalStateException("No se han podido volcar las metricas a " + fichero, e);
+		}
+	}
+
+	/**
+	 * Escribe el resumen de todas las operaciones en un fichero
+	 * @param fichero el fichero, que se sobrescribe
+	 * @throws IOException si no se puede escribir
+	 */
+	public void volcar(File fichero) throws IOException {
+		PrintWriter out = new PrintWriter(fichero, "UTF-8");
+		try {
+			out.println("# " + new Date());
+			out.print(getResumen());
+		} finally {
+			out.close();
+		}
+	}
+
+	public void reiniciar() {
+		for (Operacion op : operaciones.values()) {
+			op.reiniciar();
+		}
+	}
+
+	/**
+	 * Envuelve un objeto para medir cada llamada a los metodos de su interfaz
+	 * @param interfaz la interfaz por la que se usa el objeto
+	 * @param objetivo el objeto real
+	 * @param capa nombre con el que se agrupan sus operaciones
+	 * @return un objeto que implementa la interfaz y delega en el real
+	 */
+	public <T> T envolver(Class<T> interfaz, final T objetivo, final String capa) {
+		Object proxy = Proxy.newProxyInstance(interfaz.getClassLoader(), new Class<?>[] { interfaz },
+				new InvocationHandler() {
+					public Object invoke(Object p, Method metodo, Object[] args) throws Throwable {
+						if (metodo.getDeclaringClass() == Object.class) {
+							return metodo.invoke(objetivo, args);
+						}
+						long inicio = System.nanoTime();
+						boolean error = true;
+						try {
+							Object resultado = metodo.invoke(objetivo, args);
+							error = false;
+							return resultado;
+						} catch (InvocationTargetException e) {
+							throw e.getCause();
+						} finally {
+							registrar(capa, metodo.getName(), System.nanoTime() - inicio, error);
+						}
+					}
+				});
+		return interfaz.cast(proxy);
+	}
+
+	private void programarVolcado(final String fichero, int minutos) {
+		if (minutos <= 0 || fichero == null) return;
+		ScheduledExecutorService volcados = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "metrics-dump");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		volcados.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					volcar(fichero);
+				} catch (RuntimeException e) {
+					log.log(Level.WARNING, "No se han podido volcar las metricas", e);
+				}
+			}
+		}, minutos, minutos, TimeUnit.MINUTES);
+	}
+
+	private static void publicar(String nombre, Object mbean) {
+		try {
+			MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+			ObjectName on = new ObjectName(nombre);
+			if (!servidor.isRegistered(on)) {
+				servidor.registerMBean(mbean, on);
+			}
+		} catch (Exception e) {
+			log.log(Level.WARNING, "No se ha podido publicar {0} por JMX: {1}", new Object[] { nombre, e });
+		}
+	}
+}
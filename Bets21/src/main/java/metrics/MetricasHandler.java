@@ -0,0 +1,70 @@
+package metrics;
+
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+import javax.xml.ws.Endpoint;
+import javax.xml.ws.handler.Handler;
+import javax.xml.ws.handler.MessageContext;
+import javax.xml.ws.handler.soap.SOAPHandler;
+import javax.xml.ws.handler.soap.SOAPMessageContext;
+
+/**
+ * Mide cada operacion que atiende un servicio web publicado, desde que llega
+ * la peticion hasta que sale la respuesta o el fallo. El servidor atiende
+ * cada peticion en un unico hilo, asi que el inicio se guarda por hilo.
+ */
+public class MetricasHandler implements SOAPHandler<SOAPMessageContext> {
+
+	private static final ThreadLocal<Long> inicio = new ThreadLocal<Long>();
+
+	private final String capa;
+
+	public MetricasHandler(String capa) {
+		this.capa = capa;
+	}
+
+	/**
+	 * Anade el handler a un endpoint antes de publicarlo
+	 * @param endpoint el endpoint creado con Endpoint.create
+	 * @param capa nombre con el que se agrupan sus operaciones
+	 */
+	@SuppressWarnings("rawtypes")
+	public static void instalar(Endpoint endpoint, String capa) {
+		List<Handler> cadena = endpoint.getBinding().getHandlerChain();
+		cadena.add(new MetricasHandler(capa));
+		endpoint.getBinding().setHandlerChain(cadena);
+	}
+
+	public boolean handleMessage(SOAPMessageContext ctx) {
+		if (Boolean.TRUE.equals(ctx.get(MessageContext.MESSAGE_OUTBOUND_PROPERTY))) {
+			registrar(ctx, false);
+		} else {
+			inicio.set(System.nanoTime());
+		}
+		return true;
+	}
+
+	public boolean handleFault(SOAPMessageContext ctx) {
+		registrar(ctx, true);
+		return true;
+	}
+
+	public void close(MessageContext ctx) {
+		inicio.remove();
+	}
+
+	public Set<QName> getHeaders() {
+		return null;
+	}
+
+	private void registrar(MessageContext ctx, boolean error) {
+		Long t = inicio.get();
+		QName operacion = (QName) ctx.get(MessageContext.WSDL_OPERATION);
+		if (t != null && operacion != null) {
+			Metricas.global().registrar(capa, operacion.getLocalPart(), System.nanoTime() - t, error);
+		}
+		inicio.remove();
+	}
+}
@@ -0,0 +1,17 @@
+package metrics;
+
+/**
+ * Operaciones sobre el conjunto de metricas que se pueden lanzar por JMX
+ */
+public interface MetricasMXBean {
+
+	/**
+	 * Escribe las metricas de todas las operaciones en un fichero
+	 * @param fichero la ruta del fichero, que se sobrescribe
+	 */
+	void volcar(String fichero);
+
+	String getResumen();
+
+	void reiniciar();
+}
@@ -0,0 +1,132 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Llamadas, errores y un histograma de latencias de una operacion. El
+ * histograma tiene un cubo por cada potencia de dos de microsegundos, asi que
+ * registrar una llamada son unas pocas operaciones atomicas sin bloqueos y los
+ * percentiles se dan con el limite superior de su cubo.
+ */
+public class Operacion implements OperacionMXBean {
+
+	private static final int CUBOS = 40;
+
+	private final String capa;
+	private final String nombre;
+	private final AtomicLongArray cubos = new AtomicLongArray(CUBOS);
+	private final AtomicLong llamadas = new AtomicLong();
+	private final AtomicLong errores = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	public Operacion(String capa, String nombre) {
+		this.capa = capa;
+		this.nombre = nombre;
+	}
+
+	/**
+	 * Anota una llamada terminada
+	 * @param nanos lo que ha tardado
+	 * @param error si ha terminado con una excepcion
+	 */
+	public void registrar(long nanos, boolean error) {
+		llamadas.incrementAndGet();
+		if (error) {
+			errores.incrementAndGet();
+		}
+		totalNanos.addAndGet(nanos);
+		cubos.incrementAndGet(cubo(nanos));
+		long max = maxNanos.get();
+		while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+			max = maxNanos.get();
+		}
+	}
+
+	public String getCapa() {
+		return capa;
+	}
+
+	public String getNombre() {
+		return nombre;
+	}
+
+	public long getLlamadas() {
+		return llamadas.get();
+	}
+
+	public long getErrores() {
+		return errores.get();
+	}
+
+	public double getMediaMillis() {
+		long n = llamadas.get();
+		return n == 0 ? 0 : totalNanos.get() / 1e6 / n;
+	}
+
+	public double getP50Millis() {
+		return percentil(0.50);
+	}
+
+	public double getP95Millis() {
+		return percentil(0.95);
+	}
+
+	public double getP99Millis() {
+		return percentil(0.99);
+	}
+
+	public double getMaxMillis() {
+		return maxNanos.get() / 1e6;
+	}
+
+	public void reiniciar() {
+		for (int i = 0; i < CUBOS; i++) {
+			cubos.set(i, 0);
+		}
+		llamadas.set(0);
+		errores.set(0);
+		totalNanos.set(0);
+		maxNanos.set(0);
+	}
+
+	/**
+	 * Estima un percentil con el histograma, sin pasar nunca del maximo observado
+	 * @param p el percentil, entre 0 y 1
+	 * @return la latencia en milisegundos
+	 */
+	public double percentil(double p) {
+		long[] copia = new long[CUBOS];
+		long total = 0;
+		for (int i = 0; i < CUBOS; i++) {
+			copia[i] = cubos.get(i);
+			total += copia[i];
+		}
+		if (total == 0) return 0;
+		long objetivo = (long) Math.ceil(p * total);
+		long acumulado = 0;
+		for (int i = 0; i < CUBOS; i++) {
+			acumulado += copia[i];
+			if (acumulado >= objetivo) {
+				return Math.min(limiteSuperiorMicros(i) / 1000.0, getMaxMillis());
+			}
+		}
+		return getMaxMillis();
+	}
+
+	public String toString() {
+		return String.format("%-10s %-28s %9d %7d %9.3f %9.3f %9.3f %9.3f %9.3f", capa, nombre, getLlamadas(),
+				getErrores(), getMediaMillis(), getP50Millis(), getP95Millis(), getP99Millis(), getMaxMillis());
+	}
+
+	private static int cubo(long nanos) {
+		long micros = nanos / 1000;
+		int i = 64 - Long.numberOfLeadingZeros(micros);
+		return Math.min(i, CUBOS - 1);
+	}
+
+	private static long limiteSuperiorMicros(int cubo) {
+		return 1L << cubo;
+	}
+}
@@ -0,0 +1,23 @@
+package metrics;
+
+/**
+ * Lo que se publica por JMX de cada operacion medida
+ */
+public interface OperacionMXBean {
+
+	long getLlamadas();
+
+	long getErrores();
+
+	double getMediaMillis();
+
+	double getP50Millis();
+
+	double getP95Millis();
+
+	double getP99Millis();
+
+	double getMaxMillis();
+
+	void reiniciar();
+}
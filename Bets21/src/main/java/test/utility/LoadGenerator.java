@@ -0,0 +1,296 @@
+package test.utility;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+import javax.xml.ws.BindingProvider;
+import javax.xml.ws.Endpoint;
+import javax.xml.ws.Service;
+
+import business.logic.BLFacade;
+import business.logic.BLFacadeImplementation;
+import configuration.ConfigXML;
+import configuration.UtilDate;
+import domain.Apuesta;
+import domain.Event;
+import domain.Pronosticos;
+import domain.Question;
+import domain.User;
+import exceptions.UserAlreadyExist;
+import metrics.Metricas;
+import metrics.MetricasHandler;
+
+/**
+ * Generador de carga sin interfaz grafica para el servicio web que publica
+ * BusinessLogicServer. Lanza N usuarios simulados, cada uno con su propio
+ * puerto SOAP y su cookie de sesion, que se dan de alta, inician sesion,
+ * registran una tarjeta y repiten durante el tiempo indicado una mezcla de
+ * acciones: mirar el calendario, apostar, cancelar apuestas y recargar saldo.
+ * Al acabar escribe el rendimiento, la tasa de error y la latencia de cola de
+ * cada accion.
+ *
+ * Opciones:
+ * -usuarios N        usuarios simulados (10)
+ * -segundos S        duracion de la prueba (30)
+ * -mezcla a=p,...    peso de cada accion (calendario=50,apostar=30,cancelar=10,recargar=10)
+ * -pausa MS          espera entre dos acciones de un mismo usuario (0)
+ * -url URL           wsdl del servicio (el de config.xml)
+ * -publicar N        publica la fachada en este proceso en la url de config.xml, atendida por N hilos
+ *
+ * Con Java 9 o posterior jaxws-rt necesita --add-opens java.base/java.lang=ALL-UNNAMED
+ */
+public class LoadGenerator {
+
+	private static final String CONTRASENA = "carga1234";
+	private static final int PRIMER_DNI = 70000000;
+
+	private final BLFacade catalogo;
+	private final Service servicio;
+	private final Map<String, Integer> mezcla;
+	private final int pesoTotal;
+	private final long pausa;
+	private final List<Object[]> preguntas = new ArrayList<Object[]>();
+
+	public LoadGenerator(Service servicio, Map<String, Integer> mezcla, long pausa) {
+		this.servicio = servicio;
+		this.mezcla = mezcla;
+		this.pausa = pausa;
+		int total = 0;
+		for (int peso : mezcla.values()) {
+			total += peso;
+		}
+		this.pesoTotal = total;
+		this.catalogo = puerto();
+	}
+
+	public static void main(String[] args) throws Exception {
+		ConfigXML c = ConfigXML.getInstance();
+		String direccion = "http://" + c.getBusinessLogicNode() + ":" + c.getBusinessLogicPort() + "/ws/"
+				+ c.getBusinessLogicName();
+		int usuarios = 10;
+		int segundos = 30;
+		long pausa = 0;
+		int hilosServidor = 0;
+		String wsdl = direccion + "?wsdl";
+		Map<String, Integer> mezcla = leerMezcla("calendario=50,apostar=30,cancelar=10,recargar=10");
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String valor = args[i + 1];
+			if (args[i].equals("-usuarios")) usuarios = Integer.parseInt(valor);
+			else if (args[i].equals("-segundos")) segundos = Integer.parseInt(valor);
+			else if (args[i].equals("-pausa")) pausa = Long.parseLong(valor);
+			else if (args[i].equals("-url")) wsdl = valor;
+			else if (args[i].equals("-mezcla")) mezcla = leerMezcla(valor);
+			else if (args[i].equals("-publicar")) hilosServidor = Integer.parseInt(valor);
+			else throw new IllegalArgumentException("Opcion desconocida: " + args[i]);
+		}
+
+		Endpoint endpoint = null;
+		if (hilosServidor > 0) {
+			endpoint = Endpoint.create(new BLFacadeImplementation());
+			endpoint.setExecutor(Executors.newFixedThreadPool(hilosServidor));
+			MetricasHandler.instalar(endpoint, "BLFacade");
+			endpoint.publish(direccion);
+			System.out.println("Servicio publicado en " + direccion + " con " + hilosServidor + " hilos");
+		}
+		try {
+			Service servicio = Service.create(new URL(wsdl),
+					new QName("http://logic.business/", "BLFacadeImplementationService"));
+			LoadGenerator generador = new LoadGenerator(servicio, mezcla, pausa);
+			System.out.println(generador.ejecutar(usuarios, segundos * 1000L));
+		} finally {
+			if (endpoint != null) {
+				endpoint.stop();
+				System.out.println(Metricas.global().getResumen());
+			}
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Lanza los usuarios simulados y espera a que acaben
+	 * @param usuarios numero de usuarios simulados
+	 * @param millis duracion de la fase de acciones
+	 * @return el informe de todos los usuarios
+	 */
+	public String ejecutar(int usuarios, long millis) throws Exception {
+		cargarPreguntas();
+		final long fin = System.currentTimeMillis() + millis;
+		final LoadReport[] informes = new LoadReport[usuarios];
+		ExecutorService hilos = Executors.newFixedThreadPool(usuarios);
+		long inicio = System.nanoTime();
+		for (int i = 0; i < usuarios; i++) {
+			final int id = i;
+			informes[i] = new LoadReport();
+			hilos.execute(new Runnable() {
+				public void run() {
+					new UsuarioSimulado(id, informes[id]).ejecutar(fin);
+				}
+			});
+		}
+		hilos.shutdown();
+		while (!hilos.awaitTermination(1, TimeUnit.SECONDS)) {
+			// se espera a que todos los usuarios terminen su ultima accion
+		}
+		double segundos = (System.nanoTime() - inicio) / 1e9;
+		LoadReport total = new LoadReport();
+		for (LoadReport r : informes) {
+			total.juntar(r);
+		}
+		return usuarios + " usuarios, " + String.format("%.1f", segundos) + " s, " + preguntas.size()
+				+ " preguntas abiertas\n" + total.resumen(segundos);
+	}
+
+	/**
+	 * Obtiene de una vez las preguntas abiertas de los proximos tres meses, que
+	 * son sobre las que apuestan los usuarios simulados. A las que aun no tienen
+	 * pronosticos se les crean 1, X y 2, como haria el administrador
+	 */
+	private void cargarPreguntas() throws Exception {
+		Date hoy = UtilDate.trim(new Date());
+		Calendar cal = Calendar.getInstance();
+		cal.setTime(hoy);
+		cal.add(Calendar.MONTH, 3);
+		for (Event ev : catalogo.getEventsBetweenDates(hoy, cal.getTime())) {
+			for (Question q : catalogo.getQuestionsFromEvent(ev)) {
+				if (!q.isEstado()) continue;
+				List<Pronosticos> pronosticos = q.getPronosticos();
+				if (pronosticos == null || pronosticos.isEmpty()) {
+					pronosticos = new ArrayList<Pronosticos>();
+					pronosticos.add(catalogo.createPrognostic(ev.getEventNumber(), q, "1", 1.5f, null));
+					pronosticos.add(catalogo.createPrognostic(ev.getEventNumber(), q, "X", 3f, null));
+					pronosticos.add(catalogo.createPrognostic(ev.getEventNumber(), q, "2", 2f, null));
+				}
+				preguntas.add(new Object[] { ev, q, pronosticos });
+			}
+		}
+		if (preguntas.isEmpty() && mezcla.containsKey("apostar")) {
+			throw new IllegalStateException("No hay preguntas abiertas en los proximos tres meses sobre las que apostar");
+		}
+	}
+
+	private BLFacade puerto() {
+		BLFacade puerto = servicio.getPort(BLFacade.class);
+		((BindingProvider) puerto).getRequestContext().put(BindingProvider.SESSION_MAINTAIN_PROPERTY, true);
+		return puerto;
+	}
+
+	private String elegir(Random r) {
+		int x = r.nextInt(pesoTotal);
+		for (Map.Entry<String, Integer> e : mezcla.entrySet()) {
+			x -= e.getValue();
+			if (x < 0) return e.getKey();
+		}
+		throw new IllegalStateException();
+	}
+
+	private static Map<String, Integer> leerMezcla(String texto) {
+		Map<String, Integer> mezcla = new LinkedHashMap<String, Integer>();
+		for (String parte : texto.split(",")) {
+			String[] kv = parte.split("=");
+			if (!kv[0].equals("calendario") && !kv[0].equals("apostar") && !kv[0].equals("cancelar")
+					&& !kv[0].equals("recargar")) {
+				throw new IllegalArgumentException("Accion desconocida: " + kv[0]);
+			}
+			mezcla.put(kv[0], Integer.parseInt(kv[1]));
+		}
+		return mezcla;
+	}
+
+	/**
+	 * Un usuario simulado con su propio puerto, y por tanto su propia sesion
+	 */
+	private class UsuarioSimulado {
+		private final int dni;
+		private final String tarjeta;
+		private final LoadReport informe;
+		private final Random r;
+		private BLFacade puerto;
+		private User yo;
+
+		UsuarioSimulado(int id, LoadReport informe) {
+			this.dni = PRIMER_DNI + id;
+			this.tarjeta = String.format("4%015d", dni);
+			this.informe = informe;
+			this.r = new Random(dni);
+		}
+
+		void ejecutar(long fin) {
+			puerto = puerto();
+			if (!medir("alta") || !medir("login")) {
+				return;
+			}
+			while (System.currentTimeMillis() < fin) {
+				medir(elegir(r));
+				if (pausa > 0) {
+					try {
+						Thread.sleep(pausa);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+			medir("logout");
+		}
+
+		private boolean medir(String accion) {
+			long inicio = System.nanoTime();
+			try {
+				hacer(accion);
+				informe.ok(accion, System.nanoTime() - inicio);
+				return true;
+			} catch (Exception e) {
+				informe.error(accion, System.nanoTime() - inicio, e);
+				return false;
+			}
+		}
+
+		private void hacer(String accion) throws Exception {
+			if (accion.equals("alta")) {
+				try {
+					puerto.createUser(new User(600000000 + dni % 1000000, dni, CONTRASENA, "Carga" + dni, "Load", "Gen",
+							"carga" + dni + "@bets21.eus", UtilDate.newDate(1990, 0, 1)));
+				} catch (UserAlreadyExist e) {
+					// de una ejecucion anterior contra la misma base de datos
+				}
+			} else if (accion.equals("login")) {
+				puerto.userLogin(dni, CONTRASENA);
+				puerto.a\u00f1adirTarjetaUsr(tarjeta);
+				puerto.makePayment(1000, new Date(), tarjeta);
+				yo = puerto.returnCurrentUsr();
+			} else if (accion.equals("calendario")) {
+				Calendar cal = Calendar.getInstance();
+				cal.add(Calendar.DAY_OF_YEAR, r.nextInt(90));
+				List<Date> dias = puerto.getEventsMonth(cal.getTime());
+				if (dias != null && !dias.isEmpty()) {
+					puerto.getEvents(dias.get(r.nextInt(dias.size())));
+				}
+			} else if (accion.equals("apostar")) {
+				Object[] p = preguntas.get(r.nextInt(preguntas.size()));
+				Question q = (Question) p[1];
+				@SuppressWarnings("unchecked")
+				List<Pronosticos> pronosticos = (List<Pronosticos>) p[2];
+				puerto.placeBet(q.getQuestionNumber(), pronosticos.get(r.nextInt(pronosticos.size())).getPrognosticNumber(),
+						Math.max(1, q.getBetMinimum()));
+			} else if (accion.equals("cancelar")) {
+				List<Apuesta> abiertas = puerto.getBetsFromUserOpen();
+				if (abiertas != null && !abiertas.isEmpty()) {
+					puerto.cancelarApuesta(abiertas.get(r.nextInt(abiertas.size())));
+				}
+			} else if (accion.equals("recargar")) {
+				puerto.makePayment(10, new Date(), tarjeta);
+			} else if (accion.equals("logout")) {
+				puerto.logOutUser();
+			}
+		}
+	}
+}
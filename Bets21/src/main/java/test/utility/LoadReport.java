@@ -0,0 +1,103 @@
+package test.utility;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latencias y errores de cada tipo de accion del generador de carga. Cada
+ * usuario simulado llena su propio informe y al acabar se juntan todos, asi
+ * que no se sincroniza nada mientras se mide.
+ */
+public class LoadReport {
+
+	private final Map<String, Medidas> acciones = new LinkedHashMap<String, Medidas>();
+	private final Map<String, Integer> tiposError = new TreeMap<String, Integer>();
+
+	public void ok(String accion, long nanos) {
+		medidas(accion).anadir(nanos);
+	}
+
+	public void error(String accion, long nanos, Throwable e) {
+		medidas(accion).errores++;
+		medidas(accion).anadir(nanos);
+		String tipo = accion + ": " + e.getClass().getSimpleName();
+		Integer n = tiposError.get(tipo);
+		tiposError.put(tipo, n == null ? 1 : n + 1);
+	}
+
+	/**
+	 * Anade a este informe las medidas de otro
+	 * @param otro el informe de otro usuario simulado
+	 */
+	public void juntar(LoadReport otro) {
+		for (Map.Entry<String, Medidas> e : otro.acciones.entrySet()) {
+			Medidas m = medidas(e.getKey());
+			for (int i = 0; i < e.getValue().n; i++) {
+				m.anadir(e.getValue().nanos[i]);
+			}
+			m.errores += e.getValue().errores;
+		}
+		for (Map.Entry<String, Integer> e : otro.tiposError.entrySet()) {
+			Integer n = tiposError.get(e.getKey());
+			tiposError.put(e.getKey(), n == null ? e.getValue() : n + e.getValue());
+		}
+	}
+
+	/**
+	 * Escribe el rendimiento, la tasa de error y los percentiles de latencia de cada accion
+	 * @param segundos duracion de la prueba
+	 */
+	public String resumen(double segundos) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%-12s %8s %8s %7s %9s %9s %9s %9s %9s%n", "accion", "ops", "errores", "%error",
+				"ops/s", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+		long total = 0;
+		long errores = 0;
+		for (Map.Entry<String, Medidas> e : acciones.entrySet()) {
+			Medidas m = e.getValue();
+			long[] orden = Arrays.copyOf(m.nanos, m.n);
+			Arrays.sort(orden);
+			sb.append(String.format("%-12s %8d %8d %6.2f%% %9.1f %9.2f %9.2f %9.2f %9.2f%n", e.getKey(), m.n, m.errores,
+					100.0 * m.errores / Math.max(1, m.n), m.n / segundos, percentil(orden, 0.50), percentil(orden, 0.95),
+					percentil(orden, 0.99), percentil(orden, 1.0)));
+			total += m.n;
+			errores += m.errores;
+		}
+		sb.append(String.format("%-12s %8d %8d %6.2f%% %9.1f%n", "TOTAL", total, errores,
+				100.0 * errores / Math.max(1, total), total / segundos));
+		for (Map.Entry<String, Integer> e : tiposError.entrySet()) {
+			sb.append("  ").append(e.getKey()).append(" x").append(e.getValue()).append(String.format("%n"));
+		}
+		return sb.toString();
+	}
+
+	private Medidas medidas(String accion) {
+		Medidas m = acciones.get(accion);
+		if (m == null) {
+			m = new Medidas();
+			acciones.put(accion, m);
+		}
+		return m;
+	}
+
+	private static double percentil(long[] orden, double p) {
+		if (orden.length == 0) return 0;
+		int i = (int) Math.ceil(p * orden.length) - 1;
+		return orden[Math.max(0, Math.min(orden.length - 1, i))] / 1000000.0;
+	}
+
+	private static class Medidas {
+		long[] nanos = new long[256];
+		int n;
+		long errores;
+
+		void anadir(long t) {
+			if (n == nanos.length) {
+				nanos = Arrays.copyOf(nanos, n * 2);
+			}
+			nanos[n++] = t;
+		}
+	}
+}
@@ -1,11 +1,11 @@
 package test.utility;
 
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Vector;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
@@ -13,9 +13,12 @@ import javax.persistence.Persistence;
 import javax.persistence.TypedQuery;
 
 import configuration.ConfigXML;
+import domain.Apuesta;
+import domain.Card;
 import domain.Equipo;
 import domain.EquipoId;
 import domain.Event;
+import domain.Payment;
 import domain.Pronosticos;
 import domain.Question;
 import exceptions.PrognosticAlreadyExist;
@@ -91,9 +94,9 @@ public class TestUtilityDataAccess {
 				return ev;
 	    }
 		
-		public Vector<Event> getEvents(Date date) {
+		public List<Event> getEvents(Date date) {
 			System.out.println(">> DataAccess: getEvents");
-			Vector<Event> res = new Vector<Event>();	
+			List<Event> res = new ArrayList<Event>();	
 			TypedQuery<Event> query = db.createQuery("SELECT ev FROM Event ev WHERE ev.eventDate=?1",Event.class);   
 			query.setParameter(1, date);
 			List<Event> events = query.getResultList();
@@ -115,9 +118,9 @@ public class TestUtilityDataAccess {
 		public Pronosticos createPrognosticTeam(int ev, Question q, Equipo eq, float porcen) throws PrognosticAlreadyExist, WrongParameters {
 			Event evento = db.find(Event.class, ev);
 			if(evento==null || q==null || eq==null || porcen<0) throw new WrongParameters() ;
-			Vector<Question> questions = evento.getQuestions();
+			List<Question> questions = evento.getQuestions();
 			for (Question question : questions) {
-				if (question.getQuestionNumber() == q.getQuestionNumber()) {
+				if (question.getQuestionNumber().equals(q.getQuestionNumber())) {
 					if (question.doesPrognosticExists(null,eq))
 						throw new PrognosticAlreadyExist();
 					db.getTransaction().begin();
@@ -138,5 +141,54 @@ public class TestUtilityDataAccess {
 			db.find(Event.class, ev);
 			return db.find(Event.class, ev);
 		}
-}
 
+		/**
+		 * Borra las apuestas, tarjetas y movimientos del libro de un usuario,
+		 * incluidos los que la casa apunta a su nombre con el concepto "... de dni"
+		 */
+		public void removeMovimientos(int dni) {
+			db.getTransaction().begin();
+			TypedQuery<Payment> pagos = db.createQuery("SELECT p FROM Payment p WHERE p.user.DNI=?1 OR p.concepto LIKE ?2", Payment.class);
+			pagos.setParameter(1, dni);
+			pagos.setParameter(2, "% de " + dni);
+			for (Payment p : pagos.getResultList()) {
+				db.remove(p);
+			}
+			TypedQuery<Apuesta> apuestas = db.createQuery("SELECT a FROM Apuesta a WHERE a.user.DNI=?1", Apuesta.class);
+			apuestas.setParameter(1, dni);
+			for (Apuesta a : apuestas.getResultList()) {
+				db.remove(a);
+			}
+			TypedQuery<Card> tarjetas = db.createQuery("SELECT c FROM Card c WHERE c.user.DNI=?1", Card.class);
+			tarjetas.setParameter(1, dni);
+			for (Card c : tarjetas.getResultList()) {
+				db.remove(c);
+			}
+			db.getTransaction().commit();
+		}
+
+		/**
+		 * Borra los equipos de una temporada y los partidos que juegan
+		 */
+		public void removeTemporada(int temporada) {
+			db.getTransaction().begin();
+			TypedQuery<Event> partidos = db.createQuery("SELECT e FROM Event e WHERE e.eq1.temporada=?1", Event.class);
+			partidos.setParameter(1, temporada);
+			for (Event e : partidos.getResultList()) {
+				db.remove(e);
+			}
+			TypedQuery<Equipo> equipos = db.createQuery("SELECT e FROM Equipo e WHERE e.temporada=?1", Equipo.class);
+			equipos.setParameter(1, temporada);
+			for (Equipo e : equipos.getResultList()) {
+				db.remove(e);
+			}
+			db.getTransaction().commit();
+		}
+
+		public long countMovimientos(int dni) {
+			TypedQuery<Long> query = db.createQuery("SELECT COUNT(p) FROM Payment p WHERE p.user.DNI=?1 OR p.concepto LIKE ?2", Long.class);
+			query.setParameter(1, dni);
+			query.setParameter(2, "% de " + dni);
+			return query.getSingleResult();
+		}
+}
@@ -2,8 +2,8 @@ package test.utility;
 
 
 
+import java.util.List;
 import java.util.Date;
-import java.util.Vector;
 
 import configuration.ConfigXML;
 import domain.Event;
@@ -41,9 +41,9 @@ public class TestUtilityFacadeImplementation {
 
 		}
 		
-		public Vector<Event> getEvents(Date date)  {
+		public List<Event> getEvents(Date date)  {
 			dbManagerTest.open();
-			Vector<Event>  events=dbManagerTest.getEvents(date);
+			List<Event>  events=dbManagerTest.getEvents(date);
 			dbManagerTest.close();
 			return events;
 		}
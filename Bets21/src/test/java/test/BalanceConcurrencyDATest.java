@@ -0,0 +1,232 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.persistence.RollbackException;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import configuration.ConfigXML;
+import dataAccess.DataAccess;
+import dataAccess.PedidoApuesta;
+import domain.Apuesta;
+import domain.Equipo;
+import domain.Event;
+import domain.Pronosticos;
+import domain.Question;
+import domain.User;
+import exceptions.NotEnoughChuti;
+import exceptions.WrongParameters;
+import test.utility.TestUtilityDataAccess;
+
+class BalanceConcurrencyDATest {
+
+	static DataAccess sut = new DataAccess(ConfigXML.getInstance().getDataBaseOpenMode().equals("initialize"));
+	static TestUtilityDataAccess testDA = new TestUtilityDataAccess();
+	// every call runs in its own unit of work, outside the unit the test thread shares with other tests
+	static final int HILOS = 8;
+	static final int VECES = 25;
+	static ExecutorService pool = Executors.newFixedThreadPool(HILOS);
+
+	static final User usuario = new User(987650001, "pass", "Carga", "Prueba", "Prueba", "carga@prueba.com", new Date(0));
+	static final String tarjeta = "9876500010000001";
+	static Event evento;
+	static Question pregunta;
+	static Pronosticos pronostico;
+
+	@BeforeAll
+	static void preparar() throws Exception {
+		usuario.setChutiGoles(0.0);
+		enUnidad(new Callable<Object>() {
+			public Object call() throws Exception {
+				sut.createUser(usuario);
+				sut.addCardUser(usuario, tarjeta);
+				return null;
+			}
+		});
+		evento = testDA.addEventWithQuestion("carga1-carga2", new Date(System.currentTimeMillis() + 86400000L), "quien gana", 1);
+		pregunta = evento.getQuestions().get(0);
+		pronostico = testDA.createPrognosticTeam(evento.getEventNumber(), pregunta, new Equipo("carga1", 2022), 2);
+	}
+
+	@Test
+	// sut.setChutiGoles: many threads change the same balance at once; a change that runs out of retries
+	// is rejected, and every change that is saved is kept, none is lost
+	void testNoLostUpdates() throws Exception {
+		double antes = saldo();
+		int hechos = enParalelo(new Callable<Object>() {
+			public Object call() throws Exception {
+				sut.setChutiGoles(usuario, 2.0);
+				return null;
+			}
+		});
+		assertTrue(hechos > 0);
+		assertEquals(antes + 2.0 * hechos, saldo(), 0.001);
+	}
+
+	@Test
+	// sut.makePayment: many threads top up the same account at once and every saved payment is added
+	void testConcurrentPayments() throws Exception {
+		double antes = saldo();
+		int hechos = enParalelo(new Callable<Object>() {
+			public Object call() throws Exception {
+				sut.makePayment(usuario, 5.0, new Date(), tarjeta);
+				return null;
+			}
+		});
+		assertTrue(hechos > 0);
+		assertEquals(antes + 5.0 * hechos, saldo(), 0.001);
+	}
+
+	@Test
+	// sut.addApuesta: many threads bet from the same account at once; every saved bet is charged to
+	// the user and credited to the house exactly once
+	void testConcurrentBets() throws Exception {
+		enUnidad(new Callable<Object>() {
+			public Object call() throws Exception {
+				sut.setChutiGoles(usuario, (double) HILOS * VECES);
+				return null;
+			}
+		});
+		double antes = saldo();
+		double casaAntes = saldoCasa();
+		int apuestasAntes = apuestas();
+		int hechos = enParalelo(new Callable<Object>() {
+			public Object call() throws Exception {
+				sut.addApuesta(new Apuesta(usuario, pronostico, 1, evento, pregunta));
+				return null;
+			}
+		});
+		assertTrue(hechos > 0);
+		assertEquals(antes - hechos, saldo(), 0.001);
+		assertEquals(casaAntes + hechos, saldoCasa(), 0.001);
+		assertEquals(apuestasAntes + hechos, apuestas());
+	}
+
+	@Test
+	// sut.placeBets: in one batch the valid bet is saved and charged, and the invalid ones are rejected
+	// without touching the balance
+	void testPlaceBetsRejectsOnlyInvalid() throws Exception {
+		enUnidad(new Callable<Object>() {
+			public Object call() throws Exception {
+				sut.setChutiGoles(usuario, 3.0);
+				return null;
+			}
+		});
+		double antes = saldo();
+		int apuestasAntes = apuestas();
+		final List<PedidoApuesta> pedidos = new ArrayList<PedidoApuesta>();
+		pedidos.add(new PedidoApuesta(usuario.getDNI(), pregunta.getQuestionNumber(), pronostico.getPrognosticNumber(), 2));
+		pedidos.add(new PedidoApuesta(usuario.getDNI(), pregunta.getQuestionNumber(), pronostico.getPrognosticNumber(), antes + 1000));
+		pedidos.add(new PedidoApuesta(usuario.getDNI(), pregunta.getQuestionNumber() + 1000, pronostico.getPrognosticNumber(), 1));
+		enUnidad(new Callable<Object>() {
+			public Object call() throws Exception {
+				sut.placeBets(pedidos);
+				return null;
+			}
+		});
+		assertNull(pedidos.get(0).getError());
+		assertEquals(antes - 2, pedidos.get(0).getSaldo(), 0.001);
+		assertTrue(pedidos.get(1).getError() instanceof NotEnoughChuti);
+		assertTrue(pedidos.get(2).getError() instanceof WrongParameters);
+		assertEquals(antes - 2, saldo(), 0.001);
+		assertEquals(apuestasAntes + 1, apuestas());
+	}
+
+	@AfterAll
+	static void limpiar() throws Exception {
+		testDA.removeMovimientos(usuario.getDNI());
+		enUnidad(new Callable<Object>() {
+			public Object call() throws Exception {
+				sut.deleteUser(usuario);
+				return null;
+			}
+		});
+		testDA.removeEvent(evento);
+		assertEquals(0, testDA.countMovimientos(usuario.getDNI()));
+		pool.shutdown();
+	}
+
+	/**
+	 * Runs the action VECES times in each of the HILOS threads, each call in its own unit of work.
+	 * A call that is rolled back after running out of retries has saved nothing and is not counted;
+	 * any other failure fails the test
+	 * @return the calls that were saved
+	 */
+	private static int enParalelo(final Callable<Object> accion) throws Exception {
+		List<Future<Integer>> resultados = new ArrayList<Future<Integer>>();
+		for (int i = 0; i < HILOS; i++) {
+			resultados.add(pool.submit(new Callable<Integer>() {
+				public Integer call() throws Exception {
+					int hechos = 0;
+					for (int j = 0; j < VECES; j++) {
+						sut.open(false);
+						try {
+							accion.call();
+							hechos++;
+						} catch (RollbackException e) {
+							// a conflict every time: rejected as a whole
+						} finally {
+							sut.close();
+						}
+					}
+					return hechos;
+				}
+			}));
+		}
+		int hechos = 0;
+		for (Future<Integer> f : resultados) {
+			hechos += f.get();
+		}
+		return hechos;
+	}
+
+	private static double saldo() throws Exception {
+		return ((User) enUnidad(new Callable<Object>() {
+			public Object call() throws Exception {
+				return sut.obtainUser(usuario.getDNI());
+			}
+		})).getChutiGoles();
+	}
+
+	private static int apuestas() throws Exception {
+		return ((List<?>) enUnidad(new Callable<Object>() {
+			public Object call() throws Exception {
+				return sut.getBetsFromUserPagina(usuario, null, Integer.MAX_VALUE);
+			}
+		})).size();
+	}
+
+	private static double saldoCasa() throws Exception {
+		return (Double) enUnidad(new Callable<Object>() {
+			public Object call() throws Exception {
+				return sut.getSaldoCasa();
+			}
+		});
+	}
+
+	private static Object enUnidad(final Callable<Object> accion) throws Exception {
+		return pool.submit(new Callable<Object>() {
+			public Object call() throws Exception {
+				sut.open(false);
+				try {
+					return accion.call();
+				} finally {
+					sut.close();
+				}
+			}
+		}).get();
+	}
+}
@@ -0,0 +1,76 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.RollbackException;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import business.logic.BetIntakeQueue;
+import dataAccess.DataAccess;
+import dataAccess.PedidoApuesta;
+import exceptions.NotEnoughChuti;
+
+class BetIntakeQueueTest {
+
+	DataAccess dataAccess = Mockito.mock(DataAccess.class);
+
+	@Test
+	// the batch cannot be committed: each bet is saved on its own, and a rejected one only fails its own caller
+	void testFallbackOneByOne() throws Exception {
+		Mockito.doThrow(new RollbackException("conflicto")).when(dataAccess).placeBets(Mockito.anyListOf(PedidoApuesta.class));
+		Mockito.when(dataAccess.placeBet(1, 10, 100, 5.0)).thenReturn(95.0);
+		Mockito.when(dataAccess.placeBet(2, 10, 100, 5.0)).thenThrow(new NotEnoughChuti());
+		BetIntakeQueue sut = new BetIntakeQueue(dataAccess, 10, 500, 5000);
+
+		CompletableFuture<Double> primera = sut.encolar(1, 10, 100, 5.0);
+		CompletableFuture<Double> segunda = sut.encolar(2, 10, 100, 5.0);
+
+		assertEquals(95.0, primera.get(5, TimeUnit.SECONDS), 0.001);
+		ExecutionException e = assertThrows(ExecutionException.class, () -> segunda.get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof NotEnoughChuti);
+		Mockito.verify(dataAccess, Mockito.times(1)).placeBets(Mockito.anyListOf(PedidoApuesta.class));
+		Mockito.verify(dataAccess).placeBet(1, 10, 100, 5.0);
+		Mockito.verify(dataAccess).placeBet(2, 10, 100, 5.0);
+		assertEquals(2, sut.getApuestas());
+	}
+
+	@Test
+	// the writer is busy with another batch: a bet still queued when its caller stops waiting is dropped and never saved
+	@SuppressWarnings("unchecked")
+	void testTimeoutWhileQueued() throws Exception {
+		CountDownLatch escribiendo = new CountDownLatch(1);
+		CountDownLatch soltar = new CountDownLatch(1);
+		Mockito.doAnswer(inv -> {
+			escribiendo.countDown();
+			soltar.await();
+			for (PedidoApuesta p : (List<PedidoApuesta>) inv.getArguments()[0]) {
+				p.aceptar(50.0);
+			}
+			return null;
+		}).when(dataAccess).placeBets(Mockito.anyListOf(PedidoApuesta.class));
+		BetIntakeQueue sut = new BetIntakeQueue(dataAccess, 1, 0, 100);
+
+		CompletableFuture<Double> primera = sut.encolar(1, 10, 100, 5.0);
+		assertTrue(escribiendo.await(5, TimeUnit.SECONDS));
+		assertThrows(IllegalStateException.class, () -> sut.apostar(2, 10, 100, 5.0));
+		assertEquals(0, sut.getPendientes());
+		assertEquals(1, sut.getCaducadas());
+
+		soltar.countDown();
+		assertEquals(50.0, primera.get(5, TimeUnit.SECONDS), 0.001);
+		Thread.sleep(200);
+		Mockito.verify(dataAccess, Mockito.times(1)).placeBets(Mockito.anyListOf(PedidoApuesta.class));
+		Mockito.verify(dataAccess, Mockito.never()).placeBet(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyDouble());
+		assertEquals(1, sut.getApuestas());
+	}
+}
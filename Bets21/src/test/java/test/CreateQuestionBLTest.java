@@ -8,8 +8,8 @@ import static org.junit.jupiter.api.Assertions.fail;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.List;
 import java.util.Date;
-import java.util.Vector;
 
 
 import org.junit.jupiter.api.BeforeAll;
@@ -83,7 +83,7 @@ class CreateQuestionBLTest {
 				assertEquals(betMinimum, q.getBetMinimum());
 				
 				// verify DB
-				Vector<Event> es = testBL.getEvents(oneDate);
+				List<Event> es = testBL.getEvents(oneDate);
 
 				assertEquals(1, es.size());
 				assertEquals(2, es.get(0).getQuestions().size());
@@ -10,8 +10,8 @@ import static org.junit.jupiter.api.Assertions.fail;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.List;
 import java.util.Date;
-import java.util.Vector;
 
 import org.junit.jupiter.api.Test;
 
@@ -89,7 +89,7 @@ class CreateQuestionDATest {
 				
 				// verify DB
 				testDA.open();
-				Vector<Event> es = testDA.getEvents(oneDate);
+				List<Event> es = testDA.getEvents(oneDate);
 				testDA.close();
 
 				assertEquals(1, es.size());
@@ -157,7 +157,7 @@ class CreateQuestionDATest {
 
 				
 				// verify DB
-				Vector<Event> es = testDA.getEvents(oneDate);
+				List<Event> es = testDA.getEvents(oneDate);
 				testDA.close();
 
 				assertTrue(es.contains(ev));
@@ -201,7 +201,7 @@ class CreateQuestionDATest {
 				
 				// verify DB
 				testDA.open();
-				Vector<Event> es = testDA.getEvents(oneDate);
+				List<Event> es = testDA.getEvents(oneDate);
 				testDA.close();				assertEquals(1, es.size());
 				assertEquals(eventText, es.get(0).getDescription());
 				assertEquals(oneDate, es.get(0).getEventDate());
@@ -0,0 +1,261 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import configuration.ConfigXML;
+import configuration.UtilDate;
+import dataAccess.CsvImportReport;
+import dataAccess.CsvImporter;
+import dataAccess.DataAccess;
+import domain.Equipo;
+import domain.Event;
+import test.utility.TestUtilityDataAccess;
+
+class CsvImporterDATest {
+
+	static DataAccess sut = new DataAccess(ConfigXML.getInstance().getDataBaseOpenMode().equals("initialize"));
+	static TestUtilityDataAccess testDA = new TestUtilityDataAccess();
+	// the import runs in its own unit of work on this thread, like a facade call
+	static ExecutorService hilo = Executors.newSingleThreadExecutor();
+	// other requests that write at the same time as the import
+	static ExecutorService otro = Executors.newSingleThreadExecutor();
+
+	static final int RECHAZOS = 2091;
+	static final int DOS_VECES = 2092;
+	static final int LOTE = 2093;
+	static final int PREGUNTA = 2094;
+
+	@Test
+	// sut.importarEquipos: the invalid rows are reported with their line and reason, and the rest are saved
+	void testRejectedRows() throws Exception {
+		CsvImportReport informe = importarEquipos(2,
+				"Uno," + RECHAZOS + ",1900,Sede,100,P,E,w\n"
+				+ "Dos," + RECHAZOS + ",mil,Sede,100,P,E,w\n"
+				+ "Tres," + RECHAZOS + ",1900\n"
+				+ "," + RECHAZOS + ",1900,Sede,100,P,E,w\n"
+				+ "Cinco," + RECHAZOS + ",1900,Sede,100,P,E,w\n");
+
+		assertEquals(5, informe.getFilas());
+		assertEquals(2, informe.getNuevos());
+		assertEquals(3, informe.getRechazados());
+		assertEquals(2, informe.getRechazos().get(0).getLinea());
+		assertTrue(informe.getRechazos().get(0).getMotivo().contains("fundacion"));
+		assertEquals(3, informe.getRechazos().get(1).getLinea());
+		assertTrue(informe.getRechazos().get(1).getMotivo().contains("campos"));
+		assertEquals(4, informe.getRechazos().get(2).getLinea());
+		assertTrue(informe.getRechazos().get(2).getMotivo().contains("nombre"));
+		assertEquals(2, equipos(RECHAZOS).size());
+	}
+
+	@Test
+	// sut.importarEquipos, sut.importarCalendario: importing the same files again updates the saved
+	// teams and matches and creates nothing new
+	void testImportTwiceDuplicatesNothing() throws Exception {
+		String equipos = "Local," + DOS_VECES + ",1900,Sede,100,P,E,w\n"
+				+ "Visitante," + DOS_VECES + ",1900,Sede,100,P,E,w\n";
+		String calendario = "pregunta,Quien gana,1,true,local=2|visitante=3\n"
+				+ "partido,2090-03-01," + DOS_VECES + ",Local,Visitante,Jornada 1\n"
+				+ "partido,2090-03-08," + DOS_VECES + ",Visitante,Local,Jornada 2\n";
+
+		assertEquals(2, importarEquipos(10, equipos).getNuevos());
+		assertEquals(2, importarCalendario(10, calendario).getNuevos());
+
+		CsvImportReport equiposOtraVez = importarEquipos(10, equipos);
+		CsvImportReport calendarioOtraVez = importarCalendario(10, calendario);
+
+		assertEquals(0, equiposOtraVez.getNuevos());
+		assertEquals(2, equiposOtraVez.getActualizados());
+		assertEquals(0, calendarioOtraVez.getNuevos());
+		assertEquals(2, calendarioOtraVez.getActualizados());
+		assertEquals(2, equipos(DOS_VECES).size());
+		for (Date fecha : new Date[] { UtilDate.newDate(2090, 2, 1), UtilDate.newDate(2090, 2, 8) }) {
+			List<Event> partidos = eventos(fecha);
+			assertEquals(1, partidos.size());
+			assertEquals(1, partidos.get(0).getQuestions().size());
+			assertEquals(2, pronosticos(fecha));
+		}
+	}
+
+	@Test
+	// sut.importarEquipos: when a batch cannot be committed all its rows are reported as rejected and
+	// the import goes on with the next batch
+	void testDiscardedBatch() throws Exception {
+		// another request saves team A after the import has added it, and before the batch is committed
+		Reader in = new PorLineas(2, new Callable<Object>() {
+			public Object call() throws Exception {
+				return otro.submit(new Callable<Object>() {
+					public Object call() throws Exception {
+						sut.open(false);
+						try {
+							return sut.saveEquipo(new Equipo("A", LOTE), false);
+						} finally {
+							sut.close();
+						}
+					}
+				}).get();
+			}
+		}, "A," + LOTE + ",1900,Sede,100,P,E,w",
+				"B," + LOTE + ",1900,Sede,100,P,E,w",
+				"C," + LOTE + ",1900,Sede,100,P,E,w");
+
+		CsvImportReport informe = importar(2, in, true);
+
+		assertEquals(3, informe.getFilas());
+		assertEquals(1, informe.getNuevos());
+		assertEquals(2, informe.getRechazados());
+		assertEquals(1, informe.getTransacciones());
+		assertEquals(1, informe.getRechazos().get(0).getLinea());
+		assertEquals(2, informe.getRechazos().get(1).getLinea());
+		assertTrue(informe.getRechazos().get(0).getMotivo().startsWith("lote descartado"));
+		assertNotNull(equipo("A", LOTE));
+		assertNull(equipo("B", LOTE));
+		assertNotNull(equipo("C", LOTE));
+	}
+
+	@Test
+	// sut.importarCalendario: the matches after an invalid question are rejected instead of being saved
+	// without it, even if a valid question comes later
+	void testInvalidQuestionRejectsFollowingMatches() throws Exception {
+		importarEquipos(10, "Local," + PREGUNTA + ",1900,Sede,100,P,E,w\n"
+				+ "Visitante," + PREGUNTA + ",1900,Sede,100,P,E,w\n");
+
+		CsvImportReport informe = importarCalendario(10,
+				"pregunta,Quien gana,1,true,local=2|visitante=3\n"
+				+ "partido,2090-04-01," + PREGUNTA + ",Local,Visitante,Jornada 1\n"
+				+ "pregunta,Cuantos goles,1,false,0-1=dos\n"
+				+ "partido,2090-04-08," + PREGUNTA + ",Visitante,Local,Jornada 2\n"
+				+ "pregunta,Habra penalti,1,false,Si=2|No=1.5\n"
+				+ "partido,2090-04-15," + PREGUNTA + ",Local,Visitante,Jornada 3\n");
+
+		assertEquals(1, informe.getNuevos());
+		assertEquals(3, informe.getRechazados());
+		assertEquals(3, informe.getRechazos().get(0).getLinea());
+		assertEquals(4, informe.getRechazos().get(1).getLinea());
+		assertTrue(informe.getRechazos().get(1).getMotivo().contains("pregunta no valida"));
+		assertEquals(6, informe.getRechazos().get(2).getLinea());
+		assertEquals(1, eventos(UtilDate.newDate(2090, 3, 1)).size());
+		assertTrue(eventos(UtilDate.newDate(2090, 3, 8)).isEmpty());
+		assertTrue(eventos(UtilDate.newDate(2090, 3, 15)).isEmpty());
+	}
+
+	@AfterAll
+	static void limpiar() throws Exception {
+		for (int temporada : new int[] { RECHAZOS, DOS_VECES, LOTE, PREGUNTA }) {
+			testDA.removeTemporada(temporada);
+			assertTrue(equipos(temporada).isEmpty());
+		}
+		hilo.shutdown();
+		otro.shutdown();
+	}
+
+	private static CsvImportReport importarEquipos(int tamLote, String csv) throws Exception {
+		return importar(tamLote, new StringReader(csv), true);
+	}
+
+	private static CsvImportReport importarCalendario(int tamLote, String csv) throws Exception {
+		return importar(tamLote, new StringReader(csv), false);
+	}
+
+	private static CsvImportReport importar(final int tamLote, final Reader in, final boolean equipos) throws Exception {
+		return (CsvImportReport) enUnidad(new Callable<Object>() {
+			public Object call() throws Exception {
+				CsvImporter importador = new CsvImporter(sut, tamLote, false);
+				return equipos ? importador.importarEquipos(in, "prueba.csv") : importador.importarCalendario(in, "prueba.csv");
+			}
+		});
+	}
+
+	private static List<?> equipos(final int temporada) throws Exception {
+		return (List<?>) enUnidad(new Callable<Object>() {
+			public Object call() throws Exception {
+				return sut.obtenerEquipos(temporada);
+			}
+		});
+	}
+
+	private static Equipo equipo(final String nombre, final int temporada) throws Exception {
+		return (Equipo) enUnidad(new Callable<Object>() {
+			public Object call() throws Exception {
+				return sut.obtenerEquipo(nombre, temporada);
+			}
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Event> eventos(final Date fecha) throws Exception {
+		return (List<Event>) enUnidad(new Callable<Object>() {
+			public Object call() throws Exception {
+				return sut.getEvents(fecha);
+			}
+		});
+	}
+
+	private static int pronosticos(final Date fecha) throws Exception {
+		return (Integer) enUnidad(new Callable<Object>() {
+			public Object call() throws Exception {
+				return sut.getEvents(fecha).get(0).getQuestions().get(0).getPronosticos().size();
+			}
+		});
+	}
+
+	private static Object enUnidad(final Callable<Object> accion) throws Exception {
+		return hilo.submit(new Callable<Object>() {
+			public Object call() throws Exception {
+				sut.open(false);
+				try {
+					return accion.call();
+				} finally {
+					sut.close();
+				}
+			}
+		}).get();
+	}
+
+	/**
+	 * Gives the importer one line on each read, and runs an action just before giving it a line
+	 */
+	private static class PorLineas extends Reader {
+		private final String[] lineas;
+		private final int lineaAccion;
+		private final Callable<Object> accion;
+		private int siguiente;
+
+		PorLineas(int lineaAccion, Callable<Object> accion, String... lineas) {
+			this.lineas = lineas;
+			this.lineaAccion = lineaAccion;
+			this.accion = accion;
+		}
+
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			if (siguiente == lineas.length) return -1;
+			if (siguiente + 1 == lineaAccion) {
+				try {
+					accion.call();
+				} catch (Exception e) {
+					throw new IOException(e);
+				}
+			}
+			String linea = lineas[siguiente++] + "\n";
+			linea.getChars(0, linea.length(), cbuf, off);
+			return linea.length();
+		}
+
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,208 @@
+package test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.TypedQuery;
+
+import domain.Apuesta;
+import domain.Card;
+import domain.Equipo;
+import domain.Event;
+import domain.Payment;
+import domain.Pronosticos;
+import domain.Question;
+import domain.User;
+
+/**
+ * Mide la latencia de las consultas de DataAccess que filtran por campos
+ * indexados (Event.eventDate, Apuesta.user, Apuesta.user+liquidada,
+ * Apuesta.pregunta+liquidada, Payment.user, Payment.concepto+user,
+ * Pronosticos.question+pronostico) segun crece la base de datos, y la de buscar
+ * los equipos de una temporada, que recorre todos porque la temporada es parte
+ * de la clave de Equipo y ObjectDB no deja indexarla.
+ * Nueve de cada diez preguntas estan ya cerradas y una de cada diez apuestas
+ * tiene tambien un pago con tarjeta, para que las consultas de apuestas
+ * abiertas y de pagos tengan que saltarse filas.
+ * Usa una base de datos propia en target, asi que no toca la configurada en config.xml.
+ *
+ * Para comparar con y sin indices basta con ejecutarlo sobre el commit anterior
+ * a los indices y sobre este:
+ * mvn test-compile exec:java -Dexec.mainClass=test.QueryBenchmark -Dexec.classpathScope=test
+ * Los argumentos opcionales son los numeros de apuestas a probar, p.ej. 1000 10000 50000.
+ */
+public class QueryBenchmark {
+
+	private static final int USUARIOS = 200;
+	private static final int APUESTAS_POR_EVENTO = 20;
+	private static final int TEMPORADAS = 100;
+	private static final int REPETICIONES = 200;
+	private static final int PAGINA = 20;
+
+	public static void main(String[] args) {
+		int[] tamanos = { 1000, 10000, 50000 };
+		if (args.length > 0) {
+			tamanos = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				tamanos[i] = Integer.parseInt(args[i]);
+			}
+		}
+		System.out.println(String.format("%-10s %-22s %12s %10s", "apuestas", "consulta", "mediana us", "filas"));
+		for (int n : tamanos) {
+			medir(n);
+		}
+	}
+
+	private static void medir(int apuestas) {
+		File fichero = new File("target/query-benchmark.odb");
+		fichero.delete();
+		new File("target/query-benchmark.odb$").delete();
+		EntityManagerFactory emf = Persistence.createEntityManagerFactory("objectdb:" + fichero.getPath());
+		try {
+			poblar(emf, apuestas);
+			EntityManager em = emf.createEntityManager();
+			try {
+				final List<User> usuarios = em.createQuery("SELECT u FROM User u", User.class).getResultList();
+				final List<Question> preguntas = em.createQuery("SELECT q FROM Question q", Question.class).getResultList();
+				final List<Date> fechas = em.createQuery("SELECT DISTINCT ev.eventDate FROM Event ev", Date.class).getResultList();
+
+				medir(em, apuestas, "getEvents", em.createQuery("SELECT ev FROM Event ev WHERE ev.eventDate=?1", Event.class),
+						(q, i) -> q.setParameter(1, fechas.get(i % fechas.size())));
+				medir(em, apuestas, "getBetsFromUser", em.createQuery("SELECT a FROM Apuesta a WHERE a.user=?1", Apuesta.class),
+						(q, i) -> q.setParameter(1, usuarios.get(i % usuarios.size())));
+				medir(em, apuestas, "getBetsFromUserOpen",
+						em.createQuery("SELECT a FROM Apuesta a WHERE a.user=?1 AND a.liquidada=false", Apuesta.class),
+						(q, i) -> q.setParameter(1, usuarios.get(i % usuarios.size())));
+				medir(em, apuestas, "getBetsFromUserOpenPagina",
+						em.createQuery("SELECT a FROM Apuesta a WHERE a.user=?1 AND a.liquidada=false AND a.numeroPronostico<?2 ORDER BY a.numeroPronostico DESC", Apuesta.class)
+								.setMaxResults(PAGINA),
+						(q, i) -> q.setParameter(1, usuarios.get(i % usuarios.size())).setParameter(2, Integer.MAX_VALUE));
+				medir(em, apuestas, "getBetsFromUserPagina",
+						em.createQuery("SELECT a FROM Apuesta a WHERE a.user=?1 AND a.numeroPronostico<?2 ORDER BY a.numeroPronostico DESC", Apuesta.class)
+								.setMaxResults(PAGINA),
+						(q, i) -> q.setParameter(1, usuarios.get(i % usuarios.size())).setParameter(2, Integer.MAX_VALUE));
+				medir(em, apuestas, "pagarLote",
+						em.createQuery("SELECT a FROM Apuesta a WHERE a.pregunta=?1 AND a.numeroPronostico>?2 "
+								+ "AND a.liquidada=false ORDER BY a.numeroPronostico", Apuesta.class)
+								.setMaxResults(PAGINA),
+						(q, i) -> q.setParameter(1, preguntas.get(i % preguntas.size())).setParameter(2, 0));
+				medir(em, apuestas, "getPaymentsFromUserPagina",
+						em.createQuery("SELECT p FROM Payment p WHERE p.concepto=?1 AND p.user=?2 AND p.numeroPayment<?3 ORDER BY p.numeroPayment DESC", Payment.class)
+								.setMaxResults(PAGINA),
+						(q, i) -> q.setParameter(1, Payment.PAGO_TARJETA).setParameter(2, usuarios.get(i % usuarios.size()))
+								.setParameter(3, Integer.MAX_VALUE));
+				medir(em, apuestas, "rebuildBalance",
+						em.createQuery("SELECT SUM(p.chutigoles) FROM Payment p WHERE p.user.DNI = ?1 AND p.numeroPayment > ?2", Double.class),
+						(q, i) -> q.setParameter(1, usuarios.get(i % usuarios.size()).getDNI()).setParameter(2, 0));
+				medir(em, apuestas, "getPronostico",
+						em.createQuery("SELECT p FROM Pronosticos p WHERE p.question=?1 AND p.pronostico=?2", Pronosticos.class),
+						(q, i) -> q.setParameter(1, preguntas.get(i % preguntas.size())).setParameter(2, "X"));
+				medir(em, apuestas, "obtenerEquipos", em.createQuery("SELECT e FROM Equipo e WHERE e.temporada=?1", Equipo.class),
+						(q, i) -> q.setParameter(1, 2000 + i % TEMPORADAS));
+			} finally {
+				em.close();
+			}
+		} finally {
+			emf.close();
+		}
+	}
+
+	/**
+	 * Crea un evento por cada APUESTAS_POR_EVENTO apuestas, con una pregunta y
+	 * tres pronosticos, y reparte las apuestas y un pago por apuesta entre USUARIOS usuarios
+	 */
+	private static void poblar(EntityManagerFactory emf, int apuestas) {
+		EntityManager em = emf.createEntityManager();
+		try {
+			em.getTransaction().begin();
+			User[] usuarios = new User[USUARIOS];
+			for (int i = 0; i < USUARIOS; i++) {
+				usuarios[i] = new User(600000000 + i, i, "pass", "Usuario" + i, "Ape", "Ape", "u" + i + "@ehu.eus", new Date());
+				em.persist(usuarios[i]);
+			}
+			Card[] tarjetas = new Card[USUARIOS];
+			for (int i = 0; i < USUARIOS; i++) {
+				tarjetas[i] = new Card("tarjeta" + i, usuarios[i]);
+				em.persist(tarjetas[i]);
+			}
+			int eventos = Math.max(1, apuestas / APUESTAS_POR_EVENTO);
+			Equipo[] equipos = new Equipo[eventos * 2];
+			for (int i = 0; i < equipos.length; i++) {
+				equipos[i] = new Equipo("Equipo" + (i / TEMPORADAS), 2000 + i % TEMPORADAS);
+				em.persist(equipos[i]);
+			}
+			Calendar dia = Calendar.getInstance();
+			dia.set(2020, Calendar.JANUARY, 1, 0, 0, 0);
+			dia.set(Calendar.MILLISECOND, 0);
+			int hechas = 0;
+			for (int e = 0; e < eventos; e++) {
+				Event ev = new Event("Evento" + e, dia.getTime(), equipos[2 * e], equipos[2 * e + 1]);
+				Question q = new Question("Quien gana?", 1, ev, false);
+				q.setEvent(ev);
+				boolean cerrada = e < eventos - eventos / 10;
+				q.setEstado(!cerrada);
+				ev.addQuestion(q);
+				Pronosticos[] pronosticos = { q.addPronostico("1", 2, null), q.addPronostico("X", 3, null),
+						q.addPronostico("2", 4, null) };
+				em.persist(ev);
+				for (int a = 0; a < APUESTAS_POR_EVENTO && hechas < apuestas; a++, hechas++) {
+					User us = usuarios[hechas % USUARIOS];
+					Apuesta ap = new Apuesta(us, pronosticos[a % 3], 1, ev, q);
+					ap.setLiquidada(cerrada);
+					em.persist(ap);
+					em.persist(new Payment(us, -1, "apuesta"));
+					if (hechas % 10 == 0) {
+						em.persist(new Payment(us, tarjetas[hechas % USUARIOS], 10, dia.getTime()));
+					}
+				}
+				if (e % 3 == 0) {
+					dia.add(Calendar.DAY_OF_YEAR, 1);
+				}
+				if (e % 100 == 99) {
+					em.getTransaction().commit();
+					em.clear();
+					em.getTransaction().begin();
+					for (int i = 0; i < USUARIOS; i++) {
+						usuarios[i] = em.find(User.class, i);
+						tarjetas[i] = em.find(Card.class, "tarjeta" + i);
+					}
+					for (int i = 0; i < equipos.length; i++) {
+						equipos[i] = em.merge(equipos[i]);
+					}
+				}
+			}
+			em.getTransaction().commit();
+		} finally {
+			em.close();
+		}
+	}
+
+	/**
+	 * Pone los parametros de la repeticion i, que cambian en cada una para que
+	 * no se reutilice el resultado de la anterior
+	 */
+	private interface Parametros {
+		void poner(TypedQuery<?> query, int i);
+	}
+
+	private static void medir(EntityManager em, int apuestas, String nombre, TypedQuery<?> query, Parametros parametros) {
+		long[] tiempos = new long[REPETICIONES];
+		long filas = 0;
+		for (int i = 0; i < REPETICIONES; i++) {
+			parametros.poner(query, i);
+			em.clear();
+			long inicio = System.nanoTime();
+			filas += query.getResultList().size();
+			tiempos[i] = System.nanoTime() - inicio;
+		}
+		Arrays.sort(tiempos);
+		System.out.println(String.format("%-10d %-22s %12.1f %10.1f", apuestas, nombre,
+				tiempos[REPETICIONES / 2] / 1000.0, filas / (double) REPETICIONES));
+	}
+}
@@ -0,0 +1,235 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import business.logic.SettlementEngine;
+import business.logic.SettlementReport;
+import configuration.ConfigXML;
+import dataAccess.DataAccess;
+import domain.Apuesta;
+import domain.Equipo;
+import domain.Event;
+import domain.Pronosticos;
+import domain.Question;
+import domain.User;
+import exceptions.EventFinished;
+import test.utility.TestUtilityDataAccess;
+
+class SettlementEngineDATest {
+
+	static DataAccess sut = new DataAccess(ConfigXML.getInstance().getDataBaseOpenMode().equals("initialize"));
+	static TestUtilityDataAccess testDA = new TestUtilityDataAccess();
+	// every call runs in its own unit of work on this thread, like a facade call
+	static ExecutorService hilo = Executors.newSingleThreadExecutor();
+
+	static final int LOTE = 4;
+	static final int APUESTAS = 10;
+	static final User[] usuarios = {
+			new User(987650101, "pass", "Liq", "Uno", "Prueba", "liq1@prueba.com", new Date(0)),
+			new User(987650102, "pass", "Liq", "Dos", "Prueba", "liq2@prueba.com", new Date(0)),
+			new User(987650103, "pass", "Liq", "Tres", "Prueba", "liq3@prueba.com", new Date(0)) };
+	static Event evento;
+	static Question pregunta;
+	static Pronosticos ganador;
+	static Pronosticos perdedor;
+
+	@BeforeAll
+	static void preparar() throws Exception {
+		enUnidad(new Callable<Object>() {
+			public Object call() throws Exception {
+				for (User us : usuarios) {
+					us.setChutiGoles(0.0);
+					sut.createUser(us);
+					sut.setChutiGoles(us, 100.0);
+				}
+				return null;
+			}
+		});
+		evento = testDA.addEventWithQuestion("liq1-liq2", new Date(System.currentTimeMillis() + 86400000L), "quien gana", 1);
+		pregunta = evento.getQuestions().get(0);
+		ganador = testDA.createPrognosticTeam(evento.getEventNumber(), pregunta, new Equipo("liq1", 2022), 2);
+		perdedor = testDA.createPrognosticTeam(evento.getEventNumber(), pregunta, new Equipo("liq2", 2022), 3);
+	}
+
+	@Test
+	// SettlementEngine.liquidar: a question with more bets than the batch size is settled in several
+	// transactions; every winner gets exactly its prize, the house pays exactly the total, and
+	// settling it again pays nothing
+	void testSettleInBatches() throws Exception {
+		final double[] esperado = new double[usuarios.length];
+		for (int u = 0; u < usuarios.length; u++) {
+			esperado[u] = saldo(usuarios[u]);
+		}
+		double premios = 0;
+		for (int i = 0; i < APUESTAS; i++) {
+			final User us = usuarios[i % usuarios.length];
+			final double cantidad = 1 + i;
+			final Pronosticos p = i % 2 == 0 ? ganador : perdedor;
+			enUnidad(new Callable<Object>() {
+				public Object call() throws Exception {
+					return sut.placeBet(us.getDNI(), pregunta.getQuestionNumber(), p.getPrognosticNumber(), cantidad);
+				}
+			});
+			esperado[i % usuarios.length] -= cantidad;
+			if (p == ganador) {
+				esperado[i % usuarios.length] += cantidad * 2;
+				premios += cantidad * 2;
+			}
+		}
+		double casaAntes = saldoCasa();
+
+		SettlementReport informe = liquidar();
+
+		assertEquals(APUESTAS / 2, informe.getApuestasGanadoras());
+		assertEquals(usuarios.length, informe.getUsuariosPagados());
+		assertEquals(premios, informe.getTotalPagado(), 0.001);
+		// one transaction to stop the bets, one per batch of LOTE bets, and one more to close the question
+		assertEquals((APUESTAS + LOTE - 1) / LOTE + 2, informe.getTransacciones());
+		for (int u = 0; u < usuarios.length; u++) {
+			assertEquals(esperado[u], saldo(usuarios[u]), 0.001);
+			assertTrue(abiertas(usuarios[u]).isEmpty());
+		}
+		assertEquals(casaAntes - premios, saldoCasa(), 0.001);
+
+		assertEquals(0, liquidar().getTotalPagado(), 0.001);
+		for (int u = 0; u < usuarios.length; u++) {
+			assertEquals(esperado[u], saldo(usuarios[u]), 0.001);
+		}
+		assertEquals(casaAntes - premios, saldoCasa(), 0.001);
+	}
+
+	@Test
+	// sut.empezarLiquidacion: once a question is being settled no bet can be placed or cancelled on it,
+	// and the bets already placed are all settled
+	void testNoBetsWhileSettling() throws Exception {
+		final User us = usuarios[0];
+		final Event otro = testDA.addEventWithQuestion("liq3-liq4", new Date(System.currentTimeMillis() + 86400000L), "quien gana", 1);
+		final Question q = otro.getQuestions().get(0);
+		final Pronosticos p = testDA.createPrognosticTeam(otro.getEventNumber(), q, new Equipo("liq3", 2022), 2);
+		try {
+			enUnidad(new Callable<Object>() {
+				public Object call() throws Exception {
+					return sut.placeBet(us.getDNI(), q.getQuestionNumber(), p.getPrognosticNumber(), 1);
+				}
+			});
+			final int apuesta = apuestaAbierta(us, q);
+			enUnidad(new Callable<Object>() {
+				public Object call() throws Exception {
+					sut.empezarLiquidacion(q);
+					return null;
+				}
+			});
+			double antes = saldo(us);
+
+			assertThrows(EventFinished.class, () -> enUnidad(() -> sut.placeBet(us.getDNI(), q.getQuestionNumber(), p.getPrognosticNumber(), 1)));
+			assertFalse((Boolean) enUnidad(() -> sut.cancelarApuesta(apuesta, us.getDNI())));
+			assertEquals(antes, saldo(us), 0.001);
+
+			SettlementReport informe = (SettlementReport) enUnidad(() -> new SettlementEngine(sut, LOTE).liquidar(q, p));
+			assertEquals(1, informe.getApuestasGanadoras());
+			assertEquals(antes + 2, saldo(us), 0.001);
+			assertEquals(-1, apuestaAbierta(us, q));
+		} finally {
+			testDA.removeEvent(otro);
+		}
+	}
+
+	@AfterAll
+	static void limpiar() throws Exception {
+		for (User us : usuarios) {
+			testDA.removeMovimientos(us.getDNI());
+		}
+		enUnidad(new Callable<Object>() {
+			public Object call() throws Exception {
+				for (User us : usuarios) {
+					sut.deleteUser(us);
+				}
+				return null;
+			}
+		});
+		testDA.removeEvent(evento);
+		for (User us : usuarios) {
+			assertEquals(0, testDA.countMovimientos(us.getDNI()));
+		}
+		hilo.shutdown();
+	}
+
+	private static SettlementReport liquidar() throws Exception {
+		return (SettlementReport) enUnidad(new Callable<Object>() {
+			public Object call() throws Exception {
+				return new SettlementEngine(sut, LOTE).liquidar(pregunta, ganador);
+			}
+		});
+	}
+
+	private static double saldo(final User us) throws Exception {
+		return ((User) enUnidad(new Callable<Object>() {
+			public Object call() throws Exception {
+				return sut.obtainUser(us.getDNI());
+			}
+		})).getChutiGoles();
+	}
+
+	private static List<?> abiertas(final User us) throws Exception {
+		return (List<?>) enUnidad(new Callable<Object>() {
+			public Object call() throws Exception {
+				return sut.getBetsFromUserOpenPagina(us, null, APUESTAS);
+			}
+		});
+	}
+
+	/**
+	 * @return the number of the open bet of the user on the question, or -1 if there is none
+	 */
+	private static int apuestaAbierta(User us, Question q) throws Exception {
+		for (Object o : abiertas(us)) {
+			Apuesta a = (Apuesta) o;
+			if (a.getQuestion().getQuestionNumber().equals(q.getQuestionNumber())) return a.getNumeroPronostico();
+		}
+		return -1;
+	}
+
+	private static double saldoCasa() throws Exception {
+		return (Double) enUnidad(new Callable<Object>() {
+			public Object call() throws Exception {
+				return sut.getSaldoCasa();
+			}
+		});
+	}
+
+	private static Object enUnidad(final Callable<Object> accion) throws Exception {
+		try {
+			return enHilo(accion);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+			throw e;
+		}
+	}
+
+	private static Object enHilo(final Callable<Object> accion) throws Exception {
+		return hilo.submit(new Callable<Object>() {
+			public Object call() throws Exception {
+				sut.open(false);
+				try {
+					return accion.call();
+				} finally {
+					sut.close();
+				}
+			}
+		}).get();
+	}
+}